@@ -0,0 +1,110 @@
+package io.izzel.util.codec.benchmark;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import io.izzel.util.codec.common.TypeCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode of list, map and primitive array codecs for growing element counts.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CollectionBenchmark {
+
+    @Param({"10", "10000", "1000000"})
+    public int size;
+
+    @Param({"list", "map", "int[]", "long[]", "byte[]"})
+    public String shape;
+
+    @Param({"java", "json", "binary"})
+    public String ops;
+
+    private Codec<Object> codec;
+    private DynamicOps<Object> dynamicOps;
+    private Object value;
+    private Object encoded;
+
+    @Setup
+    public void setup() {
+        switch (shape) {
+            case "list":
+                List<String> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add("element" + i);
+                }
+                codec = TypeCodec.of(TypeCodec.parameterized(List.class, String.class));
+                value = list;
+                break;
+            case "map":
+                Map<String, String> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put("key" + i, "value" + i);
+                }
+                codec = TypeCodec.of(TypeCodec.parameterized(Map.class, String.class, String.class));
+                value = map;
+                break;
+            case "int[]":
+                int[] ints = new int[size];
+                for (int i = 0; i < size; i++) {
+                    ints[i] = i * 31;
+                }
+                codec = TypeCodec.of((Type) int[].class);
+                value = ints;
+                break;
+            case "long[]":
+                long[] longs = new long[size];
+                for (int i = 0; i < size; i++) {
+                    longs[i] = i * 31L;
+                }
+                codec = TypeCodec.of((Type) long[].class);
+                value = longs;
+                break;
+            case "byte[]":
+                byte[] bytes = new byte[size];
+                for (int i = 0; i < size; i++) {
+                    bytes[i] = (byte) i;
+                }
+                codec = TypeCodec.of((Type) byte[].class);
+                value = bytes;
+                break;
+            default:
+                throw new IllegalArgumentException(shape);
+        }
+        dynamicOps = Models.ops(ops);
+        encoded = codec.encodeStart(dynamicOps, value).getOrThrow(false, IllegalStateException::new);
+    }
+
+    @Benchmark
+    public DataResult<Object> encode() {
+        return codec.encodeStart(dynamicOps, value);
+    }
+
+    @Benchmark
+    public DataResult<Object> decode() {
+        return codec.parse(dynamicOps, encoded);
+    }
+}
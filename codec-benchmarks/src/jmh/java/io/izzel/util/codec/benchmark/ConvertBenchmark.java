@@ -0,0 +1,59 @@
+package io.izzel.util.codec.benchmark;
+
+import com.google.gson.JsonElement;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.JsonOps;
+import io.izzel.util.codec.common.JavaPrimitiveOps;
+import io.izzel.util.codec.common.TypeCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JavaPrimitiveOps#convertTo} of a list of wide records into JSON and into Java primitives.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConvertBenchmark {
+
+    @Param({"10", "10000"})
+    public int size;
+
+    private Object document;
+
+    @Setup
+    public void setup() {
+        List<Models.Wide> records = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            records.add(Models.wide(i));
+        }
+        Codec<List<Models.Wide>> codec = TypeCodec.of(TypeCodec.parameterized(List.class, Models.Wide.class));
+        document = codec.encodeStart(JavaPrimitiveOps.INSTANCE, records).getOrThrow(false, IllegalStateException::new);
+    }
+
+    @Benchmark
+    public JsonElement toJson() {
+        return JavaPrimitiveOps.INSTANCE.convertTo(JsonOps.INSTANCE, document);
+    }
+
+    @Benchmark
+    public Object toJava() {
+        return JavaPrimitiveOps.INSTANCE.convertTo(JavaPrimitiveOps.INSTANCE, document);
+    }
+}
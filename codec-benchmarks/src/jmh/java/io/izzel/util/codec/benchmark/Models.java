@@ -0,0 +1,66 @@
+package io.izzel.util.codec.benchmark;
+
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.JsonOps;
+import io.izzel.util.codec.common.BinaryOps;
+import io.izzel.util.codec.common.JavaPrimitiveOps;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class Models {
+
+    private Models() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static DynamicOps<Object> ops(String name) {
+        switch (name) {
+            case "java":
+                return JavaPrimitiveOps.INSTANCE;
+            case "json":
+                return (DynamicOps<Object>) (DynamicOps<?>) JsonOps.INSTANCE;
+            case "binary":
+                return (DynamicOps<Object>) (DynamicOps<?>) BinaryOps.INSTANCE;
+            default:
+                throw new IllegalArgumentException(name);
+        }
+    }
+
+    public record Small(int id, String name, double score) {}
+
+    public record Wide(int int0, long long1, double double2, String string3, boolean flag4,
+                       int int5, long long6, double double7, String string8, boolean flag9,
+                       int int10, long long11, double double12, String string13, boolean flag14,
+                       int int15, long long16, double double17, String string18, boolean flag19,
+                       int int20, long long21, double double22, String string23, boolean flag24,
+                       int int25, long long26, double double27, String string28, boolean flag29,
+                       int int30, long long31, double double32, String string33, boolean flag34,
+                       int int35, long long36, double double37, String string38, boolean flag39) {}
+
+    public record Nested(int level, String name, List<Nested> children) {}
+
+    public static Small small(int seed) {
+        return new Small(seed, "small" + seed, seed / 3D);
+    }
+
+    public static Wide wide(int seed) {
+        return new Wide(
+            seed + 0, seed * 1L, seed / 3D, "value" + seed, (seed & 4) == 0,
+            seed + 5, seed * 6L, seed / 8D, "value" + seed, (seed & 9) == 0,
+            seed + 10, seed * 11L, seed / 13D, "value" + seed, (seed & 14) == 0,
+            seed + 15, seed * 16L, seed / 18D, "value" + seed, (seed & 19) == 0,
+            seed + 20, seed * 21L, seed / 23D, "value" + seed, (seed & 24) == 0,
+            seed + 25, seed * 26L, seed / 28D, "value" + seed, (seed & 29) == 0,
+            seed + 30, seed * 31L, seed / 33D, "value" + seed, (seed & 34) == 0,
+            seed + 35, seed * 36L, seed / 38D, "value" + seed, (seed & 39) == 0);
+    }
+
+    public static Nested nested(int depth) {
+        List<Nested> children = new ArrayList<>();
+        if (depth > 0) {
+            children.add(nested(depth - 1));
+        }
+        return new Nested(depth, "level" + depth, children);
+    }
+}
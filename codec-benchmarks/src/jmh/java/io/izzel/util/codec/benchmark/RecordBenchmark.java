@@ -0,0 +1,78 @@
+package io.izzel.util.codec.benchmark;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import io.izzel.util.codec.common.TypeCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode of a single record against both ops, for each record shape and codec engine.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RecordBenchmark {
+
+    @Param({"small", "wide", "nested"})
+    public String shape;
+
+    @Param({"java", "json", "binary"})
+    public String ops;
+
+    @Param({"REFLECTION", "GENERATED"})
+    public TypeCodec.Mode mode;
+
+    private Codec<Object> codec;
+    private DynamicOps<Object> dynamicOps;
+    private Object value;
+    private Object encoded;
+
+    @Setup
+    public void setup() {
+        switch (shape) {
+            case "small":
+                codec = TypeCodec.of((Type) Models.Small.class, mode);
+                value = Models.small(42);
+                break;
+            case "wide":
+                codec = TypeCodec.of((Type) Models.Wide.class, mode);
+                value = Models.wide(42);
+                break;
+            case "nested":
+                codec = TypeCodec.of((Type) Models.Nested.class, mode);
+                value = Models.nested(16);
+                break;
+            default:
+                throw new IllegalArgumentException(shape);
+        }
+        dynamicOps = Models.ops(ops);
+        encoded = codec.encodeStart(dynamicOps, value).getOrThrow(false, IllegalStateException::new);
+    }
+
+    @Benchmark
+    public DataResult<Object> encode() {
+        return codec.encodeStart(dynamicOps, value);
+    }
+
+    @Benchmark
+    public DataResult<Object> decode() {
+        return codec.parse(dynamicOps, encoded);
+    }
+}
@@ -0,0 +1,83 @@
+package io.izzel.util.codec.benchmark;
+
+import com.mojang.serialization.Codec;
+import io.izzel.util.codec.common.TypeCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution cost of {@link TypeCodec#of(Type)}: the {@code cold*} benchmarks time the first call in a fresh JVM,
+ * the {@code cached*} ones the lookup of an already resolved codec.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResolutionBenchmark {
+
+    private final Type parameterized = TypeCodec.parameterized(Map.class, String.class, TypeCodec.parameterized(List.class, Models.Small.class));
+
+    @Benchmark
+    public Codec<?> cachedClass() {
+        return TypeCodec.of(Models.Wide.class);
+    }
+
+    @Benchmark
+    public Codec<?> cachedParameterized() {
+        return TypeCodec.of(parameterized);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Fork(20)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Codec<?> coldSmall() {
+        return TypeCodec.of(Models.Small.class);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Fork(20)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Codec<?> coldWide() {
+        return TypeCodec.of(Models.Wide.class);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Fork(20)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Codec<?> coldWideGenerated() {
+        return TypeCodec.of(Models.Wide.class, TypeCodec.Mode.GENERATED);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Fork(20)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Codec<?> coldNested() {
+        return TypeCodec.of(Models.Nested.class);
+    }
+}
@@ -0,0 +1,909 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.MapLike;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Compact binary ops, each value is a buffer holding exactly one tagged value between its position and limit.
+ * <p>
+ * Integers are zigzag varints, strings, lists and maps are prefixed with their length in bytes, and primitive
+ * arrays are raw big-endian blocks prefixed with their element count. Lists and maps written by a {@link TypeWriter}
+ * are not prefixed and end with a terminator instead. Values are read with absolute offsets on duplicates, so heap and
+ * direct buffers are both accepted and never modified.
+ */
+public class BinaryOps implements DynamicOps<ByteBuffer> {
+
+    public static final BinaryOps INSTANCE = new BinaryOps();
+
+    static final byte EMPTY = 0;
+    static final byte FALSE = 1;
+    static final byte TRUE = 2;
+    static final byte BYTE = 3;
+    static final byte SHORT = 4;
+    static final byte INT = 5;
+    static final byte LONG = 6;
+    static final byte FLOAT = 7;
+    static final byte DOUBLE = 8;
+    static final byte STRING = 9;
+    static final byte LIST = 10;
+    static final byte MAP = 11;
+    static final byte BYTE_ARRAY = 12;
+    static final byte SHORT_ARRAY = 13;
+    static final byte INT_ARRAY = 14;
+    static final byte LONG_ARRAY = 15;
+    static final byte FLOAT_ARRAY = 16;
+    static final byte DOUBLE_ARRAY = 17;
+    static final byte BOOLEAN_ARRAY = 18;
+    // containers of unknown length written by streaming sinks, terminated by END
+    static final byte LIST_STREAM = 19;
+    static final byte MAP_STREAM = 20;
+    static final byte END = 21;
+
+    private static final ByteBuffer EMPTY_VALUE = ByteBuffer.wrap(new byte[]{EMPTY}).asReadOnlyBuffer();
+    private static final ByteBuffer EMPTY_LIST = ByteBuffer.wrap(new byte[]{LIST, 0}).asReadOnlyBuffer();
+    private static final ByteBuffer EMPTY_MAP = ByteBuffer.wrap(new byte[]{MAP, 0}).asReadOnlyBuffer();
+
+    protected BinaryOps() {
+    }
+
+    /**
+     * Reads the value at the position of the source, and advances the source past it.
+     *
+     * @return a buffer holding only the value read
+     */
+    public ByteBuffer read(ByteBuffer source) {
+        ByteBuffer in = source.duplicate();
+        skip(in);
+        ByteBuffer value = slice(source, source.position(), in.position());
+        source.position(in.position());
+        return value;
+    }
+
+    @Override
+    public ByteBuffer empty() {
+        return EMPTY_VALUE.duplicate();
+    }
+
+    @Override
+    public ByteBuffer emptyList() {
+        return EMPTY_LIST.duplicate();
+    }
+
+    @Override
+    public ByteBuffer emptyMap() {
+        return EMPTY_MAP.duplicate();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <U> U convertTo(DynamicOps<U> outOps, ByteBuffer input) {
+        if (outOps instanceof BinaryOps) {
+            return (U) input;
+        }
+        ByteBuffer in = input.duplicate();
+        switch (tag(input)) {
+            case EMPTY:
+                return outOps.empty();
+            case FALSE:
+            case TRUE:
+                return outOps.createBoolean(tag(input) == TRUE);
+            case BYTE:
+                in.get();
+                return outOps.createByte(in.get());
+            case SHORT:
+                in.get();
+                return outOps.createShort((short) unzigzag(readVarInt(in)));
+            case INT:
+                in.get();
+                return outOps.createInt(unzigzag(readVarInt(in)));
+            case LONG:
+                in.get();
+                return outOps.createLong(unzigzag(readVarLong(in)));
+            case FLOAT:
+                return outOps.createFloat(in.getFloat(in.position() + 1));
+            case DOUBLE:
+                return outOps.createDouble(in.getDouble(in.position() + 1));
+            case STRING:
+                return outOps.createString(readString(input));
+            case LIST:
+            case LIST_STREAM:
+                return convertList(outOps, input);
+            case MAP:
+            case MAP_STREAM:
+                return convertMap(outOps, input);
+            case BYTE_ARRAY:
+                return outOps.createByteList(payload(input));
+            case INT_ARRAY:
+                return outOps.createIntList(IntStream.of((int[]) getArray(input, int[].class)));
+            case LONG_ARRAY:
+                return outOps.createLongList(LongStream.of((long[]) getArray(input, long[].class)));
+            case SHORT_ARRAY:
+            case FLOAT_ARRAY:
+            case DOUBLE_ARRAY:
+            case BOOLEAN_ARRAY:
+                Object array = getArray(input, arrayType(tag(input)));
+                return outOps instanceof JavaPrimitiveOps ? (U) array : PrimitiveArrayCodec.writeArray(outOps, array);
+            default:
+                // not described, as describing converts the value
+                throw new IllegalArgumentException("Cannot convert <tag " + tag(input) + "> to " + outOps);
+        }
+    }
+
+    @Override
+    public DataResult<Number> getNumberValue(ByteBuffer input) {
+        try {
+            ByteBuffer in = input.duplicate();
+            switch (tag(input)) {
+                case BYTE:
+                    return DataResult.success(in.get(in.position() + 1));
+                case SHORT:
+                    in.get();
+                    return DataResult.success((short) unzigzag(readVarInt(in)));
+                case INT:
+                    in.get();
+                    return DataResult.success(unzigzag(readVarInt(in)));
+                case LONG:
+                    in.get();
+                    return DataResult.success(unzigzag(readVarLong(in)));
+                case FLOAT:
+                    return DataResult.success(in.getFloat(in.position() + 1));
+                case DOUBLE:
+                    return DataResult.success(in.getDouble(in.position() + 1));
+                default:
+                    return DataResult.error("Not a number: " + describe(input));
+            }
+        } catch (RuntimeException e) {
+            return DataResult.error("Malformed number: " + e);
+        }
+    }
+
+    @Override
+    public ByteBuffer createNumeric(Number i) {
+        if (i instanceof Integer) {
+            return createInt(i.intValue());
+        } else if (i instanceof Long) {
+            return createLong(i.longValue());
+        } else if (i instanceof Byte) {
+            return createByte(i.byteValue());
+        } else if (i instanceof Short) {
+            return createShort(i.shortValue());
+        } else if (i instanceof Float) {
+            return createFloat(i.floatValue());
+        }
+        return createDouble(i.doubleValue());
+    }
+
+    @Override
+    public ByteBuffer createByte(byte value) {
+        return flip(ByteBuffer.allocate(2).put(BYTE).put(value));
+    }
+
+    @Override
+    public ByteBuffer createShort(short value) {
+        int zigzag = zigzag((int) value);
+        ByteBuffer out = ByteBuffer.allocate(1 + varIntSize(zigzag)).put(SHORT);
+        writeVarInt(out, zigzag);
+        return flip(out);
+    }
+
+    @Override
+    public ByteBuffer createInt(int value) {
+        int zigzag = zigzag(value);
+        ByteBuffer out = ByteBuffer.allocate(1 + varIntSize(zigzag)).put(INT);
+        writeVarInt(out, zigzag);
+        return flip(out);
+    }
+
+    @Override
+    public ByteBuffer createLong(long value) {
+        long zigzag = zigzag(value);
+        ByteBuffer out = ByteBuffer.allocate(1 + varLongSize(zigzag)).put(LONG);
+        writeVarLong(out, zigzag);
+        return flip(out);
+    }
+
+    @Override
+    public ByteBuffer createFloat(float value) {
+        return flip(ByteBuffer.allocate(5).put(FLOAT).putFloat(value));
+    }
+
+    @Override
+    public ByteBuffer createDouble(double value) {
+        return flip(ByteBuffer.allocate(9).put(DOUBLE).putDouble(value));
+    }
+
+    @Override
+    public DataResult<Boolean> getBooleanValue(ByteBuffer input) {
+        switch (tag(input)) {
+            case FALSE:
+                return DataResult.success(false);
+            case TRUE:
+                return DataResult.success(true);
+            case BYTE:
+                if (input.remaining() < 2) {
+                    return DataResult.error("Malformed boolean: " + new BufferUnderflowException());
+                }
+                return DataResult.success(input.get(input.position() + 1) != 0);
+            default:
+                return DataResult.error("Not a boolean: " + describe(input));
+        }
+    }
+
+    @Override
+    public ByteBuffer createBoolean(boolean value) {
+        return flip(ByteBuffer.allocate(1).put(value ? TRUE : FALSE));
+    }
+
+    @Override
+    public DataResult<String> getStringValue(ByteBuffer input) {
+        if (tag(input) != STRING) {
+            return DataResult.error("Not a string: " + describe(input));
+        }
+        try {
+            return DataResult.success(readString(input));
+        } catch (RuntimeException e) {
+            return DataResult.error("Malformed string: " + e);
+        }
+    }
+
+    @Override
+    public ByteBuffer createString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(1 + varIntSize(bytes.length) + bytes.length).put(STRING);
+        writeVarInt(out, bytes.length);
+        return flip(out.put(bytes));
+    }
+
+    @Override
+    public DataResult<ByteBuffer> mergeToList(ByteBuffer list, ByteBuffer value) {
+        return mergeToList(list, Arrays.asList(value));
+    }
+
+    @Override
+    public DataResult<ByteBuffer> mergeToList(ByteBuffer list, List<ByteBuffer> values) {
+        byte tag = tag(list);
+        if (tag != EMPTY && !isList(tag)) {
+            return DataResult.error("Not a list: " + describe(list));
+        }
+        List<ByteBuffer> elements;
+        try {
+            elements = tag == EMPTY ? new ArrayList<>(values.size()) : children(list);
+        } catch (RuntimeException e) {
+            return DataResult.error("Malformed list: " + e);
+        }
+        elements.addAll(values);
+        return DataResult.success(container(LIST, elements));
+    }
+
+    @Override
+    public DataResult<ByteBuffer> mergeToMap(ByteBuffer map, ByteBuffer key, ByteBuffer value) {
+        return mergeToMap(map, Collections.singletonMap(key, value));
+    }
+
+    @Override
+    public DataResult<ByteBuffer> mergeToMap(ByteBuffer map, Map<ByteBuffer, ByteBuffer> values) {
+        byte tag = tag(map);
+        if (tag != EMPTY && !isMap(tag)) {
+            return DataResult.error("Not a map: " + describe(map));
+        }
+        List<ByteBuffer> entries = new ArrayList<>();
+        if (tag != EMPTY) {
+            List<ByteBuffer> existing;
+            try {
+                existing = entries(map);
+            } catch (RuntimeException e) {
+                return DataResult.error("Malformed map: " + e);
+            }
+            for (int i = 0; i < existing.size(); i += 2) {
+                if (!values.containsKey(existing.get(i))) {
+                    entries.add(existing.get(i));
+                    entries.add(existing.get(i + 1));
+                }
+            }
+        }
+        for (Map.Entry<ByteBuffer, ByteBuffer> entry : values.entrySet()) {
+            if (tag(entry.getKey()) == EMPTY) {
+                return DataResult.error("Key is empty");
+            }
+            entries.add(entry.getKey());
+            entries.add(entry.getValue());
+        }
+        return DataResult.success(container(MAP, entries));
+    }
+
+    @Override
+    public DataResult<ByteBuffer> mergeToMap(ByteBuffer map, MapLike<ByteBuffer> values) {
+        Map<ByteBuffer, ByteBuffer> entries = values.entries()
+            .collect(Collectors.toMap(Pair::getFirst, Pair::getSecond, (a, b) -> b, LinkedHashMap::new));
+        return mergeToMap(map, entries);
+    }
+
+    @Override
+    public DataResult<Stream<Pair<ByteBuffer, ByteBuffer>>> getMapValues(ByteBuffer input) {
+        if (!isMap(tag(input))) {
+            return DataResult.error("Not a map: " + describe(input));
+        }
+        List<ByteBuffer> entries;
+        try {
+            entries = entries(input);
+        } catch (RuntimeException e) {
+            return DataResult.error("Malformed map: " + e);
+        }
+        return DataResult.success(IntStream.range(0, entries.size() / 2).mapToObj(i -> Pair.of(entries.get(i * 2), entries.get(i * 2 + 1))));
+    }
+
+    @Override
+    public DataResult<MapLike<ByteBuffer>> getMap(ByteBuffer input) {
+        if (!isMap(tag(input))) {
+            return DataResult.error("Not a map: " + describe(input));
+        }
+        try {
+            return DataResult.success(new BinaryMap(entries(input)));
+        } catch (RuntimeException e) {
+            return DataResult.error("Malformed map: " + e);
+        }
+    }
+
+    @Override
+    public ByteBuffer createMap(Stream<Pair<ByteBuffer, ByteBuffer>> map) {
+        List<ByteBuffer> entries = new ArrayList<>();
+        map.forEach(pair -> {
+            entries.add(pair.getFirst());
+            entries.add(pair.getSecond());
+        });
+        return container(MAP, entries);
+    }
+
+    @Override
+    public ByteBuffer createMap(Map<ByteBuffer, ByteBuffer> map) {
+        List<ByteBuffer> entries = new ArrayList<>(map.size() * 2);
+        for (Map.Entry<ByteBuffer, ByteBuffer> entry : map.entrySet()) {
+            entries.add(entry.getKey());
+            entries.add(entry.getValue());
+        }
+        return container(MAP, entries);
+    }
+
+    @Override
+    public DataResult<Stream<ByteBuffer>> getStream(ByteBuffer input) {
+        byte tag = tag(input);
+        try {
+            if (isList(tag)) {
+                return DataResult.success(children(input).stream());
+            }
+            Class<?> arrayType = arrayType(tag);
+            if (arrayType != null) {
+                Object array = getArray(input, arrayType);
+                return DataResult.success(PrimitiveArrayCodec.elements(this, array).stream());
+            }
+        } catch (RuntimeException e) {
+            return DataResult.error("Malformed list: " + e);
+        }
+        return DataResult.error("Not a list: " + describe(input));
+    }
+
+    @Override
+    public ByteBuffer createList(Stream<ByteBuffer> input) {
+        return container(LIST, input.collect(Collectors.toList()));
+    }
+
+    @Override
+    public DataResult<ByteBuffer> getByteBuffer(ByteBuffer input) {
+        if (tag(input) == BYTE_ARRAY) {
+            try {
+                return DataResult.success(payload(input));
+            } catch (RuntimeException e) {
+                return DataResult.error("Malformed byte array: " + e);
+            }
+        }
+        return DynamicOps.super.getByteBuffer(input);
+    }
+
+    @Override
+    public ByteBuffer createByteList(ByteBuffer input) {
+        ByteBuffer bytes = input.duplicate();
+        ByteBuffer out = ByteBuffer.allocate(1 + varIntSize(bytes.remaining()) + bytes.remaining()).put(BYTE_ARRAY);
+        writeVarInt(out, bytes.remaining());
+        return flip(out.put(bytes));
+    }
+
+    @Override
+    public DataResult<IntStream> getIntStream(ByteBuffer input) {
+        if (tag(input) == INT_ARRAY) {
+            try {
+                return DataResult.success(IntStream.of((int[]) getArray(input, int[].class)));
+            } catch (RuntimeException e) {
+                return DataResult.error("Malformed int array: " + e);
+            }
+        }
+        return DynamicOps.super.getIntStream(input);
+    }
+
+    @Override
+    public ByteBuffer createIntList(IntStream input) {
+        return createArray(input.toArray());
+    }
+
+    @Override
+    public DataResult<LongStream> getLongStream(ByteBuffer input) {
+        if (tag(input) == LONG_ARRAY) {
+            try {
+                return DataResult.success(LongStream.of((long[]) getArray(input, long[].class)));
+            } catch (RuntimeException e) {
+                return DataResult.error("Malformed long array: " + e);
+            }
+        }
+        return DynamicOps.super.getLongStream(input);
+    }
+
+    @Override
+    public ByteBuffer createLongList(LongStream input) {
+        return createArray(input.toArray());
+    }
+
+    @Override
+    public ByteBuffer remove(ByteBuffer input, String key) {
+        if (!isMap(tag(input))) {
+            return input;
+        }
+        ByteBuffer keyValue = createString(key);
+        List<ByteBuffer> entries = children(input);
+        List<ByteBuffer> result = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i += 2) {
+            if (!entries.get(i).equals(keyValue)) {
+                result.add(entries.get(i));
+                result.add(entries.get(i + 1));
+            }
+        }
+        return container(MAP, result);
+    }
+
+    @Override
+    public String toString() {
+        return "Binary";
+    }
+
+    /**
+     * Writes a primitive array as a raw block.
+     */
+    static ByteBuffer createArray(Object array) {
+        ByteBuffer out;
+        if (array instanceof byte[]) {
+            return INSTANCE.createByteList(ByteBuffer.wrap((byte[]) array));
+        } else if (array instanceof short[]) {
+            short[] shorts = (short[]) array;
+            out = arrayHeader(SHORT_ARRAY, shorts.length, 2);
+            out.asShortBuffer().put(shorts);
+        } else if (array instanceof int[]) {
+            int[] ints = (int[]) array;
+            out = arrayHeader(INT_ARRAY, ints.length, 4);
+            out.asIntBuffer().put(ints);
+        } else if (array instanceof long[]) {
+            long[] longs = (long[]) array;
+            out = arrayHeader(LONG_ARRAY, longs.length, 8);
+            out.asLongBuffer().put(longs);
+        } else if (array instanceof float[]) {
+            float[] floats = (float[]) array;
+            out = arrayHeader(FLOAT_ARRAY, floats.length, 4);
+            out.asFloatBuffer().put(floats);
+        } else if (array instanceof double[]) {
+            double[] doubles = (double[]) array;
+            out = arrayHeader(DOUBLE_ARRAY, doubles.length, 8);
+            out.asDoubleBuffer().put(doubles);
+        } else if (array instanceof boolean[]) {
+            boolean[] booleans = (boolean[]) array;
+            out = arrayHeader(BOOLEAN_ARRAY, booleans.length, 1);
+            for (int i = 0; i < booleans.length; i++) {
+                out.put(out.position() + i, (byte) (booleans[i] ? 1 : 0));
+            }
+        } else {
+            throw new IllegalArgumentException("Not a primitive array: " + array);
+        }
+        out.position(0);
+        return out;
+    }
+
+    /**
+     * @return the array read from a raw block, or {@code null} if the input is not a block of the given type
+     * @throws RuntimeException if the block is malformed
+     */
+    static Object getArray(ByteBuffer input, Class<?> type) {
+        byte tag = tag(input);
+        if (type != arrayType(tag)) {
+            return null;
+        }
+        ByteBuffer in = input.duplicate().order(ByteOrder.BIG_ENDIAN);
+        in.get();
+        int length = readVarInt(in);
+        // checked before allocating, so a corrupt length cannot allocate more than the input holds
+        if (length < 0 || (long) length * width(tag) > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        switch (tag) {
+            case BYTE_ARRAY: {
+                byte[] array = new byte[length];
+                in.get(array);
+                return array;
+            }
+            case SHORT_ARRAY: {
+                short[] array = new short[length];
+                in.asShortBuffer().get(array);
+                return array;
+            }
+            case INT_ARRAY: {
+                int[] array = new int[length];
+                in.asIntBuffer().get(array);
+                return array;
+            }
+            case LONG_ARRAY: {
+                long[] array = new long[length];
+                in.asLongBuffer().get(array);
+                return array;
+            }
+            case FLOAT_ARRAY: {
+                float[] array = new float[length];
+                in.asFloatBuffer().get(array);
+                return array;
+            }
+            case DOUBLE_ARRAY: {
+                double[] array = new double[length];
+                in.asDoubleBuffer().get(array);
+                return array;
+            }
+            default: {
+                boolean[] array = new boolean[length];
+                for (int i = 0; i < length; i++) {
+                    array[i] = in.get() != 0;
+                }
+                return array;
+            }
+        }
+    }
+
+    private static Class<?> arrayType(byte tag) {
+        switch (tag) {
+            case BYTE_ARRAY:
+                return byte[].class;
+            case SHORT_ARRAY:
+                return short[].class;
+            case INT_ARRAY:
+                return int[].class;
+            case LONG_ARRAY:
+                return long[].class;
+            case FLOAT_ARRAY:
+                return float[].class;
+            case DOUBLE_ARRAY:
+                return double[].class;
+            case BOOLEAN_ARRAY:
+                return boolean[].class;
+            default:
+                return null;
+        }
+    }
+
+    private static int width(byte tag) {
+        switch (tag) {
+            case SHORT_ARRAY:
+                return 2;
+            case INT_ARRAY:
+            case FLOAT_ARRAY:
+                return 4;
+            case LONG_ARRAY:
+            case DOUBLE_ARRAY:
+                return 8;
+            default:
+                return 1;
+        }
+    }
+
+    private static ByteBuffer arrayHeader(byte tag, int length, int width) {
+        ByteBuffer out = ByteBuffer.allocate(1 + varIntSize(length) + length * width).put(tag);
+        writeVarInt(out, length);
+        return out;
+    }
+
+    private static boolean isList(byte tag) {
+        return tag == LIST || tag == LIST_STREAM;
+    }
+
+    private static boolean isMap(byte tag) {
+        return tag == MAP || tag == MAP_STREAM;
+    }
+
+    private static byte tag(ByteBuffer input) {
+        // missing map entries are read as null
+        return input != null && input.hasRemaining() ? input.get(input.position()) : -1;
+    }
+
+    private static ByteBuffer container(byte tag, List<ByteBuffer> children) {
+        int length = 0;
+        for (ByteBuffer child : children) {
+            length += child.remaining();
+        }
+        ByteBuffer out = ByteBuffer.allocate(1 + varIntSize(length) + length).put(tag);
+        writeVarInt(out, length);
+        for (ByteBuffer child : children) {
+            out.put(child.duplicate());
+        }
+        return flip(out);
+    }
+
+    /**
+     * @return the keys and values of a map, stored alternately
+     */
+    private static List<ByteBuffer> entries(ByteBuffer map) {
+        List<ByteBuffer> entries = children(map);
+        if (entries.size() % 2 != 0) {
+            throw new IllegalArgumentException("Map without a value for its last key");
+        }
+        return entries;
+    }
+
+    /**
+     * @return the values stored in a list, or the keys and values stored alternately in a map
+     */
+    private static List<ByteBuffer> children(ByteBuffer input) {
+        byte tag = tag(input);
+        ByteBuffer in;
+        if (tag == LIST_STREAM || tag == MAP_STREAM) {
+            in = input.duplicate();
+            in.get();
+            int start = in.position();
+            skipStream(in);
+            in = slice(in, start, in.position() - 1);
+        } else {
+            in = payload(input);
+        }
+        List<ByteBuffer> children = new ArrayList<>();
+        while (in.hasRemaining()) {
+            int start = in.position();
+            skip(in);
+            children.add(slice(in, start, in.position()));
+        }
+        return children;
+    }
+
+    private static ByteBuffer payload(ByteBuffer input) {
+        ByteBuffer in = input.duplicate();
+        in.get();
+        int length = readVarInt(in);
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return slice(in, in.position(), in.position() + length);
+    }
+
+    private static String readString(ByteBuffer input) {
+        ByteBuffer in = payload(input);
+        if (in.hasArray()) {
+            return new String(in.array(), in.arrayOffset() + in.position(), in.remaining(), StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[in.remaining()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skip(ByteBuffer in) {
+        byte tag = in.get();
+        switch (tag) {
+            case EMPTY:
+            case FALSE:
+            case TRUE:
+                return;
+            case BYTE:
+                in.get();
+                return;
+            case SHORT:
+            case INT:
+                readVarInt(in);
+                return;
+            case LONG:
+                readVarLong(in);
+                return;
+            case FLOAT:
+                advance(in, 4);
+                return;
+            case DOUBLE:
+                advance(in, 8);
+                return;
+            case STRING:
+            case LIST:
+            case MAP:
+            case BYTE_ARRAY:
+            case BOOLEAN_ARRAY:
+                advance(in, readVarInt(in));
+                return;
+            case SHORT_ARRAY:
+                advance(in, readVarInt(in) * 2L);
+                return;
+            case INT_ARRAY:
+            case FLOAT_ARRAY:
+                advance(in, readVarInt(in) * 4L);
+                return;
+            case LONG_ARRAY:
+            case DOUBLE_ARRAY:
+                advance(in, readVarInt(in) * 8L);
+                return;
+            case LIST_STREAM:
+            case MAP_STREAM:
+                skipStream(in);
+                return;
+            default:
+                throw new IllegalArgumentException("Unknown tag " + tag + " at " + (in.position() - 1));
+        }
+    }
+
+    private static void skipStream(ByteBuffer in) {
+        while (in.get(in.position()) != END) {
+            skip(in);
+        }
+        in.get();
+    }
+
+    private static void advance(ByteBuffer in, long length) {
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        in.position(in.position() + (int) length);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(end);
+        slice.position(start);
+        return slice.slice();
+    }
+
+    private static ByteBuffer flip(ByteBuffer buffer) {
+        buffer.flip();
+        return buffer;
+    }
+
+    private static String describe(ByteBuffer input) {
+        try {
+            Object value = INSTANCE.convertTo(JavaPrimitiveOps.INSTANCE, input);
+            return value != null && value.getClass().isArray() ? value.getClass().getSimpleName() : String.valueOf(value);
+        } catch (RuntimeException e) {
+            return "<tag " + tag(input) + ">";
+        }
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static void writeVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int readVarInt(ByteBuffer in) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varlong");
+    }
+
+    private static final class BinaryMap implements MapLike<ByteBuffer> {
+
+        private final List<ByteBuffer> entries;
+        private Map<String, ByteBuffer> byName;
+
+        private BinaryMap(List<ByteBuffer> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public ByteBuffer get(ByteBuffer key) {
+            if (tag(key) == STRING) {
+                return get(readString(key));
+            }
+            for (int i = 0; i < entries.size(); i += 2) {
+                if (entries.get(i).equals(key)) {
+                    return entries.get(i + 1);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public ByteBuffer get(String key) {
+            if (byName == null) {
+                Map<String, ByteBuffer> map = new HashMap<>();
+                for (int i = 0; i < entries.size(); i += 2) {
+                    if (tag(entries.get(i)) == STRING) {
+                        map.put(readString(entries.get(i)), entries.get(i + 1));
+                    }
+                }
+                byName = map;
+            }
+            return byName.get(key);
+        }
+
+        @Override
+        public Stream<Pair<ByteBuffer, ByteBuffer>> entries() {
+            return IntStream.range(0, entries.size() / 2).mapToObj(i -> Pair.of(entries.get(i * 2), entries.get(i * 2 + 1)));
+        }
+
+        @Override
+        public String toString() {
+            return "MapLike[" + describe(container(MAP, entries)) + "]";
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.serialization.Codec;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+final class ClassLayout<A> {
+
+    // scanned once per class, so the preloader's discovery and the codec created later share a layout
+    private static final ClassValue<ClassLayout<?>> LAYOUTS = new ClassValue<ClassLayout<?>>() {
+        @Override
+        protected ClassLayout<?> computeValue(Class<?> type) {
+            return scan(type);
+        }
+    };
+
+    private final Class<A> type;
+    private final List<Component> components;
+    private final Constructor<A> constructor;
+
+    ClassLayout(Class<A> type, List<Component> components, Constructor<A> constructor) {
+        this.type = type;
+        this.components = Collections.unmodifiableList(components);
+        this.constructor = constructor;
+    }
+
+    Class<A> type() {
+        return type;
+    }
+
+    List<Component> components() {
+        return components;
+    }
+
+    Constructor<A> constructor() {
+        return constructor;
+    }
+
+    /**
+     * @return a 64-bit FNV-1a hash of the component names and generic types, in declaration order, including the
+     * constants of enums as they are encoded by ordinal
+     */
+    long fingerprint() {
+        long hash = 0xcbf29ce484222325L;
+        for (Component component : components) {
+            StringBuilder builder = new StringBuilder(component.name()).append(':').append(component.genericType().getTypeName());
+            appendConstants(component.genericType(), builder);
+            String signature = builder.append(';').toString();
+            for (int i = 0; i < signature.length(); i++) {
+                hash ^= signature.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    private static void appendConstants(Type type, StringBuilder builder) {
+        if (TypeCodec.isEnum(type)) {
+            Class<?> enumType = ((Class<?>) type).isEnum() ? (Class<?>) type : ((Class<?>) type).getSuperclass();
+            for (Object constant : enumType.getEnumConstants()) {
+                builder.append(',').append(((Enum<?>) constant).name());
+            }
+        } else if (type instanceof ParameterizedType) {
+            for (Type argument : ((ParameterizedType) type).getActualTypeArguments()) {
+                appendConstants(argument, builder);
+            }
+        } else if (type instanceof Class && ((Class<?>) type).isArray()) {
+            appendConstants(((Class<?>) type).getComponentType(), builder);
+        }
+    }
+
+    List<Codec<?>> codecs(TypeCodec.Mode mode) {
+        List<Codec<?>> codecs = new ArrayList<>(components.size());
+        for (Component component : components) {
+            codecs.add(TypeCodec.of(component.genericType(), mode));
+        }
+        return codecs;
+    }
+
+    /**
+     * @throws RuntimeException if the type has no accessible constructor or accessor for a component, which is
+     * thrown again by later calls
+     */
+    @SuppressWarnings("unchecked")
+    static <A> ClassLayout<A> of(Class<A> type) {
+        return (ClassLayout<A>) LAYOUTS.get(type);
+    }
+
+    private static <A> ClassLayout<A> scan(Class<A> type) {
+        Object event = CodecEvents.beginScan();
+        ClassLayout<A> record = Records.layout(type);
+        if (record != null) {
+            CodecEvents.endScan(event, type, "layout", record.components().size());
+            return record;
+        }
+        List<Component> components = new ArrayList<>();
+        List<Class<?>> argTypes = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) || field.isSynthetic()) {
+                continue;
+            }
+            Optional<Method> getter = findAccessible(type, field.getType(), field.getName(), "get" + Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1));
+            if (!getter.isPresent() && !Modifier.isPublic(field.getModifiers())) {
+                throw new RuntimeException("Unable to find accessor for component " + field.getName());
+            }
+            components.add(new Component(field, getter.orElse(null)));
+            argTypes.add(field.getType());
+        }
+        try {
+            Constructor<A> candidate = type.getConstructor(argTypes.toArray(new Class<?>[0]));
+            if (Modifier.isPublic(candidate.getModifiers())) {
+                CodecEvents.endScan(event, type, "layout", components.size());
+                return new ClassLayout<>(type, components, candidate);
+            } else {
+                throw new RuntimeException("Constructor " + candidate + " is not accessible");
+            }
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Optional<Method> findAccessible(Class<?> type, Class<?> returnType, String... names) {
+        for (String s : names) {
+            try {
+                Method method = type.getMethod(s);
+                if (!Modifier.isStatic(method.getModifiers()) && Modifier.isPublic(method.getModifiers())
+                    && method.getParameterCount() == 0 && method.getReturnType().equals(returnType)) {
+                    return Optional.of(method);
+                }
+            } catch (Exception ignored) {
+            }
+        }
+        return Optional.empty();
+    }
+
+    static final class Component {
+
+        private final String name;
+        private final Type genericType;
+        private final Class<?> rawType;
+        private final Field field;
+        private final Method getter;
+
+        private Component(Field field, Method getter) {
+            this(field.getName(), field.getGenericType(), field.getType(), field, getter);
+        }
+
+        Component(String name, Type genericType, Class<?> rawType, Field field, Method getter) {
+            this.name = name;
+            this.genericType = genericType;
+            this.rawType = rawType;
+            this.field = field;
+            this.getter = getter;
+        }
+
+        String name() {
+            return name;
+        }
+
+        Type genericType() {
+            return genericType;
+        }
+
+        Class<?> rawType() {
+            return rawType;
+        }
+
+        /**
+         * @return the field of this component, or {@code null} for record components, which are read by their getter
+         */
+        Field field() {
+            return field;
+        }
+
+        /**
+         * @return the public getter of this component, or {@code null} if it is read from the public field
+         */
+        Method getter() {
+            return getter;
+        }
+    }
+}
@@ -1,36 +1,46 @@
 package io.izzel.util.codec.common;
 
+import com.mojang.datafixers.util.Pair;
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.DataResult;
 import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.JsonOps;
 import com.mojang.serialization.MapCodec;
 import com.mojang.serialization.MapLike;
 import com.mojang.serialization.RecordBuilder;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 class ClassMapCodec<A> extends MapCodec<A> {
 
+    private static final int MAX_CACHED_OPS = 8;
+
     private final Class<A> type;
+    private final ClassLayout<A> layout;
     private final TypeAccessor<A> accessor;
+    private volatile OpsKeys<?>[] opsKeys = new OpsKeys<?>[0];
 
-    ClassMapCodec(Class<A> type) {
-        this.type = type;
-        this.accessor = new Reflection<>(type);
+    ClassMapCodec(ClassLayout<A> layout, List<Codec<?>> codecs) {
+        this.type = layout.type();
+        this.layout = layout;
+        this.accessor = new Reflection<>(layout, codecs);
     }
 
     @Override
     public <T> Stream<T> keys(DynamicOps<T> ops) {
-        return accessor.componentKeys().stream().map(ops::createString);
+        return Arrays.stream(opsKeys(ops).keys);
     }
 
     @Override
@@ -38,14 +48,18 @@ class ClassMapCodec<A> extends MapCodec<A> {
     public <T> DataResult<A> decode(DynamicOps<T> ops, MapLike<T> input) {
         List<String> keys = accessor.componentKeys();
         List<Codec<?>> codecs = accessor.componentCodecs();
+        OpsKeys<T> opsKeys = opsKeys(ops);
         Object[] args = new Object[keys.size()];
         for (int i = 0; i < keys.size(); i++) {
-            String key = keys.get(i);
-            DataResult<?> result = codecs.get(i).parse(ops, input.get(key));
-            if (!result.result().isPresent()) { // indicate error
-                return (DataResult<A>) result;
+            T value = opsKeys.byName ? input.get(keys.get(i)) : input.get(opsKeys.keys[i]);
+            // decode rather than parse, and a single result() call, so success allocates no further wrappers
+            DataResult<? extends Pair<?, T>> result = codecs.get(i).decode(ops, value);
+            Optional<? extends Pair<?, T>> success = result.result();
+            if (!success.isPresent()) { // indicate error, the same as parse would
+                CodecEvents.decodeFailed(type, keys.get(i), layout.components().get(i).rawType(), result);
+                return (DataResult<A>) result.map(Pair::getFirst);
             }
-            args[i] = result.result().get();
+            args[i] = success.get().getFirst();
         }
         return accessor.newInstance(args);
     }
@@ -55,25 +69,118 @@ class ClassMapCodec<A> extends MapCodec<A> {
     public <T> RecordBuilder<T> encode(A input, DynamicOps<T> ops, RecordBuilder<T> prefix) {
         List<String> keys = accessor.componentKeys();
         List<Codec<?>> codecs = accessor.componentCodecs();
+        List<ComponentAccessor<A>> accessors = accessor.componentAccessors();
+        // string builders keep the names as they are, others would create the key objects again
+        OpsKeys<T> cached = prefix instanceof RecordBuilder.AbstractStringBuilder ? null : opsKeys(ops);
+        T[] opsKeys = cached == null ? null : cached.keys;
+        if (cached != null && cached.compactKeys != null) {
+            JavaPrimitiveOps.expectKeys(prefix, cached.compactKeys);
+        }
         for (int i = 0; i < keys.size(); i++) {
-            String key = keys.get(i);
-            Codec<Object> codec = (Codec<Object>) codecs.get(i);
-            prefix = prefix.add(key, accessor.component(input, key).flatMap(it -> codec.encodeStart(ops, it)));
+            DataResult<T> value = encode(accessors.get(i), (Codec<Object>) codecs.get(i), input, ops);
+            prefix = opsKeys == null ? prefix.add(keys.get(i), value) : prefix.add(opsKeys[i], value);
         }
         return prefix;
     }
 
+    // the component is read without a success wrapper, only failures build a result
+    private static <A, T> DataResult<T> encode(ComponentAccessor<A> component, Codec<Object> codec, A input, DynamicOps<T> ops) {
+        Object value;
+        try {
+            value = component.get(input);
+        } catch (Throwable e) {
+            return component.failure(e);
+        }
+        return codec.encodeStart(ops, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> OpsKeys<T> opsKeys(DynamicOps<T> ops) {
+        OpsKeys<?>[] cache = this.opsKeys;
+        for (OpsKeys<?> entry : cache) {
+            if (entry.get() == ops) {
+                return (OpsKeys<T>) entry;
+            }
+        }
+        OpsKeys<T> created = new OpsKeys<>(ops, accessor.componentKeys());
+        // drop collected ops, and the least recently added entry once full, so any number of ops stays bounded
+        List<OpsKeys<?>> live = new ArrayList<>(cache.length + 1);
+        for (OpsKeys<?> entry : cache) {
+            if (entry.get() != null) {
+                live.add(entry);
+            }
+        }
+        if (live.size() == MAX_CACHED_OPS) {
+            live.remove(0);
+        }
+        live.add(created);
+        // racing threads may drop each other's entries, which are then created again
+        this.opsKeys = live.toArray(new OpsKeys<?>[0]);
+        return created;
+    }
+
+    Class<A> type() {
+        return type;
+    }
+
+    ClassLayout<A> layout() {
+        return layout;
+    }
+
+    List<String> componentKeys() {
+        return accessor.componentKeys();
+    }
+
+    List<Codec<?>> componentCodecs() {
+        return accessor.componentCodecs();
+    }
+
+    <R> DataResult<R> component(A instance, String key) {
+        return accessor.component(instance, key);
+    }
+
+    DataResult<A> newInstance(Object... args) {
+        return accessor.newInstance(args);
+    }
+
     @Override
     public String toString() {
         return "ClassMapCodec[" + type + "]";
     }
 
+    /**
+     * The component keys created by one ops, looked up by identity. The ops is held weakly, so codecs do not keep
+     * short-lived ops reachable.
+     */
+    private static final class OpsKeys<T> extends WeakReference<DynamicOps<T>> {
+
+        private final T[] keys;
+        // shared by the compact maps of the records encoded with java ops, together with their lookup index
+        private final CompactMap.Keys compactKeys;
+        // these ops look up map entries by name without creating a key
+        private final boolean byName;
+
+        @SuppressWarnings("unchecked")
+        private OpsKeys(DynamicOps<T> ops, List<String> names) {
+            super(ops);
+            this.keys = (T[]) new Object[names.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = ops.createString(names.get(i));
+            }
+            this.compactKeys = ops instanceof JavaPrimitiveOps ? new CompactMap.Keys(keys) : null;
+            this.byName = ops instanceof JsonOps || ops instanceof JavaPrimitiveOps || ops instanceof BinaryOps
+                || ops instanceof MappedBinaryOps;
+        }
+    }
+
     private interface TypeAccessor<A> {
 
         List<String> componentKeys();
 
         List<Codec<?>> componentCodecs();
 
+        List<ComponentAccessor<A>> componentAccessors();
+
         <R> DataResult<R> component(A instance, String key);
 
         DataResult<A> newInstance(Object... args);
@@ -83,31 +190,23 @@ class ClassMapCodec<A> extends MapCodec<A> {
 
         private final List<String> fields = new ArrayList<>();
         private final List<Codec<?>> codecs = new ArrayList<>();
+        private final List<ComponentAccessor<A>> ordered = new ArrayList<>();
         private final Map<String, ComponentAccessor<A>> accessors = new HashMap<>();
         private final Constructor<A> constructor;
-
-        private Reflection(Class<A> type) {
-            List<Class<?>> argTypes = new ArrayList<>();
-            for (Field field : type.getDeclaredFields()) {
-                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers()) || field.isSynthetic()) {
-                    continue;
-                }
-                fields.add(field.getName());
-                codecs.add(TypeCodec.of(field.getGenericType()));
-                accessors.put(field.getName(), ComponentAccessor.forField(type, field));
-                argTypes.add(field.getType());
-            }
-            try {
-                Constructor<A> candidate = type.getConstructor(argTypes.toArray(new Class<?>[0]));
-                if (Modifier.isPublic(candidate.getModifiers())) {
-                    this.constructor = candidate;
-                } else {
-                    throw new RuntimeException("Constructor " + candidate + " is not accessible");
-                }
-            } catch (NoSuchMethodException e) {
-                throw new RuntimeException(e);
+        private final MethodHandle instantiator;
+
+        private Reflection(ClassLayout<A> layout, List<Codec<?>> codecs) {
+            Object event = CodecEvents.beginScan();
+            for (ClassLayout.Component component : layout.components()) {
+                ComponentAccessor<A> accessor = ComponentAccessor.forComponent(component);
+                fields.add(component.name());
+                ordered.add(accessor);
+                accessors.put(component.name(), accessor);
             }
-
+            this.codecs.addAll(codecs);
+            this.constructor = layout.constructor();
+            this.instantiator = Handles.constructor(constructor).orElse(null);
+            CodecEvents.endScan(event, layout.type(), "accessors", fields.size());
         }
 
         @Override
@@ -120,16 +219,25 @@ class ClassMapCodec<A> extends MapCodec<A> {
             return codecs;
         }
 
+        @Override
+        public List<ComponentAccessor<A>> componentAccessors() {
+            return ordered;
+        }
+
         @Override
         public <R> DataResult<R> component(A instance, String key) {
             return accessors.get(key).component(instance);
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         public DataResult<A> newInstance(Object... args) {
             try {
+                if (instantiator != null) {
+                    return DataResult.success((A) (Object) instantiator.invokeExact(args));
+                }
                 return DataResult.success(constructor.newInstance(args));
-            } catch (Exception e) {
+            } catch (Throwable e) {
                 return DataResult.error("Failed to initialize " + constructor.getDeclaringClass() + ": " + e.getMessage());
             }
         }
@@ -137,33 +245,86 @@ class ClassMapCodec<A> extends MapCodec<A> {
 
     private interface ComponentAccessor<A> {
 
-        <R> DataResult<R> component(A instance);
+        Object get(A instance) throws Throwable;
+
+        /**
+         * @return the error reported for a failure of {@link #get}, unexpected failures are rethrown
+         */
+        <R> DataResult<R> failure(Throwable e);
 
-        static <A> ComponentAccessor<A> forField(Class<A> type, Field field) {
-            Optional<Method> optional = findAccessible(type, field.getType(), field.getName(), "get" + Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1));
-            if (optional.isPresent()) {
-                return new MethodAccessor<>(optional.get());
+        @SuppressWarnings("unchecked")
+        default <R> DataResult<R> component(A instance) {
+            try {
+                return DataResult.success((R) get(instance));
+            } catch (Throwable e) {
+                return failure(e);
+            }
+        }
+
+        static <A> ComponentAccessor<A> forComponent(ClassLayout.Component component) {
+            Method method = component.getter();
+            if (method != null) {
+                return Handles.<A>getter(method)
+                    .<ComponentAccessor<A>>map(getter -> new LambdaAccessor<>(method, getter))
+                    .orElseGet(() -> new MethodAccessor<>(method));
             } else {
-                if (Modifier.isPublic(field.getModifiers())) {
-                    return new FieldAccessor<>(field);
-                } else {
-                    throw new RuntimeException("Unable to find accessor for component " + field.getName());
-                }
+                Field field = component.field();
+                return Handles.getter(field)
+                    .<ComponentAccessor<A>>map(handle -> new HandleAccessor<>(field, handle))
+                    .orElseGet(() -> new FieldAccessor<>(field));
             }
         }
 
-        static Optional<Method> findAccessible(Class<?> type, Class<?> returnType, String... names) {
-            for (String s : names) {
-                try {
-                    Method method = type.getMethod(s);
-                    if (!Modifier.isStatic(method.getModifiers()) && Modifier.isPublic(method.getModifiers())
-                        && method.getParameterCount() == 0 && method.getReturnType().equals(returnType)) {
-                        return Optional.of(method);
-                    }
-                } catch (Exception ignored) {
-                }
+        static RuntimeException rethrow(Throwable e) {
+            if (e instanceof Error) {
+                throw (Error) e;
             }
-            return Optional.empty();
+            return (RuntimeException) e;
+        }
+    }
+
+    private static class LambdaAccessor<A> implements ComponentAccessor<A> {
+
+        private final Method method;
+        private final Function<A, Object> getter;
+
+        private LambdaAccessor(Method method, Function<A, Object> getter) {
+            this.method = method;
+            this.getter = getter;
+        }
+
+        @Override
+        public Object get(A instance) {
+            return getter.apply(instance);
+        }
+
+        @Override
+        public <R> DataResult<R> failure(Throwable e) {
+            if (e instanceof Exception) {
+                return DataResult.error("Failed to invoke " + method + ": " + e.getMessage());
+            }
+            throw ComponentAccessor.rethrow(e);
+        }
+    }
+
+    private static class HandleAccessor<A> implements ComponentAccessor<A> {
+
+        private final Field field;
+        private final MethodHandle handle;
+
+        private HandleAccessor(Field field, MethodHandle handle) {
+            this.field = field;
+            this.handle = handle;
+        }
+
+        @Override
+        public Object get(A instance) throws Throwable {
+            return handle.invokeExact((Object) instance);
+        }
+
+        @Override
+        public <R> DataResult<R> failure(Throwable e) {
+            return DataResult.error("Failed to get " + field + ": " + e.getMessage());
         }
     }
 
@@ -176,13 +337,16 @@ class ClassMapCodec<A> extends MapCodec<A> {
         }
 
         @Override
-        @SuppressWarnings("unchecked")
-        public <R> DataResult<R> component(A instance) {
-            try {
-                return DataResult.success((R) method.invoke(instance));
-            } catch (Exception e) {
+        public Object get(A instance) throws Exception {
+            return method.invoke(instance);
+        }
+
+        @Override
+        public <R> DataResult<R> failure(Throwable e) {
+            if (e instanceof Exception) {
                 return DataResult.error("Failed to invoke " + method + ": " + e.getMessage());
             }
+            throw ComponentAccessor.rethrow(e);
         }
     }
 
@@ -195,13 +359,16 @@ class ClassMapCodec<A> extends MapCodec<A> {
         }
 
         @Override
-        @SuppressWarnings("unchecked")
-        public <R> DataResult<R> component(A instance) {
-            try {
-                return DataResult.success((R) field.get(instance));
-            } catch (IllegalAccessException e) {
+        public Object get(A instance) throws IllegalAccessException {
+            return field.get(instance);
+        }
+
+        @Override
+        public <R> DataResult<R> failure(Throwable e) {
+            if (e instanceof IllegalAccessException) {
                 return DataResult.error("Failed to get " + field + ": " + e.getMessage());
             }
+            throw ComponentAccessor.rethrow(e);
         }
     }
 }
@@ -0,0 +1,51 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+
+import java.lang.reflect.Type;
+
+/**
+ * Hooks for diagnostic events, which do nothing here. The Java 11 layer of the multi-release jar replaces this class
+ * with one committing Flight Recorder events, see {@code src/main/java11}.
+ * <p>
+ * The begin methods return an event handed back to the matching end method, which may be {@code null}.
+ */
+final class CodecEvents {
+
+    private CodecEvents() {
+    }
+
+    static Object beginResolution() {
+        return null;
+    }
+
+    /**
+     * Only called for codecs that are created, cached lookups report nothing.
+     *
+     * @param depth the number of types being resolved by the thread
+     */
+    static void endResolution(Object event, Type type, TypeCodec.Mode mode, int depth) {
+    }
+
+    static Object beginScan() {
+        return null;
+    }
+
+    static void endScan(Object event, Class<?> type, String phase, int components) {
+    }
+
+    /**
+     * @return the codec, or a codec reporting its slow calls
+     */
+    static <A> Codec<A> timed(Type type, Codec<A> codec) {
+        return codec;
+    }
+
+    /**
+     * Reports a component of the type failing to decode. Outer types report the same failure with their key, any other
+     * report is the innermost of a failure.
+     */
+    static void decodeFailed(Class<?> type, String key, Class<?> componentType, DataResult<?> result) {
+    }
+}
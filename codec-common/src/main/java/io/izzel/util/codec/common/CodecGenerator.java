@@ -0,0 +1,349 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.MapCodec;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Defines a {@link MapCodec} class per target class with the component loop unrolled, primitive components
+ * read and written through the matching {@code DynamicOps} methods, and the constructor invoked directly.
+ */
+final class CodecGenerator implements Opcodes {
+
+    private static final String MAP_CODEC = "com/mojang/serialization/MapCodec";
+    private static final String CODEC = "com/mojang/serialization/Codec";
+    private static final String DATA_RESULT = "com/mojang/serialization/DataResult";
+    private static final String DYNAMIC_OPS = "com/mojang/serialization/DynamicOps";
+    private static final String MAP_LIKE = "com/mojang/serialization/MapLike";
+    private static final String RECORD_BUILDER = "com/mojang/serialization/RecordBuilder";
+    private static final String OPTIONAL = "java/util/Optional";
+    private static final String STREAM_BUILDER = "java/util/stream/Stream$Builder";
+
+    private static final Map<Class<?>, Primitive> PRIMITIVES = new HashMap<>();
+
+    static {
+        PRIMITIVES.put(boolean.class, new Primitive(Codec.BOOL, "Boolean", "getBooleanValue", "booleanValue"));
+        PRIMITIVES.put(byte.class, new Primitive(Codec.BYTE, "Byte", "getNumberValue", "byteValue"));
+        PRIMITIVES.put(short.class, new Primitive(Codec.SHORT, "Short", "getNumberValue", "shortValue"));
+        PRIMITIVES.put(int.class, new Primitive(Codec.INT, "Int", "getNumberValue", "intValue"));
+        PRIMITIVES.put(long.class, new Primitive(Codec.LONG, "Long", "getNumberValue", "longValue"));
+        PRIMITIVES.put(float.class, new Primitive(Codec.FLOAT, "Float", "getNumberValue", "floatValue"));
+        PRIMITIVES.put(double.class, new Primitive(Codec.DOUBLE, "Double", "getNumberValue", "doubleValue"));
+        PRIMITIVES.put(String.class, new Primitive(Codec.STRING, "String", "getStringValue", null));
+    }
+
+    private CodecGenerator() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <A> Optional<MapCodec<A>> generate(ClassLayout<A> layout, List<Codec<?>> codecs) {
+        if (!isAccessible(layout)) {
+            return Optional.empty();
+        }
+        try {
+            String name = "io/izzel/util/codec/common/generated/" + layout.type().getName().replace('.', '_') + "$MapCodec";
+            byte[] bytes = generate(name, layout, codecs);
+            Class<?> cl = new DefiningLoader(layout.type().getClassLoader()).define(name.replace('/', '.'), bytes);
+            Constructor<?> constructor = cl.getConstructor(Codec[].class);
+            return Optional.of((MapCodec<A>) constructor.newInstance((Object) codecs.toArray(new Codec<?>[0])));
+        } catch (Exception | LinkageError e) {
+            return Optional.empty();
+        }
+    }
+
+    // the generated class lives in another runtime package, everything it links against must be public
+    private static boolean isAccessible(ClassLayout<?> layout) {
+        if (!isPublic(layout.type())) {
+            return false;
+        }
+        for (ClassLayout.Component component : layout.components()) {
+            Method getter = component.getter();
+            if (!isPublic(component.rawType()) || (getter != null && !isPublic(getter.getDeclaringClass()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublic(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || Modifier.isPublic(type.getModifiers());
+    }
+
+    private static byte[] generate(String name, ClassLayout<?> layout, List<Codec<?>> codecs) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name, null, MAP_CODEC, null);
+        List<ClassLayout.Component> components = layout.components();
+        for (int i = 0; i < components.size(); i++) {
+            cw.visitField(ACC_PRIVATE | ACC_FINAL, "codec" + i, "L" + CODEC + ";", null, null).visitEnd();
+        }
+        generateConstructor(cw, name, components.size());
+        generateKeys(cw, components);
+        generateEncode(cw, name, layout, codecs);
+        generateDecode(cw, name, layout, codecs);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "toString", "()Ljava/lang/String;", null, null);
+        mv.visitCode();
+        mv.visitLdcInsn("GeneratedMapCodec[" + layout.type() + "]");
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void generateConstructor(ClassWriter cw, String name, int count) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "([L" + CODEC + ";)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, MAP_CODEC, "<init>", "()V", false);
+        for (int i = 0; i < count; i++) {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitLdcInsn(i);
+            mv.visitInsn(AALOAD);
+            mv.visitFieldInsn(PUTFIELD, name, "codec" + i, "L" + CODEC + ";");
+        }
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void generateKeys(ClassWriter cw, List<ClassLayout.Component> components) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "keys", "(L" + DYNAMIC_OPS + ";)Ljava/util/stream/Stream;", null, null);
+        mv.visitCode();
+        mv.visitMethodInsn(INVOKESTATIC, "java/util/stream/Stream", "builder", "()L" + STREAM_BUILDER + ";", true);
+        mv.visitVarInsn(ASTORE, 2);
+        for (ClassLayout.Component component : components) {
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitLdcInsn(component.name());
+            mv.visitMethodInsn(INVOKEINTERFACE, DYNAMIC_OPS, "createString", "(Ljava/lang/String;)Ljava/lang/Object;", true);
+            mv.visitMethodInsn(INVOKEINTERFACE, STREAM_BUILDER, "accept", "(Ljava/lang/Object;)V", true);
+        }
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKEINTERFACE, STREAM_BUILDER, "build", "()Ljava/util/stream/Stream;", true);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    // encode(Object input, DynamicOps ops, RecordBuilder prefix)
+    private static void generateEncode(ClassWriter cw, String name, ClassLayout<?> layout, List<Codec<?>> codecs) {
+        String owner = Type.getInternalName(layout.type());
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "encode", "(Ljava/lang/Object;L" + DYNAMIC_OPS + ";L" + RECORD_BUILDER + ";)L" + RECORD_BUILDER + ";", null, null);
+        mv.visitCode();
+        Label start = new Label(), end = new Label(), handler = new Label();
+        mv.visitTryCatchBlock(start, end, handler, "java/lang/Throwable");
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitTypeInsn(CHECKCAST, owner);
+        mv.visitVarInsn(ASTORE, 4);
+        mv.visitLabel(start);
+        List<ClassLayout.Component> components = layout.components();
+        for (int i = 0; i < components.size(); i++) {
+            ClassLayout.Component component = components.get(i);
+            Class<?> rawType = component.rawType();
+            Primitive primitive = PRIMITIVES.get(rawType);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitLdcInsn(component.name());
+            if (primitive != null && primitive.codec == codecs.get(i)) {
+                mv.visitVarInsn(ALOAD, 2);
+                readComponent(mv, owner, component);
+                mv.visitMethodInsn(INVOKEINTERFACE, DYNAMIC_OPS, "create" + primitive.name, "(" + Type.getDescriptor(rawType) + ")Ljava/lang/Object;", true);
+                mv.visitMethodInsn(INVOKEINTERFACE, RECORD_BUILDER, "add", "(Ljava/lang/String;Ljava/lang/Object;)L" + RECORD_BUILDER + ";", true);
+            } else {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, name, "codec" + i, "L" + CODEC + ";");
+                mv.visitVarInsn(ALOAD, 2);
+                readComponent(mv, owner, component);
+                box(mv, rawType);
+                mv.visitMethodInsn(INVOKEINTERFACE, CODEC, "encodeStart", "(L" + DYNAMIC_OPS + ";Ljava/lang/Object;)L" + DATA_RESULT + ";", true);
+                mv.visitMethodInsn(INVOKEINTERFACE, RECORD_BUILDER, "add", "(Ljava/lang/String;L" + DATA_RESULT + ";)L" + RECORD_BUILDER + ";", true);
+            }
+            mv.visitVarInsn(ASTORE, 3);
+        }
+        mv.visitLabel(end);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitInsn(ARETURN);
+        mv.visitLabel(handler);
+        mv.visitVarInsn(ASTORE, 5);
+        mv.visitVarInsn(ALOAD, 3);
+        error(mv, "Failed to encode " + layout.type() + ": ", 5);
+        mv.visitMethodInsn(INVOKEINTERFACE, RECORD_BUILDER, "withErrorsFrom", "(L" + DATA_RESULT + ";)L" + RECORD_BUILDER + ";", true);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    // decode(DynamicOps ops, MapLike input)
+    private static void generateDecode(ClassWriter cw, String name, ClassLayout<?> layout, List<Codec<?>> codecs) {
+        String owner = Type.getInternalName(layout.type());
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "decode", "(L" + DYNAMIC_OPS + ";L" + MAP_LIKE + ";)L" + DATA_RESULT + ";", null, null);
+        mv.visitCode();
+        List<ClassLayout.Component> components = layout.components();
+        int[] slots = new int[components.size()];
+        int next = 4;
+        for (int i = 0; i < components.size(); i++) {
+            ClassLayout.Component component = components.get(i);
+            Class<?> rawType = component.rawType();
+            Primitive primitive = PRIMITIVES.get(rawType);
+            boolean direct = primitive != null && primitive.codec == codecs.get(i);
+            if (direct) {
+                mv.visitVarInsn(ALOAD, 1);
+            } else {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, name, "codec" + i, "L" + CODEC + ";");
+                mv.visitVarInsn(ALOAD, 1);
+            }
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitLdcInsn(component.name());
+            mv.visitMethodInsn(INVOKEINTERFACE, MAP_LIKE, "get", "(Ljava/lang/String;)Ljava/lang/Object;", true);
+            if (direct) {
+                mv.visitMethodInsn(INVOKEINTERFACE, DYNAMIC_OPS, primitive.getter, "(Ljava/lang/Object;)L" + DATA_RESULT + ";", true);
+            } else {
+                mv.visitMethodInsn(INVOKEINTERFACE, CODEC, "parse", "(L" + DYNAMIC_OPS + ";Ljava/lang/Object;)L" + DATA_RESULT + ";", true);
+            }
+            mv.visitVarInsn(ASTORE, 3);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitMethodInsn(INVOKEVIRTUAL, DATA_RESULT, "result", "()L" + OPTIONAL + ";", false);
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKEVIRTUAL, OPTIONAL, "isPresent", "()Z", false);
+            Label present = new Label();
+            mv.visitJumpInsn(IFNE, present);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitInsn(ARETURN);
+            mv.visitLabel(present);
+            mv.visitMethodInsn(INVOKEVIRTUAL, OPTIONAL, "get", "()Ljava/lang/Object;", false);
+            if (direct && primitive.unbox != null && rawType != boolean.class) {
+                mv.visitTypeInsn(CHECKCAST, "java/lang/Number");
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Number", primitive.unbox, "()" + Type.getDescriptor(rawType), false);
+            } else {
+                unbox(mv, rawType);
+            }
+            Type slotType = Type.getType(rawType);
+            slots[i] = next;
+            mv.visitVarInsn(slotType.getOpcode(ISTORE), next);
+            next += slotType.getSize();
+        }
+        Label start = new Label(), end = new Label(), handler = new Label();
+        mv.visitTryCatchBlock(start, end, handler, "java/lang/Throwable");
+        mv.visitLabel(start);
+        mv.visitTypeInsn(NEW, owner);
+        mv.visitInsn(DUP);
+        for (int i = 0; i < components.size(); i++) {
+            mv.visitVarInsn(Type.getType(components.get(i).rawType()).getOpcode(ILOAD), slots[i]);
+        }
+        mv.visitMethodInsn(INVOKESPECIAL, owner, "<init>", Type.getConstructorDescriptor(layout.constructor()), false);
+        mv.visitMethodInsn(INVOKESTATIC, DATA_RESULT, "success", "(Ljava/lang/Object;)L" + DATA_RESULT + ";", false);
+        mv.visitLabel(end);
+        mv.visitInsn(ARETURN);
+        mv.visitLabel(handler);
+        mv.visitVarInsn(ASTORE, next);
+        error(mv, "Failed to initialize " + layout.type() + ": ", next);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void readComponent(MethodVisitor mv, String owner, ClassLayout.Component component) {
+        mv.visitVarInsn(ALOAD, 4);
+        Method getter = component.getter();
+        if (getter != null) {
+            mv.visitMethodInsn(INVOKEVIRTUAL, owner, getter.getName(), Type.getMethodDescriptor(getter), false);
+        } else {
+            mv.visitFieldInsn(GETFIELD, owner, component.name(), Type.getDescriptor(component.rawType()));
+        }
+    }
+
+    // DataResult.error(message + String.valueOf(throwable.getMessage()))
+    private static void error(MethodVisitor mv, String message, int throwable) {
+        mv.visitLdcInsn(message);
+        mv.visitVarInsn(ALOAD, throwable);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Throwable", "getMessage", "()Ljava/lang/String;", false);
+        mv.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf", "(Ljava/lang/Object;)Ljava/lang/String;", false);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;", false);
+        mv.visitMethodInsn(INVOKESTATIC, DATA_RESULT, "error", "(Ljava/lang/String;)L" + DATA_RESULT + ";", false);
+    }
+
+    private static void box(MethodVisitor mv, Class<?> type) {
+        if (type.isPrimitive()) {
+            Type boxed = boxed(type);
+            mv.visitMethodInsn(INVOKESTATIC, boxed.getInternalName(), "valueOf", "(" + Type.getDescriptor(type) + ")" + boxed.getDescriptor(), false);
+        }
+    }
+
+    private static void unbox(MethodVisitor mv, Class<?> type) {
+        if (type.isPrimitive()) {
+            Type boxed = boxed(type);
+            mv.visitTypeInsn(CHECKCAST, boxed.getInternalName());
+            mv.visitMethodInsn(INVOKEVIRTUAL, boxed.getInternalName(), type.getName() + "Value", "()" + Type.getDescriptor(type), false);
+        } else {
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+        }
+    }
+
+    private static Type boxed(Class<?> type) {
+        if (type == int.class) {
+            return Type.getType(Integer.class);
+        } else if (type == char.class) {
+            return Type.getType(Character.class);
+        } else {
+            return Type.getObjectType("java/lang/" + Character.toUpperCase(type.getName().charAt(0)) + type.getName().substring(1));
+        }
+    }
+
+    private static class Primitive {
+
+        private final Codec<?> codec;
+        private final String name;
+        private final String getter;
+        private final String unbox;
+
+        private Primitive(Codec<?> codec, String name, String getter, String unbox) {
+            this.codec = codec;
+            this.name = name;
+            this.getter = getter;
+            this.unbox = unbox;
+        }
+    }
+
+    private static class DefiningLoader extends ClassLoader {
+
+        private final ClassLoader target;
+
+        private DefiningLoader(ClassLoader target) {
+            super(CodecGenerator.class.getClassLoader());
+            this.target = target;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            if (target != null) {
+                return Class.forName(name, false, target);
+            }
+            throw new ClassNotFoundException(name);
+        }
+
+        private Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
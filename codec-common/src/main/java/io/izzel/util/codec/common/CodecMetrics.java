@@ -0,0 +1,299 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.serialization.Codec;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts encodes, decodes, failures, container elements and latencies per target type, with striped counters.
+ * <p>
+ * Codecs are only measured when wrapped by {@link #instrument(Type, Codec)}. Setting the system property
+ * {@code io.izzel.util.codec.metrics} to {@code true} makes {@link TypeCodec} wrap every non-primitive codec it
+ * resolves, otherwise its codecs are not wrapped and cost nothing. Latencies include nested measured codecs.
+ */
+public final class CodecMetrics {
+
+    static final boolean ENABLED = Boolean.getBoolean("io.izzel.util.codec.metrics");
+
+    private static final Map<Type, Stats> STATS = new ConcurrentHashMap<>();
+
+    private CodecMetrics() {
+    }
+
+    /**
+     * Wraps a codec, recording its calls for the type.
+     */
+    public static <A> Codec<A> instrument(Type type, Codec<A> codec) {
+        return new MeteredCodec<>(codec, STATS.computeIfAbsent(type, Stats::new));
+    }
+
+    /**
+     * @return the metrics of each measured type, in no particular order
+     */
+    public static Map<Type, Snapshot> snapshot() {
+        Map<Type, Snapshot> snapshot = new LinkedHashMap<>();
+        for (Stats stats : STATS.values()) {
+            snapshot.put(stats.type, stats.snapshot());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    public static Snapshot snapshot(Type type) {
+        Stats stats = STATS.get(type);
+        return stats == null ? new Stats(type).snapshot() : stats.snapshot();
+    }
+
+    /**
+     * Sets all counters to zero. Calls running concurrently may be counted partially.
+     */
+    public static void reset() {
+        for (Stats stats : STATS.values()) {
+            stats.reset();
+        }
+    }
+
+    static final class Stats {
+
+        private final Type type;
+        private final LongAdder encodes = new LongAdder();
+        private final LongAdder encodeFailures = new LongAdder();
+        private final LongAdder decodes = new LongAdder();
+        private final LongAdder decodeFailures = new LongAdder();
+        private final LongAdder elements = new LongAdder();
+        private final Recorder encodeLatency = new Recorder();
+        private final Recorder decodeLatency = new Recorder();
+
+        private Stats(Type type) {
+            this.type = type;
+        }
+
+        void encoded(long nanos, Object input, boolean success) {
+            encodes.increment();
+            if (!success) {
+                encodeFailures.increment();
+            }
+            countElements(input);
+            encodeLatency.record(nanos);
+        }
+
+        void decoded(long nanos, Object value, boolean success) {
+            decodes.increment();
+            if (!success) {
+                decodeFailures.increment();
+            }
+            countElements(value);
+            decodeLatency.record(nanos);
+        }
+
+        private void countElements(Object value) {
+            if (value instanceof Collection) {
+                elements.add(((Collection<?>) value).size());
+            } else if (value instanceof Map) {
+                elements.add(((Map<?, ?>) value).size());
+            } else if (value != null && value.getClass().isArray()) {
+                elements.add(Array.getLength(value));
+            }
+        }
+
+        private Snapshot snapshot() {
+            return new Snapshot(type, encodes.sum(), encodeFailures.sum(), decodes.sum(), decodeFailures.sum(),
+                elements.sum(), encodeLatency.snapshot(), decodeLatency.snapshot());
+        }
+
+        private void reset() {
+            encodes.reset();
+            encodeFailures.reset();
+            decodes.reset();
+            decodeFailures.reset();
+            elements.reset();
+            encodeLatency.reset();
+            decodeLatency.reset();
+        }
+    }
+
+    /**
+     * Counts latencies in buckets of powers of two nanoseconds.
+     */
+    private static final class Recorder {
+
+        private final LongAdder[] buckets = new LongAdder[Histogram.BUCKETS];
+        private final LongAdder total = new LongAdder();
+
+        private Recorder() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long nanos) {
+            buckets[Histogram.bucket(nanos)].increment();
+            total.add(nanos);
+        }
+
+        private Histogram snapshot() {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return new Histogram(counts, total.sum());
+        }
+
+        private void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            total.reset();
+        }
+    }
+
+    /**
+     * The metrics of a type at one point in time. Counters are read one by one, so they may be slightly
+     * inconsistent with each other while codecs are running.
+     */
+    public static final class Snapshot {
+
+        private final Type type;
+        private final long encodes;
+        private final long encodeFailures;
+        private final long decodes;
+        private final long decodeFailures;
+        private final long elements;
+        private final Histogram encodeLatency;
+        private final Histogram decodeLatency;
+
+        private Snapshot(Type type, long encodes, long encodeFailures, long decodes, long decodeFailures, long elements,
+                         Histogram encodeLatency, Histogram decodeLatency) {
+            this.type = type;
+            this.encodes = encodes;
+            this.encodeFailures = encodeFailures;
+            this.decodes = decodes;
+            this.decodeFailures = decodeFailures;
+            this.elements = elements;
+            this.encodeLatency = encodeLatency;
+            this.decodeLatency = decodeLatency;
+        }
+
+        public Type type() {
+            return type;
+        }
+
+        public long encodes() {
+            return encodes;
+        }
+
+        public long encodeFailures() {
+            return encodeFailures;
+        }
+
+        public long decodes() {
+            return decodes;
+        }
+
+        public long decodeFailures() {
+            return decodeFailures;
+        }
+
+        /**
+         * @return the elements of the lists, maps and arrays encoded and decoded as the type
+         */
+        public long elements() {
+            return elements;
+        }
+
+        public Histogram encodeLatency() {
+            return encodeLatency;
+        }
+
+        public Histogram decodeLatency() {
+            return decodeLatency;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot[" + type.getTypeName() + ", encodes=" + encodes + ", encodeFailures=" + encodeFailures
+                + ", decodes=" + decodes + ", decodeFailures=" + decodeFailures + ", elements=" + elements
+                + ", encodeLatency=" + encodeLatency + ", decodeLatency=" + decodeLatency + "]";
+        }
+    }
+
+    /**
+     * Latencies counted in buckets, bucket {@code i} holding those below {@code 2^i} nanoseconds and not below the
+     * bound of the previous bucket.
+     */
+    public static final class Histogram {
+
+        static final int BUCKETS = 64;
+
+        private final long[] counts;
+        private final long totalNanos;
+
+        private Histogram(long[] counts, long totalNanos) {
+            this.counts = counts;
+            this.totalNanos = totalNanos;
+        }
+
+        static int bucket(long nanos) {
+            return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+        }
+
+        public static long upperBound(int bucket) {
+            return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+        }
+
+        public long[] counts() {
+            return counts.clone();
+        }
+
+        public long count() {
+            long count = 0;
+            for (long c : counts) {
+                count += c;
+            }
+            return count;
+        }
+
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        public double meanNanos() {
+            long count = count();
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * @return the upper bound of the bucket holding the quantile, or 0 if nothing was recorded
+         */
+        public long quantileNanos(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("Quantile out of range: " + quantile);
+            }
+            long count = count();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(counts.length - 1);
+        }
+
+        @Override
+        public String toString() {
+            return "Histogram[count=" + count() + ", mean=" + (long) meanNanos() + "ns, p50<" + quantileNanos(0.5)
+                + "ns, p99<" + quantileNanos(0.99) + "ns]";
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.serialization.MapCodec;
+
+/**
+ * Supplies a prebuilt map codec for a class, consulted by {@link TypeCodec} before falling back to reflection.
+ * <p>
+ * Providers are discovered with {@link java.util.ServiceLoader} or added through {@link TypeCodec#register(CodecProvider)}.
+ */
+public interface CodecProvider<A> {
+
+    Class<A> type();
+
+    MapCodec<A> create(TypeCodec.Mode mode);
+}
@@ -0,0 +1,266 @@
+package io.izzel.util.codec.common;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable, insertion ordered map backed by a key and a value array. The keys are never modified, so maps of
+ * the same shape share them together with their lookup index, and each map only allocates its values.
+ */
+final class CompactMap extends AbstractMap<Object, Object> {
+
+    static final CompactMap EMPTY = new CompactMap(new Keys(new Object[0]), new Object[0]);
+
+    // maps up to this size are searched linearly
+    private static final int LINEAR = 8;
+
+    final Keys keys;
+    private final Object[] values;
+
+    CompactMap(Keys keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    static CompactMap copyOf(Map<?, ?> map) {
+        if (map instanceof CompactMap) {
+            return (CompactMap) map;
+        }
+        Object[] keys = new Object[map.size()];
+        Object[] values = new Object[map.size()];
+        int i = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i++] = entry.getValue();
+        }
+        return new CompactMap(new Keys(keys), values);
+    }
+
+    int indexOf(Object key) {
+        return keys.indexOf(key);
+    }
+
+    Object key(int i) {
+        return keys.array[i];
+    }
+
+    Object value(int i) {
+        return values[i];
+    }
+
+    CompactMap without(Object key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return this;
+        }
+        Object[] keys = new Object[values.length - 1];
+        Object[] values = new Object[this.values.length - 1];
+        System.arraycopy(this.keys.array, 0, keys, 0, i);
+        System.arraycopy(this.keys.array, i + 1, keys, i, keys.length - i);
+        System.arraycopy(this.values, 0, values, 0, i);
+        System.arraycopy(this.values, i + 1, values, i, values.length - i);
+        return new CompactMap(new Keys(keys), values);
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super Object, ? super Object> action) {
+        for (int i = 0; i < values.length; i++) {
+            action.accept(keys.array[i], values[i]);
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<Object, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<Object, Object>>() {
+            @Override
+            public Iterator<Map.Entry<Object, Object>> iterator() {
+                return new Iterator<Map.Entry<Object, Object>>() {
+                    private int i;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < values.length;
+                    }
+
+                    @Override
+                    public Map.Entry<Object, Object> next() {
+                        if (i >= values.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Map.Entry<Object, Object> entry = new SimpleImmutableEntry<>(keys.array[i], values[i]);
+                        i++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return values.length;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            builder.append(i == 0 ? "" : ", ").append(keys.array[i]).append('=').append(values[i]);
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * The keys of maps of one shape, with the index larger maps are looked up through, built once for all of them.
+     */
+    static final class Keys {
+
+        private final Object[] array;
+        private volatile Map<Object, Integer> index;
+
+        Keys(Object[] array) {
+            this.array = array;
+        }
+
+        int indexOf(Object key) {
+            if (array.length > LINEAR) {
+                Map<Object, Integer> index = this.index;
+                if (index == null) {
+                    index = new HashMap<>((int) (array.length / 0.75F) + 1);
+                    for (int i = array.length - 1; i >= 0; i--) {
+                        index.put(array[i], i);
+                    }
+                    this.index = index;
+                }
+                Integer i = index.get(key);
+                return i == null ? -1 : i;
+            }
+            for (int i = 0; i < array.length; i++) {
+                if (array[i] == key) {
+                    return i;
+                }
+            }
+            for (int i = 0; i < array.length; i++) {
+                if (array[i] != null && array[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Collects entries, sharing the expected keys as long as the keys added match them by identity.
+     */
+    static final class Builder {
+
+        private Keys shared;
+        private Object[] keys;
+        private Object[] values;
+        private int size;
+        private boolean owned;
+        private boolean nullKey;
+        private Map<Object, Integer> index;
+
+        /**
+         * Expects the keys to be added in their order, which are then shared by the built map.
+         */
+        void expect(Keys keys) {
+            if (size == 0) {
+                this.shared = keys;
+                this.keys = keys.array;
+                this.values = new Object[keys.array.length];
+                this.owned = false;
+            }
+        }
+
+        void put(Object key, Object value) {
+            if (keys == null) {
+                keys = new Object[LINEAR];
+                values = new Object[LINEAR];
+                owned = true;
+            } else if (!owned) {
+                if (size < keys.length && keys[size] == key) {
+                    values[size++] = value;
+                    return;
+                }
+                keys = Arrays.copyOf(keys, Math.max(keys.length, LINEAR));
+                values = Arrays.copyOf(values, keys.length);
+                owned = true;
+            }
+            nullKey |= key == null;
+            int existing = find(key);
+            if (existing >= 0) {
+                values[existing] = value;
+                return;
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            keys[size] = key;
+            values[size] = value;
+            if (index != null) {
+                index.put(key, size);
+            }
+            size++;
+        }
+
+        private int find(Object key) {
+            if (index == null && size > LINEAR) {
+                index = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    index.put(keys[i], i);
+                }
+            }
+            if (index != null) {
+                Integer i = index.get(key);
+                return i == null ? -1 : i;
+            }
+            for (int i = 0; i < size; i++) {
+                if (keys[i] == key || (keys[i] != null && keys[i].equals(key))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        boolean hasNullKey() {
+            return nullKey;
+        }
+
+        CompactMap build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            Object[] values = size == this.values.length ? this.values : Arrays.copyOf(this.values, size);
+            if (!owned && size == this.keys.length) {
+                return new CompactMap(shared, values);
+            }
+            return new CompactMap(new Keys(size == this.keys.length ? this.keys : Arrays.copyOf(this.keys, size)), values);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package io.izzel.util.codec.common;
+
+import java.lang.reflect.Method;
+
+/**
+ * Calls default interface methods on a proxy. Java 8 has no supported way to do so, so the baseline reports it as
+ * unsupported, and the version in {@code src/main/java16} of the multi-release jar replaces this class.
+ */
+final class DefaultMethods {
+
+    private DefaultMethods() {
+    }
+
+    static boolean supported() {
+        return false;
+    }
+
+    static Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        throw new UnsupportedOperationException("Default methods cannot be called on proxies before Java 16");
+    }
+}
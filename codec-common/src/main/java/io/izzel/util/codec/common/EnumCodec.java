@@ -0,0 +1,246 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.MapLike;
+import com.mojang.serialization.RecordBuilder;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+/**
+ * Codec for enum constants, encoded by name or, in the compact form, by ordinal. Both forms are accepted on
+ * decoding, names are looked up in a table built once per enum.
+ */
+final class EnumCodec<E extends Enum<E>> implements Codec<E> {
+
+    private final Class<E> type;
+    private final E[] constants;
+    private final String[] names;
+    private final Map<String, E> byName;
+    private final boolean ordinal;
+
+    private EnumCodec(Class<E> type, boolean ordinal) {
+        this.type = type;
+        this.constants = type.getEnumConstants();
+        this.names = new String[constants.length];
+        this.byName = new HashMap<>((int) (constants.length / 0.75F) + 1);
+        for (E constant : constants) {
+            names[constant.ordinal()] = constant.name();
+            byName.put(constant.name(), constant);
+        }
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * @param type an enum, or the class of an enum constant with a body
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static EnumCodec<?> of(Class<?> type, boolean ordinal) {
+        Class<?> enumType = type.isEnum() ? type : type.getSuperclass();
+        return new EnumCodec(enumType, ordinal);
+    }
+
+    static boolean isEnum(Class<?> type) {
+        return Enum.class.isAssignableFrom(type) && type != Enum.class;
+    }
+
+    Class<E> type() {
+        return type;
+    }
+
+    int size() {
+        return constants.length;
+    }
+
+    @Override
+    public <T> DataResult<Pair<E, T>> decode(DynamicOps<T> ops, T input) {
+        DataResult<E> result = ordinal ? decodeOrdinal(ops, input) : decodeName(ops, input);
+        Optional<E> value = result.result();
+        return value.isPresent() ? DataResult.success(Pair.of(value.get(), ops.empty())) : error(result);
+    }
+
+    private <T> DataResult<E> decodeName(DynamicOps<T> ops, T input) {
+        Optional<String> name = ops.getStringValue(input).result();
+        if (name.isPresent()) {
+            return byName(name.get());
+        }
+        Optional<Number> ordinal = ops.getNumberValue(input).result();
+        return ordinal.isPresent() ? byOrdinal(ordinal.get().intValue()) : notConstant(input);
+    }
+
+    private <T> DataResult<E> decodeOrdinal(DynamicOps<T> ops, T input) {
+        Optional<Number> ordinal = ops.getNumberValue(input).result();
+        if (ordinal.isPresent()) {
+            return byOrdinal(ordinal.get().intValue());
+        }
+        Optional<String> name = ops.getStringValue(input).result();
+        return name.isPresent() ? byName(name.get()) : notConstant(input);
+    }
+
+    DataResult<E> byName(String name) {
+        E constant = byName.get(name);
+        return constant != null ? DataResult.success(constant) : DataResult.error("Unknown " + type.getName() + " constant: " + name);
+    }
+
+    DataResult<E> byOrdinal(int ordinal) {
+        return ordinal >= 0 && ordinal < constants.length ? DataResult.success(constants[ordinal])
+            : DataResult.error("Unknown " + type.getName() + " ordinal: " + ordinal);
+    }
+
+    private <T> DataResult<E> notConstant(T input) {
+        return DataResult.error("Not a " + type.getName() + " constant: " + input);
+    }
+
+    @Override
+    public <T> DataResult<T> encode(E input, DynamicOps<T> ops, T prefix) {
+        if (input == null) {
+            return DataResult.error("Cannot encode null " + type.getName());
+        }
+        return ops.mergeToPrimitive(prefix, ordinal ? ops.createInt(input.ordinal()) : ops.createString(names[input.ordinal()]));
+    }
+
+    <T> T encodeName(E input, DynamicOps<T> ops) {
+        return ops.createString(names[input.ordinal()]);
+    }
+
+    @Override
+    public String toString() {
+        return "EnumCodec[" + type.getName() + (ordinal ? ", ordinal]" : "]");
+    }
+
+    private static <R> DataResult<R> error(DataResult<?> result) {
+        return DataResult.error(result.error().map(DataResult.PartialResult::message).orElse("Failed to decode enum"));
+    }
+
+    /**
+     * Encodes an {@link EnumSet} as a bitmask of ordinals, a long for enums of up to 64 constants and a long list of
+     * words otherwise.
+     */
+    static final class OfSet<E extends Enum<E>> implements Codec<EnumSet<E>> {
+
+        private final EnumCodec<E> element;
+
+        OfSet(EnumCodec<E> element) {
+            this.element = element;
+        }
+
+        @Override
+        public <T> DataResult<Pair<EnumSet<E>, T>> decode(DynamicOps<T> ops, T input) {
+            long[] words;
+            Optional<Number> bits = ops.getNumberValue(input).result();
+            if (bits.isPresent()) {
+                words = new long[]{bits.get().longValue()};
+            } else {
+                DataResult<LongStream> stream = ops.getLongStream(input);
+                Optional<LongStream> list = stream.result();
+                if (!list.isPresent()) {
+                    return DataResult.error("Not a " + element.type().getName() + " bitmask: " + input);
+                }
+                words = list.get().toArray();
+            }
+            EnumSet<E> set = EnumSet.noneOf(element.type());
+            for (int word = 0; word < words.length; word++) {
+                for (long remaining = words[word]; remaining != 0; remaining &= remaining - 1) {
+                    DataResult<E> constant = element.byOrdinal(word * 64 + Long.numberOfTrailingZeros(remaining));
+                    Optional<E> value = constant.result();
+                    if (!value.isPresent()) {
+                        return error(constant);
+                    }
+                    set.add(value.get());
+                }
+            }
+            return DataResult.success(Pair.of(set, ops.empty()));
+        }
+
+        @Override
+        public <T> DataResult<T> encode(EnumSet<E> input, DynamicOps<T> ops, T prefix) {
+            long[] words = new long[Math.max(1, (element.size() + 63) / 64)];
+            for (E constant : input) {
+                words[constant.ordinal() / 64] |= 1L << constant.ordinal();
+            }
+            return ops.mergeToPrimitive(prefix, words.length == 1 ? ops.createLong(words[0]) : ops.createLongList(LongStream.of(words)));
+        }
+
+        @Override
+        public String toString() {
+            return "EnumSetCodec[" + element.type().getName() + "]";
+        }
+    }
+
+    /**
+     * Encodes an {@link EnumMap} as a map keyed by constant names, decoding the values into an array indexed by
+     * ordinal before the map is filled in ordinal order.
+     */
+    static final class OfMap<K extends Enum<K>, V> implements Codec<EnumMap<K, V>> {
+
+        private final EnumCodec<K> key;
+        private final Codec<V> value;
+
+        OfMap(EnumCodec<K> key, Codec<V> value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> DataResult<Pair<EnumMap<K, V>, T>> decode(DynamicOps<T> ops, T input) {
+            DataResult<MapLike<T>> map = ops.getMap(input);
+            Optional<MapLike<T>> entries = map.result();
+            if (!entries.isPresent()) {
+                return error(map);
+            }
+            Object[] values = new Object[key.size()];
+            boolean[] present = new boolean[values.length];
+            Iterator<Pair<T, T>> iterator = entries.get().entries().iterator();
+            while (iterator.hasNext()) {
+                Pair<T, T> entry = iterator.next();
+                DataResult<Pair<K, T>> k = key.decode(ops, entry.getFirst());
+                Optional<Pair<K, T>> kSuccess = k.result();
+                if (!kSuccess.isPresent()) {
+                    return error(k);
+                }
+                int ordinal = kSuccess.get().getFirst().ordinal();
+                if (present[ordinal]) {
+                    return DataResult.error("Duplicate entry for key: '" + kSuccess.get().getFirst() + "'");
+                }
+                DataResult<Pair<V, T>> v = value.decode(ops, entry.getSecond());
+                Optional<Pair<V, T>> vSuccess = v.result();
+                if (!vSuccess.isPresent()) {
+                    return error(v);
+                }
+                values[ordinal] = vSuccess.get().getFirst();
+                present[ordinal] = true;
+            }
+            EnumMap<K, V> result = new EnumMap<>(key.type());
+            K[] constants = key.type().getEnumConstants();
+            for (int i = 0; i < values.length; i++) {
+                if (present[i]) {
+                    result.put(constants[i], (V) values[i]);
+                }
+            }
+            return DataResult.success(Pair.of(result, ops.empty()));
+        }
+
+        @Override
+        public <T> DataResult<T> encode(EnumMap<K, V> input, DynamicOps<T> ops, T prefix) {
+            RecordBuilder<T> builder = ops.mapBuilder();
+            for (Map.Entry<K, V> entry : input.entrySet()) {
+                builder = builder.add(key.encodeName(entry.getKey(), ops), value.encodeStart(ops, entry.getValue()));
+            }
+            return builder.build(prefix);
+        }
+
+        @Override
+        public String toString() {
+            return "EnumMapCodec[" + key.type().getName() + " -> " + value + "]";
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.izzel.util.codec.common;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class or record for the {@code codec-processor} annotation processor, which emits a
+ * {@link CodecProvider} with the same wire shape as the reflective codec returned by {@link TypeCodec#of(Class)}.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateCodec {
+}
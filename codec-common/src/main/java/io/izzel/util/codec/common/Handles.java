@@ -0,0 +1,68 @@
+package io.izzel.util.codec.common;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.function.Function;
+
+final class Handles {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private Handles() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <A> Optional<Function<A, Object>> getter(Method method) {
+        if (!isVisible(method.getDeclaringClass()) || !isVisible(method.getReturnType())) {
+            return Optional.empty();
+        }
+        try {
+            MethodHandle handle = LOOKUP.unreflect(method);
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+                MethodType.methodType(Function.class),
+                MethodType.methodType(Object.class, Object.class),
+                handle, handle.type().wrap());
+            return Optional.of((Function<A, Object>) site.getTarget().invokeExact());
+        } catch (Throwable ignored) {
+            return Optional.empty();
+        }
+    }
+
+    static Optional<MethodHandle> getter(Field field) {
+        try {
+            return Optional.of(LOOKUP.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class)));
+        } catch (Exception ignored) {
+            return Optional.empty();
+        }
+    }
+
+    static Optional<MethodHandle> constructor(Constructor<?> constructor) {
+        try {
+            int count = constructor.getParameterCount();
+            return Optional.of(LOOKUP.unreflectConstructor(constructor)
+                .asType(MethodType.genericMethodType(count))
+                .asSpreader(Object[].class, count));
+        } catch (Exception ignored) {
+            return Optional.empty();
+        }
+    }
+
+    // lambda classes are defined in our class loader, the target has to resolve from here
+    private static boolean isVisible(Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, Handles.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package io.izzel.util.codec.common;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A map from int keys to non-null values, kept in open-addressing arrays with linear probing, so entries are
+ * stored without boxed keys or entry nodes. Iteration order is unspecified. Not thread safe.
+ * <p>
+ * {@link TypeCodec} encodes it as a map of a {@code keys} int array and a parallel {@code values} list.
+ */
+public final class IntMap<V> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] keys;
+    private Object[] values; // a null value marks a free slot
+    private int size;
+
+    public IntMap() {
+        this(0);
+    }
+
+    public IntMap(int expectedSize) {
+        allocate(capacity(expectedSize));
+    }
+
+    static int capacity(int expectedSize) {
+        int minimum = Math.max(MIN_CAPACITY, (int) Math.min(1 << 30, expectedSize / 3L * 4 + 4));
+        return Integer.highestOneBit(minimum - 1) << 1;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private int find(int key) {
+        int mask = values.length - 1;
+        for (int i = mix(key) & mask; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int i = find(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    public V getOrDefault(int key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * @return the previous value of the key, or {@code null} if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        Objects.requireNonNull(value, "value");
+        if ((size + 1) * 4L > values.length * 3L) {
+            resize(values.length * 2);
+        }
+        int mask = values.length - 1;
+        int i = mix(key) & mask;
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                Object previous = values[i];
+                values[i] = value;
+                return (V) previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * @return the removed value, or {@code null} if absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int i = find(key);
+        if (i < 0) {
+            return null;
+        }
+        Object removed = values[i];
+        int mask = values.length - 1;
+        // shift back the following entries of the probe sequence, so no tombstones are needed
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            if (((j - (mix(keys[j]) & mask)) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        values[i] = null;
+        size--;
+        return (V) removed;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Visitor<? super V> visitor) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                visitor.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the keys, in iteration order
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                result[n++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = mix(oldKeys[i]) & mask;
+                while (values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    int slots() {
+        return values.length;
+    }
+
+    int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * @return the value in the slot, or {@code null} if the slot is free
+     */
+    Object valueAt(int slot) {
+        return values[slot];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IntMap) || ((IntMap<?>) o).size != size) {
+            return false;
+        }
+        IntMap<?> other = (IntMap<?>) o;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null && !values[i].equals(other.get(keys[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                hash += keys[i] ^ values[i].hashCode();
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                builder.append(builder.length() == 1 ? "" : ", ").append(keys[i]).append('=').append(values[i]);
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    public interface Visitor<V> {
+
+        void accept(int key, V value);
+    }
+}
@@ -0,0 +1,446 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.JsonOps;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Converts values of {@link JavaPrimitiveOps} into other ops. Node types are looked up once per class,
+ * and nested maps and lists are walked with an explicit stack, so the depth of a document is not
+ * limited by the thread stack.
+ */
+final class JavaPrimitiveConverter {
+
+    private static final ClassValue<Kind> KINDS = new ClassValue<Kind>() {
+        @Override
+        protected Kind computeValue(Class<?> type) {
+            return Kind.of(type);
+        }
+    };
+
+    private JavaPrimitiveConverter() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <U> U convert(DynamicOps<U> outOps, Object input) {
+        Target<U> target;
+        if (outOps == JsonOps.INSTANCE) {
+            target = (Target<U>) JsonTarget.INSTANCE;
+        } else if (outOps.getClass() == JavaPrimitiveOps.class) {
+            target = (Target<U>) new JavaTarget((JavaPrimitiveOps) outOps);
+        } else {
+            target = new GenericTarget<>(outOps);
+        }
+        return convert(target, input);
+    }
+
+    private static <U> U convert(Target<U> target, Object input) {
+        Kind kind = kind(input);
+        if (!kind.container) {
+            return target.leaf(kind, input);
+        }
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(Frame.of(target, kind, input));
+        while (true) {
+            Frame frame = stack.peek();
+            if (frame.iterator.hasNext()) {
+                Object next = frame.iterator.next();
+                Object value;
+                if (frame.map) {
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) next;
+                    frame.key = target.key(entry.getKey());
+                    value = entry.getValue();
+                } else {
+                    value = next;
+                }
+                Kind valueKind = kind(value);
+                if (valueKind.container) {
+                    stack.push(Frame.of(target, valueKind, value));
+                } else {
+                    frame.add(target, target.leaf(valueKind, value));
+                }
+            } else {
+                stack.pop();
+                U built = frame.map ? target.buildMap(frame.builder) : target.buildList(frame.builder);
+                if (stack.isEmpty()) {
+                    return built;
+                }
+                stack.peek().add(target, built);
+            }
+        }
+    }
+
+    private static Kind kind(Object input) {
+        return input == null ? Kind.UNKNOWN : KINDS.get(input.getClass());
+    }
+
+    private static Object copyArray(Object array) {
+        int length = Array.getLength(array);
+        Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    private enum Kind {
+        MAP(true), LIST(true),
+        STRING(false), BOOLEAN(false), BYTE(false), SHORT(false), INT(false), LONG(false), FLOAT(false), DOUBLE(false),
+        INT_ARRAY(false), LONG_ARRAY(false), BYTE_ARRAY(false), PRIMITIVE_ARRAY(false),
+        UNKNOWN(false);
+
+        private final boolean container;
+
+        Kind(boolean container) {
+            this.container = container;
+        }
+
+        private static Kind of(Class<?> type) {
+            if (Map.class.isAssignableFrom(type)) {
+                return MAP;
+            } else if (Collection.class.isAssignableFrom(type)) {
+                return LIST;
+            } else if (type == String.class) {
+                return STRING;
+            } else if (type == Boolean.class) {
+                return BOOLEAN;
+            } else if (type == Byte.class) {
+                return BYTE;
+            } else if (type == Short.class) {
+                return SHORT;
+            } else if (type == Integer.class) {
+                return INT;
+            } else if (type == Long.class) {
+                return LONG;
+            } else if (type == Float.class) {
+                return FLOAT;
+            } else if (type == Double.class) {
+                return DOUBLE;
+            } else if (type == int[].class) {
+                return INT_ARRAY;
+            } else if (type == long[].class) {
+                return LONG_ARRAY;
+            } else if (type == byte[].class) {
+                return BYTE_ARRAY;
+            } else if (type.isArray() && type.getComponentType().isPrimitive()) {
+                return PRIMITIVE_ARRAY;
+            }
+            return UNKNOWN;
+        }
+    }
+
+    private static final class Frame {
+
+        private final boolean map;
+        private final Iterator<?> iterator;
+        private final Object builder;
+        private Object key;
+
+        private Frame(boolean map, Iterator<?> iterator, Object builder) {
+            this.map = map;
+            this.iterator = iterator;
+            this.builder = builder;
+        }
+
+        private static Frame of(Target<?> target, Kind kind, Object input) {
+            if (kind == Kind.MAP) {
+                Map<?, ?> map = (Map<?, ?>) input;
+                return new Frame(true, map.entrySet().iterator(), target.newMap(map.size()));
+            } else {
+                Collection<?> list = (Collection<?>) input;
+                return new Frame(false, list.iterator(), target.newList(list.size()));
+            }
+        }
+
+        private <U> void add(Target<U> target, U value) {
+            if (map) {
+                target.putMap(builder, key, value);
+            } else {
+                target.addList(builder, value);
+            }
+        }
+    }
+
+    private abstract static class Target<U> {
+
+        protected final DynamicOps<U> ops;
+
+        private Target(DynamicOps<U> ops) {
+            this.ops = ops;
+        }
+
+        abstract U leaf(Kind kind, Object input);
+
+        /**
+         * @return the key as expected by {@link #putMap}
+         */
+        abstract Object key(Object input);
+
+        abstract Object newMap(int size);
+
+        abstract void putMap(Object map, Object key, U value);
+
+        abstract U buildMap(Object map);
+
+        abstract Object newList(int size);
+
+        abstract void addList(Object list, U value);
+
+        abstract U buildList(Object list);
+
+        protected IllegalArgumentException unknown(Object input) {
+            return new IllegalArgumentException("Cannot convert " + input + " to " + ops);
+        }
+    }
+
+    private static final class GenericTarget<U> extends Target<U> {
+
+        private GenericTarget(DynamicOps<U> ops) {
+            super(ops);
+        }
+
+        @Override
+        U leaf(Kind kind, Object input) {
+            switch (kind) {
+                case STRING:
+                    return ops.createString((String) input);
+                case BOOLEAN:
+                    return ops.createBoolean((Boolean) input);
+                case BYTE:
+                    return ops.createByte((Byte) input);
+                case SHORT:
+                    return ops.createShort((Short) input);
+                case INT:
+                    return ops.createInt((Integer) input);
+                case LONG:
+                    return ops.createLong((Long) input);
+                case FLOAT:
+                    return ops.createFloat((Float) input);
+                case DOUBLE:
+                    return ops.createDouble((Double) input);
+                case INT_ARRAY:
+                    return ops.createIntList(IntStream.of((int[]) input));
+                case LONG_ARRAY:
+                    return ops.createLongList(LongStream.of((long[]) input));
+                case BYTE_ARRAY:
+                    return ops.createByteList(ByteBuffer.wrap((byte[]) input));
+                case PRIMITIVE_ARRAY:
+                    return PrimitiveArrayCodec.writeArray(ops, input);
+                default:
+                    throw unknown(input);
+            }
+        }
+
+        @Override
+        Object key(Object input) {
+            return convert(this, input);
+        }
+
+        @Override
+        Object newMap(int size) {
+            return new ArrayList<Pair<U, U>>(size);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void putMap(Object map, Object key, U value) {
+            ((List<Pair<U, U>>) map).add(Pair.of((U) key, value));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        U buildMap(Object map) {
+            return ops.createMap(((List<Pair<U, U>>) map).stream());
+        }
+
+        @Override
+        Object newList(int size) {
+            return new ArrayList<U>(size);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void addList(Object list, U value) {
+            ((List<U>) list).add(value);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        U buildList(Object list) {
+            return ops.createList(((List<U>) list).stream());
+        }
+    }
+
+    /**
+     * Builds the same tree as {@link JsonOps#INSTANCE} without going through its map and list streams.
+     */
+    private static final class JsonTarget extends Target<JsonElement> {
+
+        private static final JsonTarget INSTANCE = new JsonTarget();
+
+        private JsonTarget() {
+            super(JsonOps.INSTANCE);
+        }
+
+        @Override
+        JsonElement leaf(Kind kind, Object input) {
+            switch (kind) {
+                case STRING:
+                    return new JsonPrimitive((String) input);
+                case BOOLEAN:
+                    return new JsonPrimitive((Boolean) input);
+                case BYTE:
+                case SHORT:
+                case INT:
+                case LONG:
+                case FLOAT:
+                case DOUBLE:
+                    return new JsonPrimitive((Number) input);
+                case INT_ARRAY: {
+                    JsonArray array = new JsonArray();
+                    for (int i : (int[]) input) {
+                        array.add(new JsonPrimitive(i));
+                    }
+                    return array;
+                }
+                case LONG_ARRAY: {
+                    JsonArray array = new JsonArray();
+                    for (long l : (long[]) input) {
+                        array.add(new JsonPrimitive(l));
+                    }
+                    return array;
+                }
+                case BYTE_ARRAY: {
+                    JsonArray array = new JsonArray();
+                    for (byte b : (byte[]) input) {
+                        array.add(new JsonPrimitive(b));
+                    }
+                    return array;
+                }
+                case PRIMITIVE_ARRAY:
+                    return PrimitiveArrayCodec.writeArray(ops, input);
+                default:
+                    throw unknown(input);
+            }
+        }
+
+        @Override
+        Object key(Object input) {
+            return input instanceof String ? input : convert(this, input).getAsString();
+        }
+
+        @Override
+        Object newMap(int size) {
+            return new JsonObject();
+        }
+
+        @Override
+        void putMap(Object map, Object key, JsonElement value) {
+            ((JsonObject) map).add((String) key, value);
+        }
+
+        @Override
+        JsonElement buildMap(Object map) {
+            return (JsonObject) map;
+        }
+
+        @Override
+        Object newList(int size) {
+            return new JsonArray();
+        }
+
+        @Override
+        void addList(Object list, JsonElement value) {
+            ((JsonArray) list).add(value);
+        }
+
+        @Override
+        JsonElement buildList(Object list) {
+            return (JsonArray) list;
+        }
+    }
+
+    /**
+     * Copies maps, lists and primitive arrays, sharing the immutable leaves.
+     */
+    private static final class JavaTarget extends Target<Object> {
+
+        private final boolean compactMaps;
+
+        private JavaTarget(JavaPrimitiveOps ops) {
+            super(ops);
+            this.compactMaps = ops.compactMaps();
+        }
+
+        @Override
+        Object leaf(Kind kind, Object input) {
+            switch (kind) {
+                case INT_ARRAY:
+                case LONG_ARRAY:
+                case BYTE_ARRAY:
+                case PRIMITIVE_ARRAY:
+                    return copyArray(input);
+                case UNKNOWN:
+                    throw unknown(input);
+                default:
+                    return input;
+            }
+        }
+
+        @Override
+        Object key(Object input) {
+            return input instanceof String ? input : convert(this, input);
+        }
+
+        @Override
+        Object newMap(int size) {
+            return compactMaps ? new CompactMap.Builder() : new LinkedHashMap<>(Math.max(16, (int) (size / 0.75F) + 1));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void putMap(Object map, Object key, Object value) {
+            if (map instanceof CompactMap.Builder) {
+                ((CompactMap.Builder) map).put(key, value);
+            } else {
+                ((Map<Object, Object>) map).put(key, value);
+            }
+        }
+
+        @Override
+        Object buildMap(Object map) {
+            return map instanceof CompactMap.Builder ? ((CompactMap.Builder) map).build() : map;
+        }
+
+        @Override
+        Object newList(int size) {
+            return new ArrayList<>(size);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void addList(Object list, Object value) {
+            ((List<Object>) list).add(value);
+        }
+
+        @Override
+        Object buildList(Object list) {
+            return list;
+        }
+    }
+}
@@ -4,8 +4,12 @@ import com.mojang.datafixers.util.Pair;
 import com.mojang.serialization.DataResult;
 import com.mojang.serialization.Dynamic;
 import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.Lifecycle;
+import com.mojang.serialization.ListBuilder;
 import com.mojang.serialization.MapLike;
+import com.mojang.serialization.RecordBuilder;
 
+import java.lang.reflect.Array;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -16,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.LongStream;
@@ -24,6 +29,19 @@ import java.util.stream.Stream;
 public class JavaPrimitiveOps implements DynamicOps<Object> {
 
     public static final JavaPrimitiveOps INSTANCE = new JavaPrimitiveOps();
+    /**
+     * Same as {@link #INSTANCE}, but primitive arrays are copied when encoded or decoded by
+     * {@link TypeCodec}, so the encoded value never shares an array with the decoded object.
+     */
+    public static final JavaPrimitiveOps COPY_ARRAYS = new JavaPrimitiveOps(true);
+    /**
+     * Same as {@link #INSTANCE}, but maps are immutable and backed by arrays. Records encoded by {@link TypeCodec}
+     * share one key array per class.
+     */
+    public static final JavaPrimitiveOps COMPACT = new JavaPrimitiveOps(false, true);
+
+    private final boolean copyArrays;
+    private final boolean compactMaps;
 
     @SuppressWarnings("unchecked")
     public static <A> Dynamic<A> dynamic(A value) {
@@ -31,6 +49,33 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
     }
 
     protected JavaPrimitiveOps() {
+        this(false);
+    }
+
+    protected JavaPrimitiveOps(boolean copyArrays) {
+        this(copyArrays, false);
+    }
+
+    protected JavaPrimitiveOps(boolean copyArrays, boolean compactMaps) {
+        this.copyArrays = copyArrays;
+        this.compactMaps = compactMaps;
+    }
+
+    public boolean copyArrays() {
+        return copyArrays;
+    }
+
+    public boolean compactMaps() {
+        return compactMaps;
+    }
+
+    /**
+     * Lets a map builder of a compact ops share the keys of a record, which are added in this order.
+     */
+    static void expectKeys(RecordBuilder<?> builder, CompactMap.Keys keys) {
+        if (builder instanceof CompactMapBuilder) {
+            ((CompactMapBuilder) builder).expected = keys;
+        }
     }
 
     @Override
@@ -40,34 +85,7 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
 
     @Override
     public <U> U convertTo(DynamicOps<U> outOps, Object input) {
-        if (input instanceof Map) {
-            return convertMap(outOps, input);
-        } else if (input instanceof Collection) {
-            return convertList(outOps, input);
-        } else if (input instanceof String) {
-            return outOps.createString((String) input);
-        } else if (input instanceof Boolean) {
-            return outOps.createBoolean((Boolean) input);
-        } else if (input instanceof Integer) {
-            return outOps.createInt((Integer) input);
-        } else if (input instanceof Short) {
-            return outOps.createShort((Short) input);
-        } else if (input instanceof Byte) {
-            return outOps.createByte((Byte) input);
-        } else if (input instanceof Long) {
-            return outOps.createLong((Long) input);
-        } else if (input instanceof Float) {
-            return outOps.createFloat((Float) input);
-        } else if (input instanceof Double) {
-            return outOps.createDouble((Double) input);
-        } else if (input instanceof int[]) {
-            return outOps.createIntList(IntStream.of((int[]) input));
-        } else if (input instanceof long[]) {
-            return outOps.createLongList(LongStream.of((long[]) input));
-        } else if (input instanceof byte[]) {
-            return outOps.createByteList(ByteBuffer.wrap((byte[]) input));
-        }
-        throw new IllegalArgumentException("Cannot convert " + input + " to " + outOps);
+        return JavaPrimitiveConverter.convert(outOps, input);
     }
 
     @Override
@@ -77,7 +95,7 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
 
     @Override
     public Object emptyMap() {
-        return Collections.emptyMap();
+        return compactMaps ? CompactMap.EMPTY : Collections.emptyMap();
     }
 
     @Override
@@ -150,7 +168,7 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
         if (list != null && !(list instanceof Collection)) {
             return DataResult.error("Not a list: " + list);
         }
-        ArrayList<Object> result = new ArrayList<>();
+        ArrayList<Object> result = new ArrayList<>((list == null ? 0 : ((Collection<?>) list).size()) + values.size());
         if (list != null) {
             result.addAll((Collection<?>) list);
         }
@@ -160,7 +178,7 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
 
     @Override
     public Object createMap(Map<Object, Object> map) {
-        return map;
+        return compactMaps ? CompactMap.copyOf(map) : map;
     }
 
     @Override
@@ -176,7 +194,26 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
             result.putAll((Map<?, ?>) map);
         }
         result.put(key, value);
-        return DataResult.success(result);
+        return DataResult.success(compactMaps ? CompactMap.copyOf(result) : result);
+    }
+
+    @Override
+    public DataResult<Object> mergeToMap(Object map, Map<Object, Object> values) {
+        if (map != null && !(map instanceof Map)) {
+            return DataResult.error("Not a map: " + map);
+        }
+        LinkedHashMap<Object, Object> result = new LinkedHashMap<>();
+        if (map != null) {
+            result.putAll((Map<?, ?>) map);
+        }
+        // containsKey(null) throws for maps rejecting null keys, so keys are checked as they are copied
+        for (Map.Entry<Object, Object> entry : values.entrySet()) {
+            if (entry.getKey() == null) {
+                return DataResult.error("Key is null");
+            }
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return DataResult.success(compactMaps ? CompactMap.copyOf(result) : result);
     }
 
     @Override
@@ -193,12 +230,15 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
             Pair<Object, Object> pair = iterator.next();
             result.put(pair.getFirst(), pair.getSecond());
         }
-        return DataResult.success(result);
+        return DataResult.success(compactMaps ? CompactMap.copyOf(result) : result);
     }
 
     @Override
     public DataResult<Stream<Pair<Object, Object>>> getMapValues(Object input) {
-        if (!(input instanceof Map)) {
+        if (input instanceof CompactMap) {
+            CompactMap map = (CompactMap) input;
+            return DataResult.success(IntStream.range(0, map.size()).mapToObj(i -> Pair.of(map.key(i), map.value(i))));
+        } else if (!(input instanceof Map)) {
             return DataResult.error("Not a map: " + input);
         }
         return DataResult.success(((Map<?, ?>) input).entrySet().stream().map(it -> Pair.of(it.getKey(), it.getValue())));
@@ -215,7 +255,9 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
     @Override
     @SuppressWarnings("unchecked")
     public DataResult<MapLike<Object>> getMap(Object input) {
-        if (!(input instanceof Map)) {
+        if (input instanceof CompactMap) {
+            return DataResult.success(new CompactMapLike((CompactMap) input));
+        } else if (!(input instanceof Map)) {
             return DataResult.error("Not a map: " + input);
         }
         return DataResult.success(MapLike.forMap((Map<Object, Object>) input, this));
@@ -223,9 +265,10 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
 
     @Override
     public Object createMap(Stream<Pair<Object, Object>> map) {
-        return map.collect(Collectors.toMap(Pair::getFirst, Pair::getSecond,
+        LinkedHashMap<Object, Object> result = map.collect(Collectors.toMap(Pair::getFirst, Pair::getSecond,
             (u, v) -> {throw new IllegalStateException("Duplicate key " + u);},
             LinkedHashMap::new));
+        return compactMaps ? CompactMap.copyOf(result) : result;
     }
 
     @Override
@@ -233,6 +276,8 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
     public DataResult<Stream<Object>> getStream(Object input) {
         if (input instanceof Collection) {
             return DataResult.success(((Collection<Object>) input).stream());
+        } else if (isPrimitiveArray(input)) {
+            return DataResult.success(arrayStream(input));
         }
         return DataResult.error("Not a list: " + input);
     }
@@ -241,6 +286,12 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
     public DataResult<Consumer<Consumer<Object>>> getList(Object input) {
         if (input instanceof Collection) {
             return DataResult.success(c -> ((Collection<?>) input).forEach(c));
+        } else if (isPrimitiveArray(input)) {
+            return DataResult.success(c -> {
+                for (int i = 0, length = Array.getLength(input); i < length; i++) {
+                    c.accept(Array.get(input, i));
+                }
+            });
         }
         return DataResult.error("Not a list: " + input);
     }
@@ -252,7 +303,9 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
 
     @Override
     public Object remove(Object input, String key) {
-        if (input instanceof Map) {
+        if (input instanceof CompactMap) {
+            return ((CompactMap) input).without(key);
+        } else if (input instanceof Map) {
             ((Map<?, ?>) input).remove(key);
         }
         return input;
@@ -274,8 +327,188 @@ public class JavaPrimitiveOps implements DynamicOps<Object> {
         return DataResult.error("Not a long array: " + input);
     }
 
+    // arrays without a dedicated DynamicOps representation, see PrimitiveArrayCodec
+    private static boolean isPrimitiveArray(Object input) {
+        return input instanceof short[] || input instanceof float[] || input instanceof double[]
+            || input instanceof boolean[] || input instanceof char[];
+    }
+
+    private static Stream<Object> arrayStream(Object array) {
+        return IntStream.range(0, Array.getLength(array)).mapToObj(i -> Array.get(array, i));
+    }
+
+    @Override
+    public RecordBuilder<Object> mapBuilder() {
+        return compactMaps ? new CompactMapBuilder(this) : new MutableMapBuilder(this);
+    }
+
+    @Override
+    public ListBuilder<Object> listBuilder() {
+        return new MutableListBuilder(this, compactMaps);
+    }
+
     @Override
     public String toString() {
         return "Java Primitive";
     }
+
+    /**
+     * Appends into a single map which is handed off as is when there is nothing to merge with.
+     */
+    private static final class MutableMapBuilder extends RecordBuilder.AbstractUniversalBuilder<Object, LinkedHashMap<Object, Object>> {
+
+        private MutableMapBuilder(DynamicOps<Object> ops) {
+            super(ops);
+        }
+
+        @Override
+        protected LinkedHashMap<Object, Object> initBuilder() {
+            return new LinkedHashMap<>();
+        }
+
+        @Override
+        protected LinkedHashMap<Object, Object> append(Object key, Object value, LinkedHashMap<Object, Object> builder) {
+            builder.put(key, value);
+            return builder;
+        }
+
+        @Override
+        protected DataResult<Object> build(LinkedHashMap<Object, Object> builder, Object prefix) {
+            if (prefix == null || (prefix instanceof Map && ((Map<?, ?>) prefix).isEmpty())) {
+                return builder.containsKey(null) ? DataResult.error("Key is null") : DataResult.success(builder);
+            }
+            return ops().mergeToMap(prefix, builder);
+        }
+    }
+
+    /**
+     * Appends into a {@link CompactMap.Builder}, sharing the keys of a record encoded through
+     * {@link #expectKeys(RecordBuilder, CompactMap.Keys)}.
+     */
+    private static final class CompactMapBuilder extends RecordBuilder.AbstractUniversalBuilder<Object, CompactMap.Builder> {
+
+        private CompactMap.Keys expected;
+
+        private CompactMapBuilder(DynamicOps<Object> ops) {
+            super(ops);
+        }
+
+        @Override
+        protected CompactMap.Builder initBuilder() {
+            return new CompactMap.Builder();
+        }
+
+        @Override
+        protected CompactMap.Builder append(Object key, Object value, CompactMap.Builder builder) {
+            if (expected != null) {
+                builder.expect(expected);
+            }
+            builder.put(key, value);
+            return builder;
+        }
+
+        @Override
+        protected DataResult<Object> build(CompactMap.Builder builder, Object prefix) {
+            if (builder.hasNullKey()) {
+                return DataResult.error("Key is null");
+            }
+            if (prefix == null || (prefix instanceof Map && ((Map<?, ?>) prefix).isEmpty())) {
+                return DataResult.success(builder.build());
+            }
+            return ops().mergeToMap(prefix, builder.build());
+        }
+    }
+
+    private static final class CompactMapLike implements MapLike<Object> {
+
+        private final CompactMap map;
+
+        private CompactMapLike(CompactMap map) {
+            this.map = map;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return map.get(key);
+        }
+
+        @Override
+        public Object get(String key) {
+            return map.get(key);
+        }
+
+        @Override
+        public Stream<Pair<Object, Object>> entries() {
+            return IntStream.range(0, map.size()).mapToObj(i -> Pair.of(map.key(i), map.value(i)));
+        }
+
+        @Override
+        public String toString() {
+            return "MapLike[" + map + "]";
+        }
+    }
+
+    /**
+     * Appends into a single list which is handed off as is when there is nothing to merge with.
+     */
+    private static final class MutableListBuilder implements ListBuilder<Object> {
+
+        private final DynamicOps<Object> ops;
+        private final boolean trim;
+        private DataResult<ArrayList<Object>> builder = DataResult.success(new ArrayList<>(), Lifecycle.stable());
+
+        private MutableListBuilder(DynamicOps<Object> ops, boolean trim) {
+            this.ops = ops;
+            this.trim = trim;
+        }
+
+        @Override
+        public DynamicOps<Object> ops() {
+            return ops;
+        }
+
+        @Override
+        public ListBuilder<Object> add(Object value) {
+            builder = builder.map(b -> append(b, value));
+            return this;
+        }
+
+        @Override
+        public ListBuilder<Object> add(DataResult<Object> value) {
+            builder = builder.apply2stable(MutableListBuilder::append, value);
+            return this;
+        }
+
+        @Override
+        public ListBuilder<Object> withErrorsFrom(DataResult<?> result) {
+            builder = builder.flatMap(r -> result.map(v -> r));
+            return this;
+        }
+
+        @Override
+        public ListBuilder<Object> mapError(UnaryOperator<String> onError) {
+            builder = builder.mapError(onError);
+            return this;
+        }
+
+        @Override
+        public DataResult<Object> build(Object prefix) {
+            DataResult<Object> result = builder.flatMap(b -> {
+                if (prefix == null || (prefix instanceof Collection && ((Collection<?>) prefix).isEmpty())) {
+                    if (trim) {
+                        b.trimToSize();
+                    }
+                    return DataResult.success(b);
+                }
+                return ops.mergeToList(prefix, b);
+            });
+            builder = DataResult.success(new ArrayList<>(), Lifecycle.stable());
+            return result;
+        }
+
+        private static ArrayList<Object> append(ArrayList<Object> builder, Object value) {
+            builder.add(value);
+            return builder;
+        }
+    }
 }
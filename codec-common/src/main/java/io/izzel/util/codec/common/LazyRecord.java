@@ -0,0 +1,15 @@
+package io.izzel.util.codec.common;
+
+/**
+ * Implemented by the views decoded by {@link TypeCodec#lazy(Class, Class)}, which decode each component on its first
+ * access and keep the result.
+ */
+public interface LazyRecord<A> {
+
+    /**
+     * Decodes the remaining components and creates the object, which is kept for later calls.
+     *
+     * @throws IllegalStateException if a component fails to decode or the object cannot be created
+     */
+    A materialize();
+}
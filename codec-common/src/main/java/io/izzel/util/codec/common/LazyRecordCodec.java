@@ -0,0 +1,171 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.MapLike;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Decodes a class to a proxy of an interface it implements, which keeps the input map and decodes a component when
+ * its interface method is first called. Default methods the class inherits are called on the proxy on Java 16 and
+ * later, other methods are called on the materialized object.
+ */
+class LazyRecordCodec<I, A extends I> implements Codec<I> {
+
+    private final Class<I> view;
+    private final ClassMapCodec<A> codec;
+    private final Codec<A> eager;
+    private final Map<Method, Integer> components = new HashMap<>();
+    // default methods the class does not override, called on the proxy so they only decode what they read
+    private final Set<Method> defaults = new HashSet<>();
+
+    LazyRecordCodec(Class<I> view, ClassMapCodec<A> codec) {
+        if (!view.isInterface() || !view.isAssignableFrom(codec.type())) {
+            throw new IllegalArgumentException(codec.type() + " does not implement the interface " + view);
+        }
+        this.view = view;
+        this.codec = codec;
+        this.eager = codec.codec();
+        List<ClassLayout.Component> list = codec.layout().components();
+        for (Method method : view.getMethods()) {
+            if (method.isDefault()) {
+                if (DefaultMethods.supported() && inherited(codec.type(), method)) {
+                    defaults.add(method);
+                }
+                continue;
+            } else if (method.getParameterCount() != 0) {
+                continue;
+            }
+            for (int i = 0; i < list.size(); i++) {
+                String name = list.get(i).name();
+                String getter = "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+                if ((method.getName().equals(name) || method.getName().equals(getter))
+                    && method.getReturnType().isAssignableFrom(list.get(i).rawType())) {
+                    components.put(method, i);
+                    break;
+                }
+            }
+        }
+    }
+
+    private static boolean inherited(Class<?> type, Method method) {
+        try {
+            return type.getMethod(method.getName(), method.getParameterTypes()).getDeclaringClass().isInterface();
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public <T> DataResult<Pair<I, T>> decode(DynamicOps<T> ops, T input) {
+        return ops.getMap(input).map(map -> {
+            Handler<T> handler = new Handler<>(ops, map);
+            I proxy = view.cast(Proxy.newProxyInstance(view.getClassLoader(), new Class<?>[]{view, LazyRecord.class}, handler));
+            return Pair.of(proxy, ops.empty());
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> DataResult<T> encode(I input, DynamicOps<T> ops, T prefix) {
+        A value;
+        if (input instanceof LazyRecord) {
+            try {
+                value = ((LazyRecord<A>) input).materialize();
+            } catch (IllegalStateException e) {
+                return DataResult.error(e.getMessage());
+            }
+        } else if (codec.type().isInstance(input)) {
+            value = (A) input;
+        } else {
+            return DataResult.error("Not a " + codec.type().getName() + ": " + input);
+        }
+        return eager.encode(value, ops, prefix);
+    }
+
+    @Override
+    public String toString() {
+        return "LazyRecordCodec[" + view.getName() + " -> " + codec.type().getName() + "]";
+    }
+
+    private final class Handler<T> implements InvocationHandler {
+
+        private final DynamicOps<T> ops;
+        private final MapLike<T> input;
+        private final Object[] values;
+        private final boolean[] decoded;
+        private A materialized;
+
+        private Handler(DynamicOps<T> ops, MapLike<T> input) {
+            this.ops = ops;
+            this.input = input;
+            this.values = new Object[codec.componentKeys().size()];
+            this.decoded = new boolean[values.length];
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Integer index = components.get(method);
+            if (index != null) {
+                return component(index);
+            } else if (method.getDeclaringClass() == LazyRecord.class) {
+                return materialize();
+            } else if (defaults.contains(method)) {
+                return DefaultMethods.invoke(proxy, method, args);
+            } else if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "LazyRecord[" + codec.type().getName() + "]";
+                }
+            }
+            try {
+                return method.invoke(materialize(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private synchronized Object component(int index) {
+            if (!decoded[index]) {
+                String key = codec.componentKeys().get(index);
+                DataResult<?> result = codec.componentCodecs().get(index).parse(ops, input.get(key));
+                Optional<?> success = result.result();
+                if (!success.isPresent()) {
+                    throw new IllegalStateException(result.error().map(DataResult.PartialResult::message)
+                        .orElse("Failed to decode " + key));
+                }
+                values[index] = success.get();
+                decoded[index] = true;
+            }
+            return values[index];
+        }
+
+        private synchronized A materialize() {
+            if (materialized == null) {
+                for (int i = 0; i < values.length; i++) {
+                    component(i);
+                }
+                DataResult<A> result = codec.newInstance(values.clone());
+                materialized = result.result().orElseThrow(() -> new IllegalStateException(
+                    result.error().map(DataResult.PartialResult::message).orElse("Failed to initialize " + codec.type())));
+            }
+            return materialized;
+        }
+    }
+}
@@ -0,0 +1,810 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.MapLike;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.izzel.util.codec.common.BinaryOps.BYTE_ARRAY;
+import static io.izzel.util.codec.common.BinaryOps.END;
+import static io.izzel.util.codec.common.BinaryOps.INT_ARRAY;
+import static io.izzel.util.codec.common.BinaryOps.LIST;
+import static io.izzel.util.codec.common.BinaryOps.LIST_STREAM;
+import static io.izzel.util.codec.common.BinaryOps.LONG_ARRAY;
+import static io.izzel.util.codec.common.BinaryOps.MAP;
+import static io.izzel.util.codec.common.BinaryOps.MAP_STREAM;
+import static io.izzel.util.codec.common.BinaryOps.STRING;
+
+/**
+ * Read only ops over a file in the format of {@link BinaryOps}, which is mapped into memory instead of being read. Each
+ * value is an offset into the mapping, and is only decoded when it is read, so decoding part of a large file only
+ * touches the pages holding that part.
+ * <p>
+ * Files are mapped in segments, so the terminated containers written by a {@link TypeWriter} may exceed the size of a
+ * buffer. Values created by the ops are held on the heap, and containers merged from mapped values copy them.
+ *
+ * @see #map(Path)
+ */
+public class MappedBinaryOps implements DynamicOps<MappedBinaryOps.Node> {
+
+    public static final MappedBinaryOps INSTANCE = new MappedBinaryOps();
+
+    private static final int SEGMENT_SHIFT = 30;
+    // larger values are described by their tag in error messages
+    private static final int DESCRIBE_LIMIT = 1024;
+
+    protected MappedBinaryOps() {
+    }
+
+    /**
+     * Maps a file holding one value, and returns that value. The file must not be modified while it is in use.
+     */
+    public static Node map(Path file) throws IOException {
+        return map(file, SEGMENT_SHIFT);
+    }
+
+    static Node map(Path file, int segmentShift) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long segment = 1L << segmentShift;
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + segment - 1) >>> segmentShift)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << segmentShift;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segment, size - start));
+            }
+            return new Node(new Mapped(segments, segmentShift, size), 0);
+        }
+    }
+
+    @Override
+    public Node empty() {
+        return heap(BinaryOps.INSTANCE.empty());
+    }
+
+    @Override
+    public Node emptyList() {
+        return heap(BinaryOps.INSTANCE.emptyList());
+    }
+
+    @Override
+    public Node emptyMap() {
+        return heap(BinaryOps.INSTANCE.emptyMap());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <U> U convertTo(DynamicOps<U> outOps, Node input) {
+        if (outOps instanceof MappedBinaryOps) {
+            return (U) input;
+        }
+        byte tag = tag(input);
+        if (isList(tag)) {
+            return outOps.createList(children(input).map(it -> convertTo(outOps, it)));
+        } else if (isMap(tag)) {
+            return outOps.createMap(entries(input).map(it -> Pair.of(convertTo(outOps, it.getFirst()), convertTo(outOps, it.getSecond()))));
+        }
+        return BinaryOps.INSTANCE.convertTo(outOps, bytes(input));
+    }
+
+    @Override
+    public DataResult<Number> getNumberValue(Node input) {
+        return scalar(input, "number", BinaryOps.INSTANCE::getNumberValue);
+    }
+
+    @Override
+    public Node createNumeric(Number i) {
+        return heap(BinaryOps.INSTANCE.createNumeric(i));
+    }
+
+    @Override
+    public Node createByte(byte value) {
+        return heap(BinaryOps.INSTANCE.createByte(value));
+    }
+
+    @Override
+    public Node createShort(short value) {
+        return heap(BinaryOps.INSTANCE.createShort(value));
+    }
+
+    @Override
+    public Node createInt(int value) {
+        return heap(BinaryOps.INSTANCE.createInt(value));
+    }
+
+    @Override
+    public Node createLong(long value) {
+        return heap(BinaryOps.INSTANCE.createLong(value));
+    }
+
+    @Override
+    public Node createFloat(float value) {
+        return heap(BinaryOps.INSTANCE.createFloat(value));
+    }
+
+    @Override
+    public Node createDouble(double value) {
+        return heap(BinaryOps.INSTANCE.createDouble(value));
+    }
+
+    @Override
+    public DataResult<Boolean> getBooleanValue(Node input) {
+        return scalar(input, "boolean", BinaryOps.INSTANCE::getBooleanValue);
+    }
+
+    @Override
+    public Node createBoolean(boolean value) {
+        return heap(BinaryOps.INSTANCE.createBoolean(value));
+    }
+
+    @Override
+    public DataResult<String> getStringValue(Node input) {
+        return scalar(input, "string", BinaryOps.INSTANCE::getStringValue);
+    }
+
+    @Override
+    public Node createString(String value) {
+        return heap(BinaryOps.INSTANCE.createString(value));
+    }
+
+    @Override
+    public DataResult<Node> mergeToList(Node list, Node value) {
+        return mergeToList(list, Collections.singletonList(value));
+    }
+
+    @Override
+    public DataResult<Node> mergeToList(Node list, List<Node> values) {
+        try {
+            List<ByteBuffer> elements = values.stream().map(MappedBinaryOps::bytes).collect(Collectors.toList());
+            return BinaryOps.INSTANCE.mergeToList(bytes(list), elements).map(MappedBinaryOps::heap);
+        } catch (RuntimeException e) {
+            return DataResult.error("Cannot merge into list at " + list.offset + ": " + e);
+        }
+    }
+
+    @Override
+    public DataResult<Node> mergeToMap(Node map, Node key, Node value) {
+        return mergeToMap(map, Collections.singletonMap(key, value));
+    }
+
+    @Override
+    public DataResult<Node> mergeToMap(Node map, Map<Node, Node> values) {
+        try {
+            Map<ByteBuffer, ByteBuffer> entries = new LinkedHashMap<>();
+            for (Map.Entry<Node, Node> entry : values.entrySet()) {
+                entries.put(bytes(entry.getKey()), bytes(entry.getValue()));
+            }
+            return BinaryOps.INSTANCE.mergeToMap(bytes(map), entries).map(MappedBinaryOps::heap);
+        } catch (RuntimeException e) {
+            return DataResult.error("Cannot merge into map at " + map.offset + ": " + e);
+        }
+    }
+
+    @Override
+    public DataResult<Node> mergeToMap(Node map, MapLike<Node> values) {
+        Map<Node, Node> entries;
+        try {
+            entries = values.entries()
+                .collect(Collectors.toMap(Pair::getFirst, Pair::getSecond, (a, b) -> b, LinkedHashMap::new));
+        } catch (RuntimeException e) {
+            return DataResult.error("Cannot merge into map at " + map.offset + ": " + e);
+        }
+        return mergeToMap(map, entries);
+    }
+
+    @Override
+    public DataResult<Stream<Pair<Node, Node>>> getMapValues(Node input) {
+        if (!isMap(tag(input))) {
+            return DataResult.error("Not a map: " + describe(input));
+        }
+        try {
+            return DataResult.success(entries(input));
+        } catch (RuntimeException e) {
+            return DataResult.error("Malformed map at " + input.offset + ": " + e);
+        }
+    }
+
+    @Override
+    public DataResult<MapLike<Node>> getMap(Node input) {
+        if (!isMap(tag(input))) {
+            return DataResult.error("Not a map: " + describe(input));
+        }
+        try {
+            return DataResult.success(new MappedMap(input));
+        } catch (RuntimeException e) {
+            return DataResult.error("Malformed map at " + input.offset + ": " + e);
+        }
+    }
+
+    @Override
+    public Node createMap(Stream<Pair<Node, Node>> map) {
+        return heap(BinaryOps.INSTANCE.createMap(map.map(it -> Pair.of(bytes(it.getFirst()), bytes(it.getSecond())))));
+    }
+
+    @Override
+    public DataResult<Stream<Node>> getStream(Node input) {
+        byte tag = tag(input);
+        if (isList(tag)) {
+            try {
+                return DataResult.success(stream(new Children(input)));
+            } catch (RuntimeException e) {
+                return DataResult.error("Malformed list at " + input.offset + ": " + e);
+            }
+        } else if (isMap(tag)) {
+            return DataResult.error("Not a list: " + describe(input));
+        }
+        return scalar(input, "list", BinaryOps.INSTANCE::getStream).map(it -> it.map(MappedBinaryOps::heap));
+    }
+
+    @Override
+    public DataResult<Consumer<Consumer<Node>>> getList(Node input) {
+        if (!isList(tag(input))) {
+            return DynamicOps.super.getList(input);
+        }
+        try {
+            new Children(input);
+        } catch (RuntimeException e) {
+            return DataResult.error("Malformed list at " + input.offset + ": " + e);
+        }
+        return DataResult.success(c -> new Children(input).forEachRemaining(c));
+    }
+
+    @Override
+    public Node createList(Stream<Node> input) {
+        return heap(BinaryOps.INSTANCE.createList(input.map(MappedBinaryOps::bytes)));
+    }
+
+    @Override
+    public DataResult<ByteBuffer> getByteBuffer(Node input) {
+        if (tag(input) == BYTE_ARRAY) {
+            return BinaryOps.INSTANCE.getByteBuffer(bytes(input));
+        }
+        return DynamicOps.super.getByteBuffer(input);
+    }
+
+    @Override
+    public Node createByteList(ByteBuffer input) {
+        return heap(BinaryOps.INSTANCE.createByteList(input));
+    }
+
+    @Override
+    public DataResult<IntStream> getIntStream(Node input) {
+        if (tag(input) == INT_ARRAY) {
+            return BinaryOps.INSTANCE.getIntStream(bytes(input));
+        }
+        return DynamicOps.super.getIntStream(input);
+    }
+
+    @Override
+    public Node createIntList(IntStream input) {
+        return heap(BinaryOps.INSTANCE.createIntList(input));
+    }
+
+    @Override
+    public DataResult<LongStream> getLongStream(Node input) {
+        if (tag(input) == LONG_ARRAY) {
+            return BinaryOps.INSTANCE.getLongStream(bytes(input));
+        }
+        return DynamicOps.super.getLongStream(input);
+    }
+
+    @Override
+    public Node createLongList(LongStream input) {
+        return heap(BinaryOps.INSTANCE.createLongList(input));
+    }
+
+    @Override
+    public Node remove(Node input, String key) {
+        if (!isMap(tag(input))) {
+            return input;
+        }
+        return heap(BinaryOps.INSTANCE.remove(bytes(input), key));
+    }
+
+    @Override
+    public String toString() {
+        return "Mapped Binary";
+    }
+
+    private static <R> DataResult<R> scalar(Node input, String expected, Function<ByteBuffer, DataResult<R>> read) {
+        byte tag = tag(input);
+        if (isList(tag) || isMap(tag) || input.source instanceof Invalid) {
+            return DataResult.error("Not a " + expected + ": " + describe(input));
+        }
+        try {
+            return read.apply(bytes(input));
+        } catch (RuntimeException e) {
+            return DataResult.error("Malformed value at " + input.offset + ": " + e);
+        }
+    }
+
+    private static Node heap(ByteBuffer value) {
+        return new Node(new Heap(value), 0);
+    }
+
+    /**
+     * @return a node standing for a value that could not be read, whose getters return the message as an error
+     */
+    private static Node invalid(String message) {
+        return new Node(new Invalid(message), 0);
+    }
+
+    private static boolean isList(byte tag) {
+        return tag == LIST || tag == LIST_STREAM;
+    }
+
+    private static boolean isMap(byte tag) {
+        return tag == MAP || tag == MAP_STREAM;
+    }
+
+    private static byte tag(Node input) {
+        return input.offset < input.source.size() ? input.source.get(input.offset) : -1;
+    }
+
+    private static long end(Node input) {
+        Cursor in = new Cursor(input.source, input.offset);
+        skip(in);
+        return in.position;
+    }
+
+    /**
+     * @return the bytes of the value, a view of the mapping unless it crosses a segment
+     */
+    private static ByteBuffer bytes(Node input) {
+        long length = end(input) - input.offset;
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Value at " + input.offset + " does not fit a buffer");
+        }
+        return input.source.buffer(input.offset, (int) length);
+    }
+
+    private static String readString(Node input) {
+        Cursor in = new Cursor(input.source, input.offset + 1);
+        int length = in.readVarInt();
+        return StandardCharsets.UTF_8.decode(input.source.buffer(in.position, length)).toString();
+    }
+
+    private static Stream<Node> children(Node input) {
+        return stream(new Children(input));
+    }
+
+    private static Stream<Pair<Node, Node>> entries(Node input) {
+        Children children = new Children(input);
+        return stream(new Iterator<Pair<Node, Node>>() {
+            @Override
+            public boolean hasNext() {
+                return children.hasNext();
+            }
+
+            @Override
+            public Pair<Node, Node> next() {
+                Node key = children.next();
+                return Pair.of(key, value(input, key, children));
+            }
+        });
+    }
+
+    private static Node value(Node map, Node key, Children children) {
+        if (key.source instanceof Invalid) {
+            return key;
+        }
+        return children.hasNext() ? children.next() : invalid("Missing value for the last key of the map at " + map.offset);
+    }
+
+    private static <T> Stream<T> stream(Iterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private static String describe(Node input) {
+        if (input.source instanceof Invalid) {
+            return ((Invalid) input.source).message;
+        }
+        try {
+            if (end(input) - input.offset <= DESCRIBE_LIMIT) {
+                Object value = INSTANCE.convertTo(JavaPrimitiveOps.INSTANCE, input);
+                return value != null && value.getClass().isArray() ? value.getClass().getSimpleName() : String.valueOf(value);
+            }
+        } catch (RuntimeException ignored) {
+        }
+        return "<tag " + tag(input) + " at " + input.offset + ">";
+    }
+
+    private static void skip(Cursor in) {
+        byte tag = in.get();
+        switch (tag) {
+            case BinaryOps.EMPTY:
+            case BinaryOps.FALSE:
+            case BinaryOps.TRUE:
+                return;
+            case BinaryOps.BYTE:
+                in.advance(1);
+                return;
+            case BinaryOps.SHORT:
+            case BinaryOps.INT:
+                in.readVarInt();
+                return;
+            case BinaryOps.LONG:
+                in.readVarLong();
+                return;
+            case BinaryOps.FLOAT:
+                in.advance(4);
+                return;
+            case BinaryOps.DOUBLE:
+                in.advance(8);
+                return;
+            case BinaryOps.STRING:
+            case BinaryOps.LIST:
+            case BinaryOps.MAP:
+            case BinaryOps.BYTE_ARRAY:
+            case BinaryOps.BOOLEAN_ARRAY:
+                in.advance(in.readVarInt());
+                return;
+            case BinaryOps.SHORT_ARRAY:
+                in.advance(in.readVarInt() * 2L);
+                return;
+            case BinaryOps.INT_ARRAY:
+            case BinaryOps.FLOAT_ARRAY:
+                in.advance(in.readVarInt() * 4L);
+                return;
+            case BinaryOps.LONG_ARRAY:
+            case BinaryOps.DOUBLE_ARRAY:
+                in.advance(in.readVarInt() * 8L);
+                return;
+            case BinaryOps.LIST_STREAM:
+            case BinaryOps.MAP_STREAM:
+                while (in.source.get(in.position) != END) {
+                    skip(in);
+                }
+                in.advance(1);
+                return;
+            default:
+                throw new IllegalArgumentException("Unknown tag " + tag + " at " + (in.position - 1));
+        }
+    }
+
+    /**
+     * A value stored at an offset of a file or of a heap buffer.
+     */
+    public static final class Node {
+
+        final Source source;
+        final long offset;
+
+        private Node(Source source, long offset) {
+            this.source = source;
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            return o instanceof Node && bytes(this).equals(bytes((Node) o));
+        }
+
+        @Override
+        public int hashCode() {
+            return bytes(this).hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return describe(this);
+        }
+    }
+
+    private abstract static class Source {
+
+        abstract long size();
+
+        abstract byte get(long position);
+
+        /**
+         * @return the bytes in the range, as a view if possible
+         */
+        abstract ByteBuffer buffer(long position, int length);
+    }
+
+    private static final class Heap extends Source {
+
+        private final ByteBuffer buffer;
+
+        private Heap(ByteBuffer buffer) {
+            this.buffer = buffer.slice();
+        }
+
+        @Override
+        long size() {
+            return buffer.limit();
+        }
+
+        @Override
+        byte get(long position) {
+            return buffer.get((int) position);
+        }
+
+        @Override
+        ByteBuffer buffer(long position, int length) {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position((int) position);
+            slice.limit((int) position + length);
+            return slice.slice();
+        }
+    }
+
+    private static final class Invalid extends Source {
+
+        private final String message;
+
+        private Invalid(String message) {
+            this.message = message;
+        }
+
+        @Override
+        long size() {
+            return 0;
+        }
+
+        @Override
+        byte get(long position) {
+            throw new IllegalArgumentException(message);
+        }
+
+        @Override
+        ByteBuffer buffer(long position, int length) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    private static final class Mapped extends Source {
+
+        private final MappedByteBuffer[] segments;
+        private final int shift;
+        private final long mask;
+        private final long size;
+
+        private Mapped(MappedByteBuffer[] segments, int shift, long size) {
+            this.segments = segments;
+            this.shift = shift;
+            this.mask = (1L << shift) - 1;
+            this.size = size;
+        }
+
+        @Override
+        long size() {
+            return size;
+        }
+
+        @Override
+        byte get(long position) {
+            if (position < 0 || position >= size) {
+                throw new BufferUnderflowException();
+            }
+            return segments[(int) (position >>> shift)].get((int) (position & mask));
+        }
+
+        @Override
+        ByteBuffer buffer(long position, int length) {
+            if (position < 0 || position + length > size) {
+                throw new BufferUnderflowException();
+            }
+            int start = (int) (position & mask);
+            MappedByteBuffer segment = segments[(int) (position >>> shift)];
+            if (start + length <= segment.limit()) {
+                ByteBuffer slice = segment.duplicate();
+                slice.position(start);
+                slice.limit(start + length);
+                return slice.slice();
+            }
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = get(position + i);
+            }
+            return ByteBuffer.wrap(bytes);
+        }
+    }
+
+    private static final class Cursor {
+
+        private final Source source;
+        private long position;
+
+        private Cursor(Source source, long position) {
+            this.source = source;
+            this.position = position;
+        }
+
+        private byte get() {
+            return source.get(position++);
+        }
+
+        private void advance(long length) {
+            if (length < 0 || position + length > source.size()) {
+                throw new BufferUnderflowException();
+            }
+            position += length;
+        }
+
+        private int readVarInt() {
+            int result = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = get();
+                result |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        private long readVarLong() {
+            long result = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                byte b = get();
+                result |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varlong");
+        }
+    }
+
+    /**
+     * Iterates the values of a list, or the keys and values of a map alternately, reading the extent of each value
+     * but nothing beyond it. A value that cannot be read ends the iteration as an {@linkplain #invalid invalid} node.
+     */
+    private static final class Children implements Iterator<Node> {
+
+        private final Node container;
+        private final Source source;
+        // the end of a length prefixed container, or -1 for a terminated one
+        private final long end;
+        private long position;
+        private Node next;
+        private boolean done;
+
+        /**
+         * @throws RuntimeException if the length of a prefixed container exceeds the source
+         */
+        private Children(Node container) {
+            this.container = container;
+            this.source = container.source;
+            Cursor in = new Cursor(source, container.offset);
+            byte tag = in.get();
+            if (tag == LIST || tag == MAP) {
+                int length = in.readVarInt();
+                long start = in.position;
+                in.advance(length);
+                this.end = in.position;
+                this.position = start;
+            } else {
+                this.end = -1;
+                this.position = in.position;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    if (end < 0 ? source.get(position) == END : position >= end) {
+                        done = true;
+                        return false;
+                    }
+                    Node child = new Node(source, position);
+                    long childEnd = end(child);
+                    if (end >= 0 && childEnd > end) {
+                        throw new IllegalArgumentException("Value at " + position + " exceeds its container ending at " + end);
+                    }
+                    position = childEnd;
+                    next = child;
+                } catch (RuntimeException e) {
+                    done = true;
+                    next = invalid("Malformed container at " + container.offset + ": " + e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Node next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node child = next;
+            next = null;
+            return child;
+        }
+    }
+
+    /**
+     * Looks up keys by scanning the entries only as far as needed, indexing the names passed on the way. Once the scan
+     * hits a malformed entry, keys not indexed before it resolve to the invalid node.
+     */
+    private static final class MappedMap implements MapLike<Node> {
+
+        private final Node map;
+        private final Children unscanned;
+        private final Map<String, Node> byName = new HashMap<>();
+        private Node failure;
+
+        private MappedMap(Node map) {
+            this.map = map;
+            this.unscanned = new Children(map);
+        }
+
+        @Override
+        public Node get(Node key) {
+            if (tag(key) == STRING) {
+                return get(readString(key));
+            }
+            Iterator<Pair<Node, Node>> iterator = entries().iterator();
+            while (iterator.hasNext()) {
+                Pair<Node, Node> entry = iterator.next();
+                if (entry.getFirst().source instanceof Invalid || entry.getFirst().equals(key)) {
+                    return entry.getSecond();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Node get(String key) {
+            Node value = byName.get(key);
+            while (value == null && failure == null && unscanned.hasNext()) {
+                Node name = unscanned.next();
+                Node next = value(map, name, unscanned);
+                if (next.source instanceof Invalid) {
+                    failure = next;
+                } else if (tag(name) == STRING) {
+                    try {
+                        String string = readString(name);
+                        byName.putIfAbsent(string, next);
+                        if (string.equals(key)) {
+                            value = next;
+                        }
+                    } catch (RuntimeException e) {
+                        failure = invalid("Malformed key at " + name.offset + ": " + e);
+                    }
+                }
+            }
+            return value != null ? value : failure;
+        }
+
+        @Override
+        public Stream<Pair<Node, Node>> entries() {
+            return MappedBinaryOps.entries(map);
+        }
+
+        @Override
+        public String toString() {
+            return "MapLike[" + describe(map) + "]";
+        }
+    }
+}
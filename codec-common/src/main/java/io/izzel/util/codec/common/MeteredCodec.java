@@ -0,0 +1,48 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+
+import java.util.Optional;
+
+/**
+ * Records the calls of a codec into the metrics of its type.
+ *
+ * @see CodecMetrics
+ */
+class MeteredCodec<A> implements Codec<A> {
+
+    private final Codec<A> codec;
+    private final CodecMetrics.Stats stats;
+
+    MeteredCodec(Codec<A> codec, CodecMetrics.Stats stats) {
+        this.codec = codec;
+        this.stats = stats;
+    }
+
+    @Override
+    public <T> DataResult<Pair<A, T>> decode(DynamicOps<T> ops, T input) {
+        long start = System.nanoTime();
+        DataResult<Pair<A, T>> result = codec.decode(ops, input);
+        long nanos = System.nanoTime() - start;
+        Optional<Pair<A, T>> success = result.result();
+        stats.decoded(nanos, success.isPresent() ? success.get().getFirst() : null, success.isPresent());
+        return result;
+    }
+
+    @Override
+    public <T> DataResult<T> encode(A input, DynamicOps<T> ops, T prefix) {
+        long start = System.nanoTime();
+        DataResult<T> result = codec.encode(input, ops, prefix);
+        long nanos = System.nanoTime() - start;
+        stats.encoded(nanos, input, result.result().isPresent());
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Metered[" + codec + "]";
+    }
+}
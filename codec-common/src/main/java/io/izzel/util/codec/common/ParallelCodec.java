@@ -0,0 +1,363 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.ListBuilder;
+import com.mojang.serialization.MapLike;
+import com.mojang.serialization.RecordBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Decodes and encodes the elements of large lists and maps in chunks on an executor. Inputs below the threshold
+ * are handled by the sequential DFU codec, so their results are unchanged.
+ * <p>
+ * Above the threshold the element order is kept, and a failure reports the error of the first failing element
+ * without a partial result. Element codecs and ops must tolerate concurrent use.
+ */
+abstract class ParallelCodec<A> implements Codec<A> {
+
+    private static final int MIN_CHUNK = 256;
+
+    private final Codec<A> sequential;
+    private final int threshold;
+    private final Executor executor;
+
+    ParallelCodec(Codec<A> sequential, int threshold, Executor executor) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Threshold must be positive: " + threshold);
+        }
+        this.sequential = sequential;
+        this.threshold = threshold;
+        this.executor = executor;
+    }
+
+    @Override
+    public <T> DataResult<Pair<A, T>> decode(DynamicOps<T> ops, T input) {
+        return decodeParallel(ops, input).orElseGet(() -> sequential.decode(ops, input));
+    }
+
+    @Override
+    public <T> DataResult<T> encode(A input, DynamicOps<T> ops, T prefix) {
+        return size(input) < threshold ? sequential.encode(input, ops, prefix) : encodeParallel(input, ops, prefix);
+    }
+
+    /**
+     * @return the decoded value, or empty if the input is handled by the sequential codec
+     */
+    abstract <T> Optional<DataResult<Pair<A, T>>> decodeParallel(DynamicOps<T> ops, T input);
+
+    abstract int size(A input);
+
+    abstract <T> DataResult<T> encodeParallel(A input, DynamicOps<T> ops, T prefix);
+
+    boolean parallel(int size) {
+        return size >= threshold;
+    }
+
+    /**
+     * Runs the task over {@code [0, size)} in chunks. The calling thread and the executor tasks claim chunks from a
+     * shared counter, and the caller only waits for chunks that already run, so nested parallel codecs on a bounded
+     * executor cannot starve it.
+     *
+     * @return the failure of the lowest failing index, or {@code null} if all succeeded
+     */
+    <R> DataResult<R> forChunks(int size, Chunk<R> task) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int chunk = Math.max(MIN_CHUNK, (size + processors * 4 - 1) / (processors * 4));
+        Chunks<R> chunks = new Chunks<>(task, size, chunk);
+        for (int i = 1; i < chunks.results.length; i++) {
+            executor.execute(chunks::drain);
+        }
+        chunks.drain();
+        return chunks.await();
+    }
+
+    private static <R> DataResult<R> run(Chunk<R> task, int from, int to, AtomicInteger failed) {
+        for (int i = from; i < to; i++) {
+            // an earlier element failed, which is reported instead
+            if (failed.get() < from) {
+                return null;
+            }
+            DataResult<R> result = task.run(i);
+            if (result != null) {
+                failed.accumulateAndGet(i, Math::min);
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of elements of a list or map input if the ops holds it in memory, or {@code -1}
+     */
+    private static int knownSize(Object input) {
+        if (input instanceof Collection) {
+            return ((Collection<?>) input).size();
+        } else if (input instanceof Map) {
+            return ((Map<?, ?>) input).size();
+        } else if (input instanceof JsonArray) {
+            return ((JsonArray) input).size();
+        } else if (input instanceof JsonObject) {
+            return ((JsonObject) input).size();
+        }
+        return -1;
+    }
+
+    private static final class Chunks<R> {
+
+        private final Chunk<R> task;
+        private final int size;
+        private final int chunk;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger(Integer.MAX_VALUE);
+        // the failure or thrown exception of each chunk, published by the latch
+        private final Object[] results;
+        private final CountDownLatch done;
+
+        private Chunks(Chunk<R> task, int size, int chunk) {
+            this.task = task;
+            this.size = size;
+            this.chunk = chunk;
+            this.results = new Object[(size + chunk - 1) / chunk];
+            this.done = new CountDownLatch(results.length);
+        }
+
+        private void drain() {
+            for (int index = next.getAndIncrement(); index < results.length; index = next.getAndIncrement()) {
+                int from = index * chunk;
+                try {
+                    results[index] = run(task, from, Math.min(size, from + chunk), failed);
+                } catch (Throwable e) {
+                    failed.accumulateAndGet(from, Math::min);
+                    results[index] = e;
+                } finally {
+                    done.countDown();
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private DataResult<R> await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            for (Object result : results) {
+                if (result instanceof Error) {
+                    throw (Error) result;
+                } else if (result instanceof RuntimeException) {
+                    throw (RuntimeException) result;
+                } else if (result instanceof Throwable) {
+                    throw new CompletionException((Throwable) result);
+                } else if (result != null) {
+                    return (DataResult<R>) result;
+                }
+            }
+            return null;
+        }
+    }
+
+    interface Chunk<R> {
+
+        /**
+         * @return the failure of the element, or {@code null} on success
+         */
+        DataResult<R> run(int index);
+    }
+
+    static final class OfList<E> extends ParallelCodec<List<E>> {
+
+        private final Codec<E> element;
+
+        OfList(Codec<E> element, int threshold, Executor executor) {
+            super(element.listOf(), threshold, executor);
+            this.element = element;
+        }
+
+        @Override
+        <T> Optional<DataResult<Pair<List<E>, T>>> decodeParallel(DynamicOps<T> ops, T input) {
+            DataResult<Consumer<Consumer<T>>> list = ops.getList(input);
+            if (!list.result().isPresent() || (knownSize(input) >= 0 && !parallel(knownSize(input)))) {
+                return Optional.empty();
+            }
+            List<T> elements = new ArrayList<>();
+            list.result().get().accept(elements::add);
+            if (!parallel(elements.size())) {
+                return Optional.empty();
+            }
+            Object[] values = new Object[elements.size()];
+            DataResult<Pair<List<E>, T>> failure = forChunks(values.length, i -> {
+                DataResult<Pair<E, T>> result = element.decode(ops, elements.get(i));
+                Optional<Pair<E, T>> success = result.result();
+                if (!success.isPresent()) {
+                    return error(result);
+                }
+                values[i] = success.get().getFirst();
+                return null;
+            });
+            if (failure != null) {
+                return Optional.of(failure);
+            }
+            @SuppressWarnings("unchecked")
+            List<E> decoded = (List<E>) Collections.unmodifiableList(Arrays.asList(values));
+            return Optional.of(DataResult.success(Pair.of(decoded, ops.empty())));
+        }
+
+        @Override
+        int size(List<E> input) {
+            return input.size();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <T> DataResult<T> encodeParallel(List<E> input, DynamicOps<T> ops, T prefix) {
+            Object[] values = new Object[input.size()];
+            DataResult<T> failure = forChunks(values.length, i -> {
+                DataResult<T> result = element.encodeStart(ops, input.get(i));
+                Optional<T> success = result.result();
+                if (!success.isPresent()) {
+                    return result;
+                }
+                values[i] = success.get();
+                return null;
+            });
+            if (failure != null) {
+                return failure;
+            }
+            ListBuilder<T> builder = ops.listBuilder();
+            for (Object value : values) {
+                builder.add((T) value);
+            }
+            return builder.build(prefix);
+        }
+
+        @Override
+        public String toString() {
+            return "ParallelListCodec[" + element + "]";
+        }
+    }
+
+    static final class OfMap<K, V> extends ParallelCodec<Map<K, V>> {
+
+        private final Codec<K> key;
+        private final Codec<V> value;
+
+        OfMap(Codec<K> key, Codec<V> value, int threshold, Executor executor) {
+            super(Codec.unboundedMap(key, value), threshold, executor);
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        <T> Optional<DataResult<Pair<Map<K, V>, T>>> decodeParallel(DynamicOps<T> ops, T input) {
+            DataResult<MapLike<T>> map = ops.getMap(input);
+            if (!map.result().isPresent() || (knownSize(input) >= 0 && !parallel(knownSize(input)))) {
+                return Optional.empty();
+            }
+            List<Pair<T, T>> entries = new ArrayList<>();
+            map.result().get().entries().forEach(entries::add);
+            if (!parallel(entries.size())) {
+                return Optional.empty();
+            }
+            Object[] keys = new Object[entries.size()];
+            Object[] values = new Object[entries.size()];
+            DataResult<Pair<Map<K, V>, T>> failure = forChunks(keys.length, i -> {
+                DataResult<Pair<K, T>> k = key.decode(ops, entries.get(i).getFirst());
+                Optional<Pair<K, T>> kSuccess = k.result();
+                if (!kSuccess.isPresent()) {
+                    return error(k);
+                }
+                DataResult<Pair<V, T>> v = value.decode(ops, entries.get(i).getSecond());
+                Optional<Pair<V, T>> vSuccess = v.result();
+                if (!vSuccess.isPresent()) {
+                    return error(v);
+                }
+                keys[i] = kSuccess.get().getFirst();
+                values[i] = vSuccess.get().getFirst();
+                return null;
+            });
+            if (failure != null) {
+                return Optional.of(failure);
+            }
+            Map<Object, Object> decoded = new LinkedHashMap<>(Math.max(16, (int) (keys.length / 0.75F) + 1));
+            for (int i = 0; i < keys.length; i++) {
+                if (decoded.put(keys[i], values[i]) != null) {
+                    return Optional.of(DataResult.error("Duplicate entry for key: '" + keys[i] + "'"));
+                }
+            }
+            @SuppressWarnings("unchecked")
+            Map<K, V> result = (Map<K, V>) Collections.unmodifiableMap(decoded);
+            return Optional.of(DataResult.success(Pair.of(result, ops.empty())));
+        }
+
+        @Override
+        int size(Map<K, V> input) {
+            return input.size();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        <T> DataResult<T> encodeParallel(Map<K, V> input, DynamicOps<T> ops, T prefix) {
+            List<Map.Entry<K, V>> entries = new ArrayList<>(input.entrySet());
+            Object[] keys = new Object[entries.size()];
+            Object[] values = new Object[entries.size()];
+            DataResult<T> failure = forChunks(keys.length, i -> {
+                DataResult<T> k = key.encodeStart(ops, entries.get(i).getKey());
+                Optional<T> kSuccess = k.result();
+                if (!kSuccess.isPresent()) {
+                    return k;
+                }
+                DataResult<T> v = value.encodeStart(ops, entries.get(i).getValue());
+                Optional<T> vSuccess = v.result();
+                if (!vSuccess.isPresent()) {
+                    return v;
+                }
+                keys[i] = kSuccess.get();
+                values[i] = vSuccess.get();
+                return null;
+            });
+            if (failure != null) {
+                return failure;
+            }
+            RecordBuilder<T> builder = ops.mapBuilder();
+            for (int i = 0; i < keys.length; i++) {
+                builder = builder.add((T) keys[i], (T) values[i]);
+            }
+            return builder.build(prefix);
+        }
+
+        @Override
+        public String toString() {
+            return "ParallelMapCodec[" + key + " -> " + value + "]";
+        }
+    }
+
+    private static <R> DataResult<R> error(DataResult<?> result) {
+        return DataResult.error(result.error().map(DataResult.PartialResult::message).orElse("Failed to decode element"));
+    }
+}
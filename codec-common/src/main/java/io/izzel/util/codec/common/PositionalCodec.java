@@ -0,0 +1,80 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.ListBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Encodes a class as a list of its layout fingerprint followed by the components in the order of
+ * {@link ClassMapCodec#componentKeys()}.
+ */
+class PositionalCodec<A> implements Codec<A> {
+
+    private final ClassMapCodec<A> codec;
+    private final List<String> keys;
+    private final List<Codec<?>> codecs;
+    private final long fingerprint;
+
+    PositionalCodec(ClassMapCodec<A> codec, long fingerprint) {
+        this.codec = codec;
+        this.keys = codec.componentKeys();
+        this.codecs = codec.componentCodecs();
+        this.fingerprint = fingerprint;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> DataResult<Pair<A, T>> decode(DynamicOps<T> ops, T input) {
+        DataResult<Consumer<Consumer<T>>> list = ops.getList(input);
+        if (!list.result().isPresent()) {
+            return (DataResult<Pair<A, T>>) (DataResult<?>) list;
+        }
+        List<T> elements = new ArrayList<>(keys.size() + 1);
+        list.result().get().accept(elements::add);
+        if (elements.size() != keys.size() + 1) {
+            return DataResult.error("Expected a fingerprint and " + keys.size() + " components for " + codec.type().getName()
+                + ", got " + elements.size() + " elements");
+        }
+        DataResult<Number> header = ops.getNumberValue(elements.get(0));
+        if (!header.result().isPresent()) {
+            return (DataResult<Pair<A, T>>) (DataResult<?>) header;
+        }
+        long actual = header.result().get().longValue();
+        if (actual != fingerprint) {
+            return DataResult.error("Layout fingerprint of " + codec.type().getName() + " does not match: expected "
+                + Long.toHexString(fingerprint) + ", got " + Long.toHexString(actual));
+        }
+        Object[] args = new Object[keys.size()];
+        for (int i = 0; i < args.length; i++) {
+            DataResult<?> result = codecs.get(i).parse(ops, elements.get(i + 1));
+            if (!result.result().isPresent()) { // indicate error
+                return (DataResult<Pair<A, T>>) (DataResult<?>) result;
+            }
+            args[i] = result.result().get();
+        }
+        return codec.newInstance(args).map(it -> Pair.of(it, ops.empty()));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> DataResult<T> encode(A input, DynamicOps<T> ops, T prefix) {
+        ListBuilder<T> builder = ops.listBuilder();
+        builder.add(ops.createLong(fingerprint));
+        for (int i = 0; i < keys.size(); i++) {
+            Codec<Object> codec = (Codec<Object>) codecs.get(i);
+            builder.add(this.codec.component(input, keys.get(i)).flatMap(it -> codec.encodeStart(ops, it)));
+        }
+        return builder.build(prefix);
+    }
+
+    @Override
+    public String toString() {
+        return "PositionalCodec[" + codec.type() + "]";
+    }
+}
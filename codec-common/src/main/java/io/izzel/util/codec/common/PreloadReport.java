@@ -0,0 +1,52 @@
+package io.izzel.util.codec.common;
+
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of {@link TypeCodec#preload(java.util.Collection, java.util.concurrent.Executor, TypeCodec.Mode, int)}.
+ */
+public final class PreloadReport {
+
+    private final Map<Type, Long> resolutionNanos;
+    private final Map<Type, String> failures;
+    private final long warmupNanos;
+    private final long totalNanos;
+
+    PreloadReport(Map<Type, Long> resolutionNanos, Map<Type, String> failures, long warmupNanos, long totalNanos) {
+        this.resolutionNanos = Collections.unmodifiableMap(resolutionNanos);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.warmupNanos = warmupNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    /**
+     * @return the time spent resolving each type of the graph, dependencies before the types containing them. As
+     * dependencies are resolved first, the time of a type mostly excludes them.
+     */
+    public Map<Type, Long> resolutionNanos() {
+        return resolutionNanos;
+    }
+
+    /**
+     * @return the message of each type failing to resolve
+     */
+    public Map<Type, String> failures() {
+        return failures;
+    }
+
+    public long warmupNanos() {
+        return warmupNanos;
+    }
+
+    public long totalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "PreloadReport[types=" + resolutionNanos.size() + ", failures=" + failures.size()
+            + ", warmup=" + warmupNanos / 1_000_000 + "ms, total=" + totalNanos / 1_000_000 + "ms]";
+    }
+}
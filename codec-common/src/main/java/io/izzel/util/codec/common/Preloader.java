@@ -0,0 +1,256 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.serialization.Codec;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Resolves a type graph in levels, each type after the types it contains, so shared types are created once and
+ * the types of a level are resolved in parallel.
+ */
+final class Preloader {
+
+    private final TypeCodec.Mode mode;
+    private final Executor executor;
+    private final Map<Type, List<Type>> dependencies = new LinkedHashMap<>();
+    private final Map<Type, Long> nanos = new ConcurrentHashMap<>();
+    private final Map<Type, String> failures = new ConcurrentHashMap<>();
+
+    private Preloader(TypeCodec.Mode mode, Executor executor) {
+        this.mode = mode;
+        this.executor = executor;
+    }
+
+    static PreloadReport preload(Collection<? extends Type> types, Executor executor, TypeCodec.Mode mode, int warmupIterations) {
+        long start = System.nanoTime();
+        Preloader preloader = new Preloader(mode, executor);
+        preloader.discover(types);
+        List<List<Type>> levels = preloader.levels();
+        Map<Type, Long> resolution = new LinkedHashMap<>();
+        for (List<Type> level : levels) {
+            preloader.forEach(level, preloader::resolve);
+            for (Type type : level) {
+                Long time = preloader.nanos.get(type);
+                if (time != null) {
+                    resolution.put(type, time);
+                }
+            }
+        }
+        long warmup = 0;
+        if (warmupIterations > 0) {
+            long warmupStart = System.nanoTime();
+            List<Type> resolved = new ArrayList<>(resolution.keySet());
+            preloader.forEach(resolved, type -> preloader.warmup(type, warmupIterations));
+            warmup = System.nanoTime() - warmupStart;
+        }
+        return new PreloadReport(resolution, new LinkedHashMap<>(preloader.failures), warmup, System.nanoTime() - start);
+    }
+
+    // breadth first, the types of a step are scanned in parallel
+    private void discover(Collection<? extends Type> types) {
+        Set<Type> step = new LinkedHashSet<>(types);
+        while (!step.isEmpty()) {
+            Map<Type, List<Type>> found = new ConcurrentHashMap<>();
+            forEach(new ArrayList<>(step), type -> found.put(type, directDependencies(type)));
+            for (Type type : step) {
+                dependencies.put(type, found.get(type));
+            }
+            Set<Type> next = new LinkedHashSet<>();
+            for (Type type : step) {
+                for (Type dependency : found.get(type)) {
+                    if (!dependencies.containsKey(dependency)) {
+                        next.add(dependency);
+                    }
+                }
+            }
+            step = next;
+        }
+    }
+
+    // the types TypeCodec resolves while creating the codec of the type
+    private static List<Type> directDependencies(Type type) {
+        if (type instanceof ParameterizedType) {
+            Class<?> rawType = (Class<?>) ((ParameterizedType) type).getRawType();
+            if (rawType == Collection.class || rawType == List.class || rawType == Map.class
+                || rawType == EnumSet.class || rawType == EnumMap.class || rawType == IntMap.class || rawType == LongMap.class) {
+                List<Type> arguments = new ArrayList<>();
+                Collections.addAll(arguments, ((ParameterizedType) type).getActualTypeArguments());
+                return arguments;
+            }
+        } else if (type instanceof Class && !isLeaf((Class<?>) type)) {
+            Class<?> clazz = (Class<?>) type;
+            if (clazz.isArray()) {
+                return Collections.singletonList(clazz.getComponentType());
+            }
+            List<Type> components = new ArrayList<>();
+            try {
+                for (ClassLayout.Component component : ClassLayout.of(clazz).components()) {
+                    components.add(component.genericType());
+                }
+            } catch (RuntimeException e) {
+                // reported when the type is resolved
+            }
+            return components;
+        }
+        return Collections.emptyList();
+    }
+
+    private static boolean isLeaf(Class<?> type) {
+        return type.isPrimitive() || TypeCodec.isPrimitive(type) || TypeCodec.provider(type) != null
+            || TypeCodec.isEnum(type);
+    }
+
+    /**
+     * @return the types in levels, each type in a level after its dependencies except those in a cycle with it
+     */
+    private List<List<Type>> levels() {
+        Map<Type, Integer> levels = new HashMap<>();
+        Set<Type> visiting = new HashSet<>();
+        List<List<Type>> result = new ArrayList<>();
+        for (Type type : dependencies.keySet()) {
+            int level = level(type, levels, visiting);
+            while (result.size() <= level) {
+                result.add(new ArrayList<>());
+            }
+        }
+        for (Map.Entry<Type, Integer> entry : levels.entrySet()) {
+            result.get(entry.getValue()).add(entry.getKey());
+        }
+        return result;
+    }
+
+    private int level(Type type, Map<Type, Integer> levels, Set<Type> visiting) {
+        Integer known = levels.get(type);
+        if (known != null) {
+            return known;
+        }
+        visiting.add(type);
+        int level = 0;
+        for (Type dependency : dependencies.get(type)) {
+            if (!visiting.contains(dependency)) {
+                level = Math.max(level, level(dependency, levels, visiting) + 1);
+            }
+        }
+        visiting.remove(type);
+        levels.put(type, level);
+        return level;
+    }
+
+    private void forEach(List<Type> types, Consumer<Type> task) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[types.size()];
+        for (int i = 0; i < futures.length; i++) {
+            Type type = types.get(i);
+            futures[i] = CompletableFuture.runAsync(() -> task.accept(type), executor);
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private void resolve(Type type) {
+        long start = System.nanoTime();
+        try {
+            TypeCodec.of(type, mode);
+            nanos.put(type, System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            failures.put(type, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private void warmup(Type type, int iterations) {
+        if (!(type instanceof Class) || isLeaf((Class<?>) type) || ((Class<?>) type).isArray()) {
+            return;
+        }
+        Object sample = sample(type, new HashSet<>());
+        if (sample == null) {
+            return;
+        }
+        Codec<Object> codec = TypeCodec.of(type, mode);
+        for (int i = 0; i < iterations; i++) {
+            codec.encodeStart(JavaPrimitiveOps.INSTANCE, sample).flatMap(it -> codec.parse(JavaPrimitiveOps.INSTANCE, it));
+        }
+    }
+
+    /**
+     * @return a value of the type with default components and single element containers, or {@code null} if the
+     * type cannot be instantiated without a cycle
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object sample(Type type, Set<Type> visiting) {
+        if (type instanceof ParameterizedType) {
+            Class<?> rawType = (Class<?>) ((ParameterizedType) type).getRawType();
+            Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+            if (rawType == EnumSet.class) {
+                return EnumSet.noneOf((Class) arguments[0]);
+            } else if (rawType == EnumMap.class) {
+                return new EnumMap<>((Class) arguments[0]);
+            } else if (rawType == IntMap.class) {
+                Object value = sample(arguments[0], visiting);
+                IntMap<Object> map = new IntMap<>();
+                if (value != null) {
+                    map.put(0, value);
+                }
+                return map;
+            } else if (rawType == LongMap.class) {
+                Object value = sample(arguments[0], visiting);
+                LongMap<Object> map = new LongMap<>();
+                if (value != null) {
+                    map.put(0, value);
+                }
+                return map;
+            } else if (rawType == Map.class) {
+                Object key = sample(arguments[0], visiting);
+                Object value = sample(arguments[1], visiting);
+                return key == null || value == null ? Collections.emptyMap() : Collections.singletonMap(key, value);
+            }
+            Object element = sample(arguments[0], visiting);
+            return element == null ? Collections.emptyList() : Collections.singletonList(element);
+        } else if (!(type instanceof Class)) {
+            return null;
+        }
+        Class<?> clazz = (Class<?>) type;
+        if (clazz.isPrimitive()) {
+            return Array.get(Array.newInstance(clazz, 1), 0);
+        } else if (clazz == String.class) {
+            return "";
+        } else if (clazz.isArray()) {
+            return Array.newInstance(clazz.getComponentType(), 0);
+        } else if (TypeCodec.isEnum(clazz)) {
+            Object[] constants = (clazz.isEnum() ? clazz : clazz.getSuperclass()).getEnumConstants();
+            return constants.length == 0 ? null : constants[0];
+        } else if (TypeCodec.provider(clazz) != null || !visiting.add(clazz)) {
+            return null;
+        }
+        try {
+            ClassLayout<?> layout = ClassLayout.of(clazz);
+            Object[] args = new Object[layout.components().size()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = sample(layout.components().get(i).genericType(), visiting);
+                if (args[i] == null) {
+                    return null;
+                }
+            }
+            return layout.constructor().newInstance(args);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        } finally {
+            visiting.remove(clazz);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Codec for primitive arrays. {@link JavaPrimitiveOps} keeps the raw array, copied only if
+ * {@link JavaPrimitiveOps#copyArrays()} is set, and {@link BinaryOps} stores a raw block. Other ops get the DFU
+ * stream form for int, long and byte arrays, and otherwise a list of primitives created element by element, so
+ * no boxed list is built.
+ */
+abstract class PrimitiveArrayCodec<A> implements Codec<A> {
+
+    static final PrimitiveArrayCodec<short[]> SHORT = new PrimitiveArrayCodec<short[]>(short[].class) {
+        @Override
+        protected int length(short[] array) {
+            return array.length;
+        }
+
+        @Override
+        protected short[] newArray(int length) {
+            return new short[length];
+        }
+
+        @Override
+        protected <T> T write(DynamicOps<T> ops, short[] array, int index) {
+            return ops.createShort(array[index]);
+        }
+
+        @Override
+        protected <T> DataResult<?> read(DynamicOps<T> ops, T element, short[] array, int index) {
+            DataResult<Number> result = ops.getNumberValue(element);
+            Optional<Number> value = result.result();
+            if (value.isPresent()) {
+                array[index] = value.get().shortValue();
+                return null;
+            }
+            return result;
+        }
+    };
+
+    static final PrimitiveArrayCodec<float[]> FLOAT = new PrimitiveArrayCodec<float[]>(float[].class) {
+        @Override
+        protected int length(float[] array) {
+            return array.length;
+        }
+
+        @Override
+        protected float[] newArray(int length) {
+            return new float[length];
+        }
+
+        @Override
+        protected <T> T write(DynamicOps<T> ops, float[] array, int index) {
+            return ops.createFloat(array[index]);
+        }
+
+        @Override
+        protected <T> DataResult<?> read(DynamicOps<T> ops, T element, float[] array, int index) {
+            DataResult<Number> result = ops.getNumberValue(element);
+            Optional<Number> value = result.result();
+            if (value.isPresent()) {
+                array[index] = value.get().floatValue();
+                return null;
+            }
+            return result;
+        }
+    };
+
+    static final PrimitiveArrayCodec<double[]> DOUBLE = new PrimitiveArrayCodec<double[]>(double[].class) {
+        @Override
+        protected int length(double[] array) {
+            return array.length;
+        }
+
+        @Override
+        protected double[] newArray(int length) {
+            return new double[length];
+        }
+
+        @Override
+        protected <T> T write(DynamicOps<T> ops, double[] array, int index) {
+            return ops.createDouble(array[index]);
+        }
+
+        @Override
+        protected <T> DataResult<?> read(DynamicOps<T> ops, T element, double[] array, int index) {
+            DataResult<Number> result = ops.getNumberValue(element);
+            Optional<Number> value = result.result();
+            if (value.isPresent()) {
+                array[index] = value.get().doubleValue();
+                return null;
+            }
+            return result;
+        }
+    };
+
+    static final PrimitiveArrayCodec<boolean[]> BOOLEAN = new PrimitiveArrayCodec<boolean[]>(boolean[].class) {
+        @Override
+        protected int length(boolean[] array) {
+            return array.length;
+        }
+
+        @Override
+        protected boolean[] newArray(int length) {
+            return new boolean[length];
+        }
+
+        @Override
+        protected <T> T write(DynamicOps<T> ops, boolean[] array, int index) {
+            return ops.createBoolean(array[index]);
+        }
+
+        @Override
+        protected <T> DataResult<?> read(DynamicOps<T> ops, T element, boolean[] array, int index) {
+            DataResult<Boolean> result = ops.getBooleanValue(element);
+            Optional<Boolean> value = result.result();
+            if (value.isPresent()) {
+                array[index] = value.get();
+                return null;
+            }
+            return result;
+        }
+    };
+
+    /**
+     * Characters are written as a single string to ops other than {@link JavaPrimitiveOps}.
+     */
+    static final PrimitiveArrayCodec<char[]> CHAR = new PrimitiveArrayCodec<char[]>(char[].class) {
+        @Override
+        protected int length(char[] array) {
+            return array.length;
+        }
+
+        @Override
+        protected char[] newArray(int length) {
+            return new char[length];
+        }
+
+        @Override
+        protected <T> T write(DynamicOps<T> ops, char[] array, int index) {
+            return ops.createString(String.valueOf(array[index]));
+        }
+
+        @Override
+        protected <T> DataResult<?> read(DynamicOps<T> ops, T element, char[] array, int index) {
+            DataResult<String> result = ops.getStringValue(element);
+            Optional<String> value = result.result();
+            if (value.isPresent() && value.get().length() == 1) {
+                array[index] = value.get().charAt(0);
+                return null;
+            }
+            return value.isPresent() ? DataResult.error("Not a char: " + value.get()) : result;
+        }
+
+        @Override
+        protected <T> T writeList(DynamicOps<T> ops, char[] input) {
+            return ops.createString(new String(input));
+        }
+
+        @Override
+        protected <T> DataResult<char[]> readList(DynamicOps<T> ops, T input) {
+            DataResult<String> string = ops.getStringValue(input);
+            Optional<String> value = string.result();
+            if (value.isPresent()) {
+                return DataResult.success(value.get().toCharArray());
+            }
+            return super.readList(ops, input);
+        }
+    };
+
+    static final PrimitiveArrayCodec<int[]> INT = new PrimitiveArrayCodec<int[]>(int[].class) {
+        @Override
+        protected int length(int[] array) {
+            return array.length;
+        }
+
+        @Override
+        protected int[] newArray(int length) {
+            return new int[length];
+        }
+
+        @Override
+        protected <T> T write(DynamicOps<T> ops, int[] array, int index) {
+            return ops.createInt(array[index]);
+        }
+
+        @Override
+        protected <T> DataResult<?> read(DynamicOps<T> ops, T element, int[] array, int index) {
+            DataResult<Number> result = ops.getNumberValue(element);
+            Optional<Number> value = result.result();
+            if (value.isPresent()) {
+                array[index] = value.get().intValue();
+                return null;
+            }
+            return result;
+        }
+
+        @Override
+        protected <T> T writeList(DynamicOps<T> ops, int[] input) {
+            return ops.createIntList(IntStream.of(input));
+        }
+
+        @Override
+        protected <T> DataResult<int[]> readList(DynamicOps<T> ops, T input) {
+            return ops.getIntStream(input).map(IntStream::toArray);
+        }
+    };
+
+    static final PrimitiveArrayCodec<long[]> LONG = new PrimitiveArrayCodec<long[]>(long[].class) {
+        @Override
+        protected int length(long[] array) {
+            return array.length;
+        }
+
+        @Override
+        protected long[] newArray(int length) {
+            return new long[length];
+        }
+
+        @Override
+        protected <T> T write(DynamicOps<T> ops, long[] array, int index) {
+            return ops.createLong(array[index]);
+        }
+
+        @Override
+        protected <T> DataResult<?> read(DynamicOps<T> ops, T element, long[] array, int index) {
+            DataResult<Number> result = ops.getNumberValue(element);
+            Optional<Number> value = result.result();
+            if (value.isPresent()) {
+                array[index] = value.get().longValue();
+                return null;
+            }
+            return result;
+        }
+
+        @Override
+        protected <T> T writeList(DynamicOps<T> ops, long[] input) {
+            return ops.createLongList(LongStream.of(input));
+        }
+
+        @Override
+        protected <T> DataResult<long[]> readList(DynamicOps<T> ops, T input) {
+            return ops.getLongStream(input).map(LongStream::toArray);
+        }
+    };
+
+    static final PrimitiveArrayCodec<byte[]> BYTE = new PrimitiveArrayCodec<byte[]>(byte[].class) {
+        @Override
+        protected int length(byte[] array) {
+            return array.length;
+        }
+
+        @Override
+        protected byte[] newArray(int length) {
+            return new byte[length];
+        }
+
+        @Override
+        protected <T> T write(DynamicOps<T> ops, byte[] array, int index) {
+            return ops.createByte(array[index]);
+        }
+
+        @Override
+        protected <T> DataResult<?> read(DynamicOps<T> ops, T element, byte[] array, int index) {
+            DataResult<Number> result = ops.getNumberValue(element);
+            Optional<Number> value = result.result();
+            if (value.isPresent()) {
+                array[index] = value.get().byteValue();
+                return null;
+            }
+            return result;
+        }
+
+        @Override
+        protected <T> T writeList(DynamicOps<T> ops, byte[] input) {
+            return ops.createByteList(ByteBuffer.wrap(input));
+        }
+
+        @Override
+        protected <T> DataResult<byte[]> readList(DynamicOps<T> ops, T input) {
+            return ops.getByteBuffer(input).map(it -> {
+                byte[] arr = new byte[it.remaining()];
+                it.get(arr);
+                return arr;
+            });
+        }
+    };
+
+    private static final PrimitiveArrayCodec<?>[] CODECS = {INT, LONG, BYTE, SHORT, FLOAT, DOUBLE, BOOLEAN, CHAR};
+
+    private final Class<A> type;
+
+    private PrimitiveArrayCodec(Class<A> type) {
+        this.type = type;
+    }
+
+    static <T> T writeArray(DynamicOps<T> ops, Object array) {
+        return forArray(array).writeList(ops, array);
+    }
+
+    static <T> List<T> elements(DynamicOps<T> ops, Object array) {
+        PrimitiveArrayCodec<Object> codec = forArray(array);
+        int length = codec.length(array);
+        List<T> elements = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            elements.add(codec.write(ops, array, i));
+        }
+        return elements;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PrimitiveArrayCodec<Object> forArray(Object array) {
+        for (PrimitiveArrayCodec<?> codec : CODECS) {
+            if (codec.type.isInstance(array)) {
+                return (PrimitiveArrayCodec<Object>) codec;
+            }
+        }
+        throw new IllegalArgumentException("Not a primitive array: " + array);
+    }
+
+    protected abstract int length(A array);
+
+    protected abstract A newArray(int length);
+
+    protected abstract <T> T write(DynamicOps<T> ops, A array, int index);
+
+    /**
+     * @return {@code null} if the element is stored into the array, or the failed result otherwise
+     */
+    protected abstract <T> DataResult<?> read(DynamicOps<T> ops, T element, A array, int index);
+
+    @SuppressWarnings("unchecked")
+    protected <T> T writeList(DynamicOps<T> ops, A input) {
+        if (ops instanceof BinaryOps) {
+            return (T) BinaryOps.createArray(input);
+        }
+        return ops.createList(IntStream.range(0, length(input)).mapToObj(i -> write(ops, input, i)));
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T> DataResult<A> readList(DynamicOps<T> ops, T input) {
+        if (ops instanceof BinaryOps) {
+            Object array;
+            try {
+                array = BinaryOps.getArray((ByteBuffer) input, type);
+            } catch (RuntimeException e) {
+                return DataResult.error("Malformed " + type.getSimpleName() + ": " + e);
+            }
+            if (array != null) {
+                return DataResult.success((A) array);
+            }
+        }
+        return ops.getList(input).flatMap(consumer -> {
+            List<T> elements = new ArrayList<>();
+            consumer.accept(elements::add);
+            A array = newArray(elements.size());
+            for (int i = 0; i < elements.size(); i++) {
+                DataResult<?> error = read(ops, elements.get(i), array, i);
+                if (error != null) {
+                    return DataResult.error("Failed to parse element " + i + " of " + type.getSimpleName() + ": "
+                        + error.error().map(DataResult.PartialResult::message).orElse(String.valueOf(elements.get(i))));
+                }
+            }
+            return DataResult.success(array);
+        });
+    }
+
+    private A passThrough(JavaPrimitiveOps ops, A array) {
+        if (!ops.copyArrays()) {
+            return array;
+        }
+        int length = length(array);
+        A copy = newArray(length);
+        System.arraycopy(array, 0, copy, 0, length);
+        return copy;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> DataResult<Pair<A, T>> decode(DynamicOps<T> ops, T input) {
+        if (ops instanceof JavaPrimitiveOps && type.isInstance(input)) {
+            return DataResult.success(Pair.of(passThrough((JavaPrimitiveOps) ops, (A) input), ops.empty()));
+        }
+        return readList(ops, input).map(it -> Pair.of(it, ops.empty()));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> DataResult<T> encode(A input, DynamicOps<T> ops, T prefix) {
+        if (ops instanceof JavaPrimitiveOps) {
+            return ops.mergeToPrimitive(prefix, (T) passThrough((JavaPrimitiveOps) ops, input));
+        }
+        return ops.mergeToPrimitive(prefix, writeList(ops, input));
+    }
+
+    @Override
+    public String toString() {
+        return type.getSimpleName();
+    }
+}
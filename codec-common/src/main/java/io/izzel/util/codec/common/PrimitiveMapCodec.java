@@ -0,0 +1,226 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.ListBuilder;
+import com.mojang.serialization.MapLike;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Codec for {@link IntMap} and {@link LongMap}, encoded as a {@code keys} primitive array and a parallel
+ * {@code values} list. Keys go through {@link PrimitiveArrayCodec}, so {@link JavaPrimitiveOps} keeps the raw key
+ * array and {@link BinaryOps} a raw block, and no key is boxed.
+ */
+abstract class PrimitiveMapCodec<M, K, V> implements Codec<M> {
+
+    private static final String KEYS = "keys";
+    private static final String VALUES = "values";
+
+    private final PrimitiveArrayCodec<K> keys;
+    private final Codec<V> value;
+
+    PrimitiveMapCodec(PrimitiveArrayCodec<K> keys, Codec<V> value) {
+        this.keys = keys;
+        this.value = value;
+    }
+
+    abstract int size(M map);
+
+    abstract int slots(M map);
+
+    /**
+     * @return the value in the slot, or {@code null} if the slot is free
+     */
+    abstract Object valueAt(M map, int slot);
+
+    abstract void copyKey(M map, int slot, K keys, int index);
+
+    abstract K newKeys(int length);
+
+    abstract int length(K keys);
+
+    abstract M newMap(int expectedSize);
+
+    /**
+     * @return {@code false} if the key was already present
+     */
+    abstract boolean put(M map, K keys, int index, V value);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> DataResult<T> encode(M input, DynamicOps<T> ops, T prefix) {
+        K keyArray = newKeys(size(input));
+        ListBuilder<T> values = ops.listBuilder();
+        int n = 0;
+        for (int slot = 0, slots = slots(input); slot < slots; slot++) {
+            Object v = valueAt(input, slot);
+            if (v != null) {
+                copyKey(input, slot, keyArray, n++);
+                values.add(value.encodeStart(ops, (V) v));
+            }
+        }
+        return ops.mapBuilder()
+            .add(KEYS, keys.encodeStart(ops, keyArray))
+            .add(VALUES, values.build(ops.empty()))
+            .build(prefix);
+    }
+
+    @Override
+    public <T> DataResult<Pair<M, T>> decode(DynamicOps<T> ops, T input) {
+        DataResult<MapLike<T>> map = ops.getMap(input);
+        Optional<MapLike<T>> entries = map.result();
+        if (!entries.isPresent()) {
+            return error(map);
+        }
+        T keyInput = entries.get().get(KEYS);
+        T valueInput = entries.get().get(VALUES);
+        if (keyInput == null || valueInput == null) {
+            return DataResult.error("Missing keys or values in " + input);
+        }
+        DataResult<Pair<K, T>> keyResult = keys.decode(ops, keyInput);
+        Optional<Pair<K, T>> keyArray = keyResult.result();
+        if (!keyArray.isPresent()) {
+            return error(keyResult);
+        }
+        DataResult<Consumer<Consumer<T>>> list = ops.getList(valueInput);
+        if (!list.result().isPresent()) {
+            return error(list);
+        }
+        List<T> values = new ArrayList<>();
+        list.result().get().accept(values::add);
+        K keyValues = keyArray.get().getFirst();
+        if (length(keyValues) != values.size()) {
+            return DataResult.error("Got " + length(keyValues) + " keys but " + values.size() + " values");
+        }
+        M result = newMap(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            DataResult<Pair<V, T>> v = value.decode(ops, values.get(i));
+            Optional<Pair<V, T>> success = v.result();
+            if (!success.isPresent()) {
+                return error(v);
+            }
+            if (!put(result, keyValues, i, success.get().getFirst())) {
+                return DataResult.error("Duplicate entry for key at " + i);
+            }
+        }
+        return DataResult.success(Pair.of(result, ops.empty()));
+    }
+
+    Codec<V> value() {
+        return value;
+    }
+
+    private static <R> DataResult<R> error(DataResult<?> result) {
+        return DataResult.error(result.error().map(DataResult.PartialResult::message).orElse("Failed to decode map"));
+    }
+
+    static final class OfInt<V> extends PrimitiveMapCodec<IntMap<V>, int[], V> {
+
+        OfInt(Codec<V> value) {
+            super(PrimitiveArrayCodec.INT, value);
+        }
+
+        @Override
+        int size(IntMap<V> map) {
+            return map.size();
+        }
+
+        @Override
+        int slots(IntMap<V> map) {
+            return map.slots();
+        }
+
+        @Override
+        Object valueAt(IntMap<V> map, int slot) {
+            return map.valueAt(slot);
+        }
+
+        @Override
+        void copyKey(IntMap<V> map, int slot, int[] keys, int index) {
+            keys[index] = map.keyAt(slot);
+        }
+
+        @Override
+        int[] newKeys(int length) {
+            return new int[length];
+        }
+
+        @Override
+        int length(int[] keys) {
+            return keys.length;
+        }
+
+        @Override
+        IntMap<V> newMap(int expectedSize) {
+            return new IntMap<>(expectedSize);
+        }
+
+        @Override
+        boolean put(IntMap<V> map, int[] keys, int index, V value) {
+            return map.put(keys[index], value) == null;
+        }
+
+        @Override
+        public String toString() {
+            return "IntMapCodec[" + value() + "]";
+        }
+    }
+
+    static final class OfLong<V> extends PrimitiveMapCodec<LongMap<V>, long[], V> {
+
+        OfLong(Codec<V> value) {
+            super(PrimitiveArrayCodec.LONG, value);
+        }
+
+        @Override
+        int size(LongMap<V> map) {
+            return map.size();
+        }
+
+        @Override
+        int slots(LongMap<V> map) {
+            return map.slots();
+        }
+
+        @Override
+        Object valueAt(LongMap<V> map, int slot) {
+            return map.valueAt(slot);
+        }
+
+        @Override
+        void copyKey(LongMap<V> map, int slot, long[] keys, int index) {
+            keys[index] = map.keyAt(slot);
+        }
+
+        @Override
+        long[] newKeys(int length) {
+            return new long[length];
+        }
+
+        @Override
+        int length(long[] keys) {
+            return keys.length;
+        }
+
+        @Override
+        LongMap<V> newMap(int expectedSize) {
+            return new LongMap<>(expectedSize);
+        }
+
+        @Override
+        boolean put(LongMap<V> map, long[] keys, int index, V value) {
+            return map.put(keys[index], value) == null;
+        }
+
+        @Override
+        public String toString() {
+            return "LongMapCodec[" + value() + "]";
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package io.izzel.util.codec.common;
+
+/**
+ * Reads the layout of records from their record components. Records only exist on Java 16 and later, where this
+ * class is replaced by the version in {@code src/main/java16} of the multi-release jar.
+ */
+final class Records {
+
+    private Records() {
+    }
+
+    /**
+     * @return the layout of the record, or {@code null} if the type is not a record
+     */
+    static <A> ClassLayout<A> layout(Class<A> type) {
+        return null;
+    }
+}
@@ -0,0 +1,411 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonWriter;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.JsonOps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+
+/**
+ * Receives the values written by a {@link TypeWriter}. Map entries are written as a key followed by its value.
+ */
+interface TokenSink {
+
+    void beginList() throws IOException;
+
+    void endList() throws IOException;
+
+    void beginMap() throws IOException;
+
+    void endMap() throws IOException;
+
+    void writeBoolean(boolean value) throws IOException;
+
+    void writeByte(byte value) throws IOException;
+
+    void writeShort(short value) throws IOException;
+
+    void writeInt(int value) throws IOException;
+
+    void writeLong(long value) throws IOException;
+
+    void writeFloat(float value) throws IOException;
+
+    void writeDouble(double value) throws IOException;
+
+    void writeString(String value) throws IOException;
+
+    /**
+     * Writes a primitive array in the form used by {@link PrimitiveArrayCodec}.
+     */
+    void writeArray(Object array) throws IOException;
+
+    /**
+     * Writes a value whose structure is only known to its codec, by encoding it into a tree first.
+     */
+    <A> void writeEncoded(Codec<A> codec, A value) throws IOException;
+
+    void flush() throws IOException;
+
+    /**
+     * Writes the same document as encoding to {@link JsonOps#INSTANCE} and serializing the tree.
+     */
+    final class Json implements TokenSink {
+
+        private static final Gson GSON = new Gson();
+
+        private final JsonWriter writer;
+        private final BitSet maps = new BitSet();
+        private final BitSet names = new BitSet();
+        private int depth;
+
+        Json(JsonWriter writer) {
+            this.writer = writer;
+        }
+
+        private boolean nameExpected() {
+            return names.get(depth);
+        }
+
+        // JsonOps only accepts string keys, so other keys fail here rather than in a document it cannot decode
+        private void beginValue() throws IOException {
+            if (nameExpected()) {
+                throw new IOException("Map keys must be strings in JSON");
+            }
+        }
+
+        private void endValue() {
+            if (maps.get(depth)) {
+                names.set(depth);
+            }
+        }
+
+        private void name(String name) throws IOException {
+            writer.name(name);
+            names.clear(depth);
+        }
+
+        @Override
+        public void beginList() throws IOException {
+            beginValue();
+            writer.beginArray();
+            depth++;
+            maps.clear(depth);
+            names.clear(depth);
+        }
+
+        @Override
+        public void endList() throws IOException {
+            writer.endArray();
+            depth--;
+            endValue();
+        }
+
+        @Override
+        public void beginMap() throws IOException {
+            beginValue();
+            writer.beginObject();
+            depth++;
+            maps.set(depth);
+            names.set(depth);
+        }
+
+        @Override
+        public void endMap() throws IOException {
+            writer.endObject();
+            depth--;
+            endValue();
+        }
+
+        @Override
+        public void writeBoolean(boolean value) throws IOException {
+            beginValue();
+            writer.value(value);
+            endValue();
+        }
+
+        @Override
+        public void writeByte(byte value) throws IOException {
+            writeNumber(value);
+        }
+
+        @Override
+        public void writeShort(short value) throws IOException {
+            writeNumber(value);
+        }
+
+        @Override
+        public void writeInt(int value) throws IOException {
+            beginValue();
+            writer.value(value);
+            endValue();
+        }
+
+        @Override
+        public void writeLong(long value) throws IOException {
+            beginValue();
+            writer.value(value);
+            endValue();
+        }
+
+        @Override
+        public void writeFloat(float value) throws IOException {
+            // boxed, so the shortest representation of the float is written like JsonPrimitive does
+            writeNumber(value);
+        }
+
+        @Override
+        public void writeDouble(double value) throws IOException {
+            writeNumber(value);
+        }
+
+        private void writeNumber(Number value) throws IOException {
+            beginValue();
+            writer.value(value);
+            endValue();
+        }
+
+        @Override
+        public void writeString(String value) throws IOException {
+            if (nameExpected()) {
+                name(value);
+            } else {
+                writer.value(value);
+                endValue();
+            }
+        }
+
+        @Override
+        public void writeArray(Object array) throws IOException {
+            if (array instanceof char[]) {
+                writeString(new String((char[]) array));
+                return;
+            }
+            beginList();
+            if (array instanceof int[]) {
+                for (int i : (int[]) array) {
+                    writer.value(i);
+                }
+            } else if (array instanceof long[]) {
+                for (long l : (long[]) array) {
+                    writer.value(l);
+                }
+            } else if (array instanceof byte[]) {
+                for (byte b : (byte[]) array) {
+                    writer.value(b);
+                }
+            } else if (array instanceof short[]) {
+                for (short s : (short[]) array) {
+                    writer.value(s);
+                }
+            } else if (array instanceof float[]) {
+                for (float f : (float[]) array) {
+                    writer.value((Number) f);
+                }
+            } else if (array instanceof double[]) {
+                for (double d : (double[]) array) {
+                    writer.value((Number) d);
+                }
+            } else if (array instanceof boolean[]) {
+                for (boolean b : (boolean[]) array) {
+                    writer.value(b);
+                }
+            } else {
+                throw new IOException("Not a primitive array: " + array);
+            }
+            endList();
+        }
+
+        @Override
+        public <A> void writeEncoded(Codec<A> codec, A value) throws IOException {
+            DataResult<JsonElement> result = codec.encodeStart(JsonOps.INSTANCE, value);
+            if (!result.result().isPresent()) {
+                throw new IOException(result.error().map(DataResult.PartialResult::message).orElse("Failed to encode " + value));
+            }
+            JsonElement element = result.result().get();
+            if (nameExpected() && element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+                name(element.getAsString());
+            } else {
+                beginValue();
+                GSON.toJson(element, writer);
+                endValue();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Writes the format of {@link BinaryOps}, with lists and maps terminated instead of length prefixed.
+     */
+    final class Binary implements TokenSink {
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+        Binary(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        private ByteBuffer ensure(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                drain();
+            }
+            return buffer;
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void writeBytes(ByteBuffer bytes) throws IOException {
+            if (bytes.remaining() <= buffer.remaining()) {
+                buffer.put(bytes);
+            } else {
+                drain();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+        }
+
+        @Override
+        public void beginList() throws IOException {
+            ensure(1).put(BinaryOps.LIST_STREAM);
+        }
+
+        @Override
+        public void endList() throws IOException {
+            ensure(1).put(BinaryOps.END);
+        }
+
+        @Override
+        public void beginMap() throws IOException {
+            ensure(1).put(BinaryOps.MAP_STREAM);
+        }
+
+        @Override
+        public void endMap() throws IOException {
+            ensure(1).put(BinaryOps.END);
+        }
+
+        @Override
+        public void writeBoolean(boolean value) throws IOException {
+            ensure(1).put(value ? BinaryOps.TRUE : BinaryOps.FALSE);
+        }
+
+        @Override
+        public void writeByte(byte value) throws IOException {
+            ensure(2).put(BinaryOps.BYTE).put(value);
+        }
+
+        @Override
+        public void writeShort(short value) throws IOException {
+            BinaryOps.writeVarInt(ensure(6).put(BinaryOps.SHORT), BinaryOps.zigzag((int) value));
+        }
+
+        @Override
+        public void writeInt(int value) throws IOException {
+            BinaryOps.writeVarInt(ensure(6).put(BinaryOps.INT), BinaryOps.zigzag(value));
+        }
+
+        @Override
+        public void writeLong(long value) throws IOException {
+            BinaryOps.writeVarLong(ensure(11).put(BinaryOps.LONG), BinaryOps.zigzag(value));
+        }
+
+        @Override
+        public void writeFloat(float value) throws IOException {
+            ensure(5).put(BinaryOps.FLOAT).putFloat(value);
+        }
+
+        @Override
+        public void writeDouble(double value) throws IOException {
+            ensure(9).put(BinaryOps.DOUBLE).putDouble(value);
+        }
+
+        @Override
+        public void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            BinaryOps.writeVarInt(ensure(6).put(BinaryOps.STRING), bytes.length);
+            writeBytes(ByteBuffer.wrap(bytes));
+        }
+
+        @Override
+        public void writeArray(Object array) throws IOException {
+            if (array instanceof char[]) {
+                writeString(new String((char[]) array));
+            } else if (array instanceof byte[]) {
+                byte[] bytes = (byte[]) array;
+                BinaryOps.writeVarInt(ensure(6).put(BinaryOps.BYTE_ARRAY), bytes.length);
+                writeBytes(ByteBuffer.wrap(bytes));
+            } else if (array instanceof int[]) {
+                int[] ints = (int[]) array;
+                BinaryOps.writeVarInt(ensure(6).put(BinaryOps.INT_ARRAY), ints.length);
+                for (int i : ints) {
+                    ensure(4).putInt(i);
+                }
+            } else if (array instanceof long[]) {
+                long[] longs = (long[]) array;
+                BinaryOps.writeVarInt(ensure(6).put(BinaryOps.LONG_ARRAY), longs.length);
+                for (long l : longs) {
+                    ensure(8).putLong(l);
+                }
+            } else if (array instanceof short[]) {
+                short[] shorts = (short[]) array;
+                BinaryOps.writeVarInt(ensure(6).put(BinaryOps.SHORT_ARRAY), shorts.length);
+                for (short s : shorts) {
+                    ensure(2).putShort(s);
+                }
+            } else if (array instanceof float[]) {
+                float[] floats = (float[]) array;
+                BinaryOps.writeVarInt(ensure(6).put(BinaryOps.FLOAT_ARRAY), floats.length);
+                for (float f : floats) {
+                    ensure(4).putFloat(f);
+                }
+            } else if (array instanceof double[]) {
+                double[] doubles = (double[]) array;
+                BinaryOps.writeVarInt(ensure(6).put(BinaryOps.DOUBLE_ARRAY), doubles.length);
+                for (double d : doubles) {
+                    ensure(8).putDouble(d);
+                }
+            } else if (array instanceof boolean[]) {
+                boolean[] booleans = (boolean[]) array;
+                BinaryOps.writeVarInt(ensure(6).put(BinaryOps.BOOLEAN_ARRAY), booleans.length);
+                for (boolean b : booleans) {
+                    ensure(1).put((byte) (b ? 1 : 0));
+                }
+            } else {
+                throw new IOException("Not a primitive array: " + array);
+            }
+        }
+
+        @Override
+        public <A> void writeEncoded(Codec<A> codec, A value) throws IOException {
+            DataResult<ByteBuffer> result = codec.encodeStart(BinaryOps.INSTANCE, value);
+            if (!result.result().isPresent()) {
+                throw new IOException(result.error().map(DataResult.PartialResult::message).orElse("Failed to encode " + value));
+            }
+            writeBytes(result.result().get().duplicate());
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+    }
+}
@@ -0,0 +1,506 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import com.mojang.serialization.JsonOps;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Provides the values read by a {@link TypeReader}, the counterpart of {@link TokenSink}. Map entries are read as
+ * a key followed by its value.
+ */
+interface TokenSource {
+
+    void beginList() throws IOException;
+
+    void endList() throws IOException;
+
+    void beginMap() throws IOException;
+
+    void endMap() throws IOException;
+
+    /**
+     * @return whether the current list or map has more elements
+     */
+    boolean hasNext() throws IOException;
+
+    boolean readBoolean() throws IOException;
+
+    byte readByte() throws IOException;
+
+    short readShort() throws IOException;
+
+    int readInt() throws IOException;
+
+    long readLong() throws IOException;
+
+    float readFloat() throws IOException;
+
+    double readDouble() throws IOException;
+
+    String readString() throws IOException;
+
+    /**
+     * Reads a value whose structure is only known to its codec, by reading it into a tree first.
+     */
+    <A> A readDecoded(Codec<A> codec) throws IOException;
+
+    void skipValue() throws IOException;
+
+    static <T, A> A decode(Codec<A> codec, DynamicOps<T> ops, T input) throws IOException {
+        DataResult<A> result = codec.parse(ops, input);
+        if (!result.result().isPresent()) {
+            throw new IOException(result.error().map(DataResult.PartialResult::message).orElse("Failed to decode " + input));
+        }
+        return result.result().get();
+    }
+
+    /**
+     * Reads the documents written by {@link TokenSink.Json}. Map keys are read from property names.
+     */
+    final class Json implements TokenSource {
+
+        private final JsonReader reader;
+
+        Json(JsonReader reader) {
+            this.reader = reader;
+        }
+
+        private boolean isName() throws IOException {
+            return reader.peek() == JsonToken.NAME;
+        }
+
+        @Override
+        public void beginList() throws IOException {
+            reader.beginArray();
+        }
+
+        @Override
+        public void endList() throws IOException {
+            reader.endArray();
+        }
+
+        @Override
+        public void beginMap() throws IOException {
+            reader.beginObject();
+        }
+
+        @Override
+        public void endMap() throws IOException {
+            reader.endObject();
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            return reader.hasNext();
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            return isName() ? Boolean.parseBoolean(reader.nextName()) : reader.nextBoolean();
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            return (byte) readInt();
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            return (short) readInt();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            return isName() ? Integer.parseInt(reader.nextName()) : reader.nextInt();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            return isName() ? Long.parseLong(reader.nextName()) : reader.nextLong();
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            return (float) readDouble();
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            return isName() ? Double.parseDouble(reader.nextName()) : reader.nextDouble();
+        }
+
+        @Override
+        public String readString() throws IOException {
+            return isName() ? reader.nextName() : reader.nextString();
+        }
+
+        @Override
+        public <A> A readDecoded(Codec<A> codec) throws IOException {
+            JsonElement element = isName() ? new JsonPrimitive(reader.nextName()) : JsonParser.parseReader(reader);
+            return decode(codec, JsonOps.INSTANCE, element);
+        }
+
+        @Override
+        public void skipValue() throws IOException {
+            reader.skipValue();
+        }
+    }
+
+    /**
+     * Reads the format of {@link BinaryOps}, both length prefixed and terminated lists and maps. Containers are
+     * streamed, while values decoded by a codec are copied out whole.
+     * <p>
+     * The channel is read ahead in blocks, so bytes after the last value read may be consumed.
+     */
+    final class Binary implements TokenSource {
+
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+        private ByteBuffer scratch = ByteBuffer.allocate(256);
+        private long filled;
+        // absolute end offset of each open container, or -1 for terminated containers
+        private long[] ends = new long[16];
+        private int depth;
+
+        Binary(ReadableByteChannel channel) {
+            this.channel = channel;
+            this.buffer.flip();
+        }
+
+        private long position() {
+            return filled - buffer.remaining();
+        }
+
+        private ByteBuffer require(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                buffer.compact();
+                try {
+                    while (buffer.position() < size) {
+                        int read = channel.read(buffer);
+                        if (read < 0) {
+                            throw new EOFException("Unexpected end of input");
+                        }
+                        filled += read;
+                    }
+                } finally {
+                    buffer.flip();
+                }
+            }
+            return buffer;
+        }
+
+        private byte peekTag() throws IOException {
+            return require(1).get(buffer.position());
+        }
+
+        private byte get() throws IOException {
+            return require(1).get();
+        }
+
+        private int readVarInt() throws IOException {
+            int result = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = get();
+                result |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varint at " + position());
+        }
+
+        private long readVarLong() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                byte b = get();
+                result |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varlong at " + position());
+        }
+
+        private void begin(byte sized, byte terminated, String expected) throws IOException {
+            long start = position();
+            byte tag = get();
+            long end;
+            if (tag == sized) {
+                int length = readVarInt();
+                end = position() + length;
+            } else if (tag == terminated) {
+                end = -1;
+            } else {
+                throw new IOException("Expected " + expected + " but was tag " + tag + " at " + start);
+            }
+            if (depth == ends.length) {
+                ends = Arrays.copyOf(ends, depth * 2);
+            }
+            ends[depth++] = end;
+        }
+
+        private void end() throws IOException {
+            long end = ends[--depth];
+            if (end < 0) {
+                byte tag = get();
+                if (tag != BinaryOps.END) {
+                    throw new IOException("Expected end of container but was tag " + tag + " at " + (position() - 1));
+                }
+            } else if (position() != end) {
+                throw new IOException("Expected end of container at " + end + " but was " + position());
+            }
+        }
+
+        @Override
+        public void beginList() throws IOException {
+            begin(BinaryOps.LIST, BinaryOps.LIST_STREAM, "a list");
+        }
+
+        @Override
+        public void endList() throws IOException {
+            end();
+        }
+
+        @Override
+        public void beginMap() throws IOException {
+            begin(BinaryOps.MAP, BinaryOps.MAP_STREAM, "a map");
+        }
+
+        @Override
+        public void endMap() throws IOException {
+            end();
+        }
+
+        @Override
+        public boolean hasNext() throws IOException {
+            long end = ends[depth - 1];
+            return end < 0 ? peekTag() != BinaryOps.END : position() < end;
+        }
+
+        @Override
+        public boolean readBoolean() throws IOException {
+            byte tag = peekTag();
+            if (tag == BinaryOps.TRUE || tag == BinaryOps.FALSE) {
+                return get() == BinaryOps.TRUE;
+            }
+            return decode(Codec.BOOL, BinaryOps.INSTANCE, raw());
+        }
+
+        @Override
+        public byte readByte() throws IOException {
+            if (peekTag() == BinaryOps.BYTE) {
+                get();
+                return get();
+            }
+            return number().byteValue();
+        }
+
+        @Override
+        public short readShort() throws IOException {
+            if (peekTag() == BinaryOps.SHORT) {
+                get();
+                return (short) BinaryOps.unzigzag(readVarInt());
+            }
+            return number().shortValue();
+        }
+
+        @Override
+        public int readInt() throws IOException {
+            if (peekTag() == BinaryOps.INT) {
+                get();
+                return BinaryOps.unzigzag(readVarInt());
+            }
+            return number().intValue();
+        }
+
+        @Override
+        public long readLong() throws IOException {
+            byte tag = peekTag();
+            if (tag == BinaryOps.LONG) {
+                get();
+                return BinaryOps.unzigzag(readVarLong());
+            } else if (tag == BinaryOps.INT) {
+                return readInt();
+            }
+            return number().longValue();
+        }
+
+        @Override
+        public float readFloat() throws IOException {
+            if (peekTag() == BinaryOps.FLOAT) {
+                get();
+                return require(4).getFloat();
+            }
+            return number().floatValue();
+        }
+
+        @Override
+        public double readDouble() throws IOException {
+            if (peekTag() == BinaryOps.DOUBLE) {
+                get();
+                return require(8).getDouble();
+            }
+            return number().doubleValue();
+        }
+
+        private Number number() throws IOException {
+            ByteBuffer raw = raw();
+            DataResult<Number> result = BinaryOps.INSTANCE.getNumberValue(raw);
+            if (!result.result().isPresent()) {
+                throw new IOException(result.error().map(DataResult.PartialResult::message).orElse("Not a number"));
+            }
+            return result.result().get();
+        }
+
+        @Override
+        public String readString() throws IOException {
+            if (peekTag() != BinaryOps.STRING) {
+                return decode(Codec.STRING, BinaryOps.INSTANCE, raw());
+            }
+            get();
+            int length = readVarInt();
+            if (length <= buffer.capacity()) {
+                require(length);
+                String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+                return value;
+            }
+            scratch.clear();
+            transfer(length, true);
+            scratch.flip();
+            return new String(scratch.array(), scratch.arrayOffset(), scratch.limit(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public <A> A readDecoded(Codec<A> codec) throws IOException {
+            ByteBuffer raw = raw();
+            // the decoded value may keep slices of its input, so it must not share the scratch buffer
+            ByteBuffer copy = ByteBuffer.allocate(raw.remaining());
+            copy.put(raw).flip();
+            return decode(codec, BinaryOps.INSTANCE, copy);
+        }
+
+        @Override
+        public void skipValue() throws IOException {
+            value(false);
+        }
+
+        /**
+         * @return the next value copied into the scratch buffer, valid until the next read
+         */
+        private ByteBuffer raw() throws IOException {
+            scratch.clear();
+            value(true);
+            scratch.flip();
+            return scratch;
+        }
+
+        private void value(boolean keep) throws IOException {
+            long start = position();
+            byte tag = get();
+            if (keep) {
+                scratch(1).put(tag);
+            }
+            switch (tag) {
+                case BinaryOps.EMPTY:
+                case BinaryOps.FALSE:
+                case BinaryOps.TRUE:
+                    return;
+                case BinaryOps.BYTE:
+                    transfer(1, keep);
+                    return;
+                case BinaryOps.SHORT:
+                case BinaryOps.INT:
+                case BinaryOps.LONG:
+                    transferVarInt(keep);
+                    return;
+                case BinaryOps.FLOAT:
+                    transfer(4, keep);
+                    return;
+                case BinaryOps.DOUBLE:
+                    transfer(8, keep);
+                    return;
+                case BinaryOps.STRING:
+                case BinaryOps.LIST:
+                case BinaryOps.MAP:
+                case BinaryOps.BYTE_ARRAY:
+                case BinaryOps.BOOLEAN_ARRAY:
+                    transfer(transferVarInt(keep), keep);
+                    return;
+                case BinaryOps.SHORT_ARRAY:
+                    transfer(transferVarInt(keep) * 2L, keep);
+                    return;
+                case BinaryOps.INT_ARRAY:
+                case BinaryOps.FLOAT_ARRAY:
+                    transfer(transferVarInt(keep) * 4L, keep);
+                    return;
+                case BinaryOps.LONG_ARRAY:
+                case BinaryOps.DOUBLE_ARRAY:
+                    transfer(transferVarInt(keep) * 8L, keep);
+                    return;
+                case BinaryOps.LIST_STREAM:
+                case BinaryOps.MAP_STREAM:
+                    while (peekTag() != BinaryOps.END) {
+                        value(keep);
+                    }
+                    transfer(1, keep);
+                    return;
+                default:
+                    throw new IOException("Unknown tag " + tag + " at " + start);
+            }
+        }
+
+        private int transferVarInt(boolean keep) throws IOException {
+            int result = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                byte b = get();
+                if (keep) {
+                    scratch(1).put(b);
+                }
+                result |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varint at " + position());
+        }
+
+        private void transfer(long length, boolean keep) throws IOException {
+            if (length < 0) {
+                throw new IOException("Malformed length at " + position());
+            }
+            while (length > 0) {
+                int chunk = (int) Math.min(length, require(1).remaining());
+                if (keep) {
+                    ByteBuffer slice = buffer.duplicate();
+                    slice.limit(slice.position() + chunk);
+                    scratch(chunk).put(slice);
+                }
+                buffer.position(buffer.position() + chunk);
+                length -= chunk;
+            }
+        }
+
+        private ByteBuffer scratch(int size) {
+            if (scratch.remaining() < size) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + size));
+                scratch.flip();
+                scratch = grown.put(scratch);
+            }
+            return scratch;
+        }
+    }
+}
@@ -1,24 +1,46 @@
 package io.izzel.util.codec.common;
 
+import com.mojang.datafixers.util.Pair;
 import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.IntStream;
-import java.util.stream.LongStream;
+import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public class TypeCodec {
 
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
     private static final Map<Class<?>, Codec<?>> PRIMITIVES = new HashMap<>();
+    private static final Map<Mode, Resolver> RESOLVERS = new EnumMap<>(Mode.class);
+    private static final Map<Class<?>, CodecProvider<?>> PROVIDERS = new ConcurrentHashMap<>();
+    private static final Set<ClassLoader> SCANNED_LOADERS = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final Map<Type, TypeWriter<?>> WRITERS = new ConcurrentHashMap<>();
+    private static final Map<Type, TypeReader<?>> READERS = new ConcurrentHashMap<>();
+    private static final Map<List<Class<?>>, Codec<?>> LAZY = new ConcurrentHashMap<>();
 
     static {
+        loadProviders(TypeCodec.class.getClassLoader());
+        loadProviders(Thread.currentThread().getContextClassLoader());
+        for (Mode mode : Mode.values()) {
+            RESOLVERS.put(mode, new Resolver(mode));
+        }
         PRIMITIVES.put(boolean.class, Codec.BOOL);
         PRIMITIVES.put(byte.class, Codec.BYTE);
         PRIMITIVES.put(short.class, Codec.SHORT);
@@ -27,49 +49,434 @@ public class TypeCodec {
         PRIMITIVES.put(float.class, Codec.FLOAT);
         PRIMITIVES.put(double.class, Codec.DOUBLE);
         PRIMITIVES.put(String.class, Codec.STRING);
-        PRIMITIVES.put(int[].class, Codec.INT_STREAM.xmap(IntStream::toArray, IntStream::of));
-        PRIMITIVES.put(long[].class, Codec.LONG_STREAM.xmap(LongStream::toArray, LongStream::of));
-        PRIMITIVES.put(byte[].class, Codec.BYTE_BUFFER.xmap(it -> {
-            byte[] arr = new byte[it.remaining()];
-            it.get(arr);
-            return arr;
-        }, ByteBuffer::wrap));
+        PRIMITIVES.put(int[].class, PrimitiveArrayCodec.INT);
+        PRIMITIVES.put(long[].class, PrimitiveArrayCodec.LONG);
+        PRIMITIVES.put(byte[].class, PrimitiveArrayCodec.BYTE);
+        PRIMITIVES.put(short[].class, PrimitiveArrayCodec.SHORT);
+        PRIMITIVES.put(float[].class, PrimitiveArrayCodec.FLOAT);
+        PRIMITIVES.put(double[].class, PrimitiveArrayCodec.DOUBLE);
+        PRIMITIVES.put(boolean[].class, PrimitiveArrayCodec.BOOLEAN);
+        PRIMITIVES.put(char[].class, PrimitiveArrayCodec.CHAR);
     }
 
-    @SuppressWarnings("unchecked")
     public static <A> Codec<A> of(Class<A> type) {
+        return of((Type) type);
+    }
+
+    public static <A> Codec<A> of(Type type) {
+        return of(type, Mode.REFLECTION);
+    }
+
+    public static <A> Codec<A> of(Class<A> type, Mode mode) {
+        return of((Type) type, mode);
+    }
+
+    public static <A> Codec<A> of(Type type, Mode mode) {
+        return RESOLVERS.get(mode).resolve(type);
+    }
+
+    public static <A> TypeWriter<A> writer(Class<A> type) {
+        return writer((Type) type);
+    }
+
+    /**
+     * Returns a writer streaming values of the type to a sink, without building the tree {@link #of(Type)} would encode to.
+     */
+    @SuppressWarnings("unchecked")
+    public static <A> TypeWriter<A> writer(Type type) {
+        TypeWriter<?> writer = WRITERS.get(type);
+        if (writer == null) {
+            // not computeIfAbsent, creating a writer may create the writers of its components
+            writer = TypeWriter.create(type);
+            TypeWriter<?> previous = WRITERS.putIfAbsent(type, writer);
+            if (previous != null) {
+                writer = previous;
+            }
+        }
+        return (TypeWriter<A>) writer;
+    }
+
+    public static <A> TypeReader<A> reader(Class<A> type) {
+        return reader((Type) type);
+    }
+
+    /**
+     * Returns a reader pulling values of the type from a source, without building the tree {@link #of(Type)} would decode.
+     */
+    @SuppressWarnings("unchecked")
+    public static <A> TypeReader<A> reader(Type type) {
+        TypeReader<?> reader = READERS.get(type);
+        if (reader == null) {
+            // not computeIfAbsent, creating a reader may create the readers of its components
+            reader = TypeReader.create(type);
+            TypeReader<?> previous = READERS.putIfAbsent(type, reader);
+            if (previous != null) {
+                reader = previous;
+            }
+        }
+        return (TypeReader<A>) reader;
+    }
+
+    /**
+     * Returns a list codec decoding and encoding lists of at least 4096 elements in parallel on the common pool.
+     *
+     * @see #parallelListOf(Codec, int, Executor)
+     */
+    public static <A> Codec<List<A>> parallelListOf(Codec<A> element) {
+        return parallelListOf(element, DEFAULT_PARALLEL_THRESHOLD, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a list codec splitting lists of at least {@code threshold} elements into chunks processed on the
+     * executor, keeping the element order. The first failing element is reported, without a partial result.
+     * Smaller lists are handled exactly like {@link Codec#listOf()}.
+     */
+    public static <A> Codec<List<A>> parallelListOf(Codec<A> element, int threshold, Executor executor) {
+        return new ParallelCodec.OfList<>(element, threshold, executor);
+    }
+
+    /**
+     * Returns a map codec decoding and encoding maps of at least 4096 entries in parallel on the common pool.
+     *
+     * @see #parallelMapOf(Codec, Codec, int, Executor)
+     */
+    public static <K, V> Codec<Map<K, V>> parallelMapOf(Codec<K> key, Codec<V> value) {
+        return parallelMapOf(key, value, DEFAULT_PARALLEL_THRESHOLD, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a map codec splitting maps of at least {@code threshold} entries into chunks processed on the
+     * executor, keeping the entry order. Smaller maps are handled exactly like {@link Codec#unboundedMap}.
+     */
+    public static <K, V> Codec<Map<K, V>> parallelMapOf(Codec<K> key, Codec<V> value, int threshold, Executor executor) {
+        return new ParallelCodec.OfMap<>(key, value, threshold, executor);
+    }
+
+    /**
+     * Returns a codec decoding the type to a view implementing the interface and {@link LazyRecord}, which keeps the
+     * input map and decodes a component the first time its interface method is called. Decoding fails only if the
+     * input is not a map, component failures are thrown as {@link IllegalStateException} when accessed.
+     * <p>
+     * Interface methods are matched to components by name or getter name. Default methods the type does not override
+     * are called on the view on Java 16 and later, so they only decode the components they read. Other methods are
+     * called on the object created by {@link LazyRecord#materialize()}. Views are encoded as their materialized object.
+     */
+    @SuppressWarnings("unchecked")
+    public static <I, A extends I> Codec<I> lazy(Class<I> view, Class<A> type) {
+        List<Class<?>> key = Arrays.asList(view, type);
+        Codec<?> codec = LAZY.get(key);
+        if (codec == null) {
+            codec = new LazyRecordCodec<>(view, classCodec(type));
+            Codec<?> previous = LAZY.putIfAbsent(key, codec);
+            if (previous != null) {
+                codec = previous;
+            }
+        }
+        return (Codec<I>) codec;
+    }
+
+    /**
+     * Resolves the reflection codecs of the types and of all types they contain, in parallel on the executor.
+     *
+     * @see #preload(Collection, Executor, Mode, int)
+     */
+    public static PreloadReport preload(Collection<? extends Type> types, Executor executor) {
+        return preload(types, executor, Mode.REFLECTION, 0);
+    }
+
+    /**
+     * Resolves the codecs of the types and of all types they contain, in parallel on the executor, and blocks until
+     * they are cached. Types are resolved after the types they contain, so shared types are resolved once. Types
+     * failing to resolve are reported instead of thrown.
+     * <p>
+     * With positive {@code warmupIterations}, a synthetic value of each class is then encoded and decoded through
+     * {@link JavaPrimitiveOps} that many times, so its accessors are compiled before real traffic arrives.
+     */
+    public static PreloadReport preload(Collection<? extends Type> types, Executor executor, Mode mode, int warmupIterations) {
+        return Preloader.preload(types, executor, mode, warmupIterations);
+    }
+
+    /**
+     * Registers a provider for its type, taking precedence over reflection for codecs not resolved yet.
+     */
+    public static void register(CodecProvider<?> provider) {
+        PROVIDERS.put(provider.type(), provider);
+    }
+
+    /**
+     * Registers the providers the service loader finds through the class loader, keeping those already registered.
+     * The class loader of a type is scanned when the type is first resolved, so this is only needed for types
+     * resolved through a codec of another class loader.
+     */
+    public static void loadProviders(ClassLoader loader) {
+        if (loader == null) {
+            return;
+        }
+        // registered under the lock, so a concurrent lookup does not see the loader as scanned before its providers
+        synchronized (SCANNED_LOADERS) {
+            if (!SCANNED_LOADERS.add(loader)) {
+                return;
+            }
+            for (CodecProvider<?> provider : ServiceLoader.load(CodecProvider.class, loader)) {
+                PROVIDERS.putIfAbsent(provider.type(), provider);
+            }
+        }
+    }
+
+    public static ParameterizedType parameterized(Class<?> rawType, Type... arguments) {
+        if (rawType.getTypeParameters().length != arguments.length) {
+            throw new IllegalArgumentException("Wrong number of type arguments for " + rawType + ": " + Arrays.toString(arguments));
+        }
+        return new Parameterized(rawType, arguments.clone());
+    }
+
+    static CodecProvider<?> provider(Class<?> type) {
+        CodecProvider<?> provider = PROVIDERS.get(type);
+        if (provider == null && type.getClassLoader() != null) {
+            loadProviders(type.getClassLoader());
+            provider = PROVIDERS.get(type);
+        }
+        return provider;
+    }
+
+    /**
+     * @return the class codec behind the reflection codec of the type, with its layout and bound accessors
+     */
+    @SuppressWarnings("unchecked")
+    static <A> ClassMapCodec<A> classCodec(Class<A> type) {
+        Resolver resolver = RESOLVERS.get(Mode.REFLECTION);
+        resolver.resolve(type);
+        ClassMapCodec<?> codec = resolver.classCodecs.get(type);
+        if (codec == null) { // still being resolved on this thread, or published by a racing thread
+            ClassLayout<A> layout = ClassLayout.of(type);
+            return new ClassMapCodec<>(layout, layout.codecs(Mode.REFLECTION));
+        }
+        return (ClassMapCodec<A>) codec;
+    }
+
+    static boolean isPrimitive(Class<?> type) {
+        return PRIMITIVES.containsKey(type);
+    }
+
+    static boolean isEnum(Type type) {
+        return type instanceof Class && EnumCodec.isEnum((Class<?>) type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <A> Codec<A> create(Type type, Mode mode) {
+        if (type instanceof Class) {
+            return create((Class<A>) type, mode);
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType pType = (ParameterizedType) type;
+            Class<?> rawType = (Class<?>) pType.getRawType();
+            if ((rawType == Collection.class || rawType == List.class) && pType.getActualTypeArguments().length == 1) {
+                return (Codec<A>) of(pType.getActualTypeArguments()[0], mode).listOf();
+            } else if (rawType == Map.class && pType.getActualTypeArguments().length == 2) {
+                return (Codec<A>) Codec.unboundedMap(of(pType.getActualTypeArguments()[0], mode), of(pType.getActualTypeArguments()[1], mode));
+            } else if (rawType == IntMap.class) {
+                return (Codec<A>) new PrimitiveMapCodec.OfInt<>(of(pType.getActualTypeArguments()[0], mode));
+            } else if (rawType == LongMap.class) {
+                return (Codec<A>) new PrimitiveMapCodec.OfLong<>(of(pType.getActualTypeArguments()[0], mode));
+            } else if (rawType == EnumSet.class && isEnum(pType.getActualTypeArguments()[0])) {
+                return (Codec<A>) new EnumCodec.OfSet<>(EnumCodec.of((Class<?>) pType.getActualTypeArguments()[0], false));
+            } else if (rawType == EnumMap.class && isEnum(pType.getActualTypeArguments()[0])) {
+                return (Codec<A>) new EnumCodec.OfMap<>(EnumCodec.of((Class<?>) pType.getActualTypeArguments()[0], false), of(pType.getActualTypeArguments()[1], mode));
+            }
+        }
+        throw new RuntimeException("Cannot find codec for " + type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <A> Codec<A> create(Class<A> type, Mode mode) {
         Codec<?> codec = PRIMITIVES.get(type);
+        CodecProvider<?> provider = codec == null ? provider(type) : null;
         if (codec != null) {
             return (Codec<A>) codec;
+        } else if (provider != null) {
+            return ((CodecProvider<A>) provider).create(mode).codec();
+        } else if (EnumCodec.isEnum(type)) {
+            return (Codec<A>) EnumCodec.of(type, mode == Mode.POSITIONAL);
         } else {
             if (type.isArray()) {
                 Class<Object> componentType = (Class<Object>) type.getComponentType();
                 if (Object.class.isAssignableFrom(componentType)) {
-                    return (Codec<A>) of(componentType).listOf().xmap(
+                    return (Codec<A>) of(componentType, mode).listOf().xmap(
                         it -> it.toArray((Object[]) Array.newInstance(componentType, 0)),
                         Arrays::asList);
                 } else {
                     throw new IllegalArgumentException("Cannot create codec for " + type);
                 }
             } else {
-                return new ClassMapCodec<>(type).codec();
+                ClassLayout<A> layout = ClassLayout.of(type);
+                List<Codec<?>> codecs = layout.codecs(mode);
+                if (mode == Mode.POSITIONAL) {
+                    return new PositionalCodec<>(new ClassMapCodec<>(layout, codecs), layout.fingerprint());
+                } else if (mode == Mode.GENERATED) {
+                    return CodecGenerator.generate(layout, codecs)
+                        .orElseGet(() -> new ClassMapCodec<>(layout, codecs)).codec();
+                }
+                ClassMapCodec<A> classCodec = new ClassMapCodec<>(layout, codecs);
+                RESOLVERS.get(mode).created(type, classCodec);
+                return classCodec.codec();
             }
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public static <A> Codec<A> of(Type type) {
-        if (type instanceof Class) {
-            return of((Class<A>) type);
-        } else if (type instanceof ParameterizedType) {
-            ParameterizedType pType = (ParameterizedType) type;
-            Class<?> rawType = (Class<?>) pType.getRawType();
-            if ((rawType == Collection.class || rawType == List.class) && pType.getActualTypeArguments().length == 1) {
-                return (Codec<A>) of(pType.getActualTypeArguments()[0]).listOf();
-            } else if (rawType == Map.class && pType.getActualTypeArguments().length == 2) {
-                return (Codec<A>) Codec.unboundedMap(of(pType.getActualTypeArguments()[0]), of(pType.getActualTypeArguments()[1]));
+    public enum Mode {
+        /**
+         * Components are read and written through the accessors discovered by reflection.
+         */
+        REFLECTION,
+        /**
+         * A specialized map codec class is defined at runtime for each target class, falling back
+         * to {@link #REFLECTION} for classes whose members are not public.
+         */
+        GENERATED,
+        /**
+         * Classes are encoded as a list of their components in declaration order, without keys, headed by a
+         * fingerprint of the component names and types that is checked on decoding. Both sides must share the
+         * class layout. Types with a registered provider keep the map form of their codec, and enums are encoded by
+         * ordinal.
+         */
+        POSITIONAL
+    }
+
+    private static class Resolver {
+
+        private final Mode mode;
+        private final Map<Type, Codec<?>> cache = new ConcurrentHashMap<>();
+        private final Map<Class<?>, ClassMapCodec<?>> classCodecs = new ConcurrentHashMap<>();
+        private final ThreadLocal<Map<Type, Lazy<?>>> resolving = ThreadLocal.withInitial(HashMap::new);
+
+        private Resolver(Mode mode) {
+            this.mode = mode;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <A> Codec<A> resolve(Type type) {
+            // cached lookups are on the hot path and report no event
+            Codec<?> cached = cache.get(type);
+            if (cached != null) {
+                return (Codec<A>) cached;
+            }
+            Map<Type, Lazy<?>> resolving = this.resolving.get();
+            Lazy<?> pending = resolving.get(type);
+            if (pending != null) {
+                return (Codec<A>) (pending.delegate != null ? pending.delegate : pending);
             }
+            Object event = CodecEvents.beginResolution();
+            boolean outermost = resolving.isEmpty();
+            Lazy<A> lazy = new Lazy<>(type);
+            resolving.put(type, lazy);
+            boolean success = false;
+            try {
+                Codec<A> codec = create(type, mode);
+                if (!PRIMITIVES.containsKey(type)) {
+                    codec = CodecEvents.timed(type, CodecMetrics.ENABLED ? CodecMetrics.instrument(type, codec) : codec);
+                }
+                lazy.delegate = codec;
+                CodecEvents.endResolution(event, type, mode, resolving.size());
+                success = true;
+            } finally {
+                if (outermost) {
+                    if (success) {
+                        for (Map.Entry<Type, Lazy<?>> entry : resolving.entrySet()) {
+                            cache.putIfAbsent(entry.getKey(), entry.getValue().delegate);
+                            if (entry.getValue().classCodec != null) {
+                                classCodecs.putIfAbsent((Class<?>) entry.getKey(), entry.getValue().classCodec);
+                            }
+                        }
+                    }
+                    resolving.clear();
+                }
+            }
+            return outermost ? (Codec<A>) cache.get(type) : lazy.delegate;
+        }
+
+        private void created(Class<?> type, ClassMapCodec<?> classCodec) {
+            Lazy<?> lazy = resolving.get().get(type);
+            if (lazy != null) {
+                lazy.classCodec = classCodec;
+            }
+        }
+    }
+
+    private static class Lazy<A> implements Codec<A> {
+
+        private final Type type;
+        private volatile Codec<A> delegate;
+        // published with the codec, so streaming readers and writers share its accessors
+        private ClassMapCodec<?> classCodec;
+
+        private Lazy(Type type) {
+            this.type = type;
+        }
+
+        @Override
+        public <T> DataResult<Pair<A, T>> decode(DynamicOps<T> ops, T input) {
+            Codec<A> codec = delegate;
+            return codec == null ? DataResult.error("Codec for " + type + " is not resolved") : codec.decode(ops, input);
+        }
+
+        @Override
+        public <T> DataResult<T> encode(A input, DynamicOps<T> ops, T prefix) {
+            Codec<A> codec = delegate;
+            return codec == null ? DataResult.error("Codec for " + type + " is not resolved") : codec.encode(input, ops, prefix);
+        }
+
+        @Override
+        public String toString() {
+            return "Lazy[" + type + "]";
+        }
+    }
+
+    private static class Parameterized implements ParameterizedType {
+
+        private final Class<?> rawType;
+        private final Type[] arguments;
+
+        private Parameterized(Class<?> rawType, Type[] arguments) {
+            this.rawType = rawType;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return arguments.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return rawType;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return rawType.getDeclaringClass();
+        }
+
+        // compatible with the JDK implementation, so both resolve to the same cached codec
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ParameterizedType)) return false;
+            ParameterizedType that = (ParameterizedType) o;
+            return rawType.equals(that.getRawType())
+                && Objects.equals(getOwnerType(), that.getOwnerType())
+                && Arrays.equals(arguments, that.getActualTypeArguments());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(arguments) ^ Objects.hashCode(getOwnerType()) ^ rawType.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(rawType.getName()).append('<');
+            for (int i = 0; i < arguments.length; i++) {
+                builder.append(i == 0 ? "" : ", ").append(arguments[i].getTypeName());
+            }
+            return builder.append('>').toString();
         }
-        throw new RuntimeException("Cannot find codec for " + type);
     }
 }
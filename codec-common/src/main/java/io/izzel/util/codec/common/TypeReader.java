@@ -0,0 +1,351 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.stream.JsonReader;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads values of a type from a stream of tokens, accepting the documents {@link TypeCodec#of(Type)} decodes
+ * without building the intermediate tree. Record components are collected as their keys stream past, and unknown
+ * keys are skipped.
+ * <p>
+ * Types with a registered {@link CodecProvider} and primitive arrays are decoded through their codec, as a subtree.
+ *
+ * @see TypeCodec#reader(Type)
+ */
+public abstract class TypeReader<A> {
+
+    TypeReader() {
+    }
+
+    /**
+     * Reads a value from JSON, as decoded with {@link com.mojang.serialization.JsonOps}.
+     */
+    public A read(JsonReader reader) throws IOException {
+        try {
+            return read(new TokenSource.Json(reader));
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a value in the format of {@link BinaryOps}. The stream is read ahead, so it should not be read further.
+     */
+    public A read(InputStream in) throws IOException {
+        return read(Channels.newChannel(in));
+    }
+
+    /**
+     * Reads a value in the format of {@link BinaryOps}. The channel is read ahead, so it should not be read further.
+     */
+    public A read(ReadableByteChannel channel) throws IOException {
+        return read(new TokenSource.Binary(channel));
+    }
+
+    /**
+     * Iterates the elements of a JSON list one by one, so only the current element is held in memory.
+     * <p>
+     * Failures while reading are thrown as {@link UncheckedIOException}.
+     */
+    public Iterator<A> elements(JsonReader reader) {
+        return new Elements<>(this, new TokenSource.Json(reader));
+    }
+
+    /**
+     * Iterates the elements of a list in the format of {@link BinaryOps} one by one.
+     *
+     * @see #elements(JsonReader)
+     */
+    public Iterator<A> elements(InputStream in) {
+        return elements(Channels.newChannel(in));
+    }
+
+    /**
+     * Iterates the elements of a list in the format of {@link BinaryOps} one by one.
+     *
+     * @see #elements(JsonReader)
+     */
+    public Iterator<A> elements(ReadableByteChannel channel) {
+        return new Elements<>(this, new TokenSource.Binary(channel));
+    }
+
+    abstract A read(TokenSource source) throws IOException;
+
+    @SuppressWarnings("unchecked")
+    static <A> TypeReader<A> create(Type type) {
+        if (type instanceof Class) {
+            return create((Class<A>) type);
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType pType = (ParameterizedType) type;
+            Class<?> rawType = (Class<?>) pType.getRawType();
+            Type[] arguments = pType.getActualTypeArguments();
+            if ((rawType == Collection.class || rawType == List.class) && arguments.length == 1) {
+                return (TypeReader<A>) new ListReader<>(TypeCodec.reader(arguments[0]));
+            } else if (rawType == Map.class && arguments.length == 2) {
+                return (TypeReader<A>) new MapReader<>(TypeCodec.reader(arguments[0]), TypeCodec.reader(arguments[1]));
+            } else if (((rawType == EnumSet.class || rawType == EnumMap.class) && TypeCodec.isEnum(arguments[0]))
+                || rawType == IntMap.class || rawType == LongMap.class) {
+                return new Decoded<>(TypeCodec.of(type));
+            }
+        }
+        throw new RuntimeException("Cannot find codec for " + type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <A> TypeReader<A> create(Class<A> type) {
+        if (type == boolean.class) {
+            return (TypeReader<A>) new Scalar<>(TokenSource::readBoolean);
+        } else if (type == byte.class) {
+            return (TypeReader<A>) new Scalar<>(TokenSource::readByte);
+        } else if (type == short.class) {
+            return (TypeReader<A>) new Scalar<>(TokenSource::readShort);
+        } else if (type == int.class) {
+            return (TypeReader<A>) new Scalar<>(TokenSource::readInt);
+        } else if (type == long.class) {
+            return (TypeReader<A>) new Scalar<>(TokenSource::readLong);
+        } else if (type == float.class) {
+            return (TypeReader<A>) new Scalar<>(TokenSource::readFloat);
+        } else if (type == double.class) {
+            return (TypeReader<A>) new Scalar<>(TokenSource::readDouble);
+        } else if (type == String.class) {
+            return (TypeReader<A>) new Scalar<>(TokenSource::readString);
+        } else if ((type.isArray() && type.getComponentType().isPrimitive()) || TypeCodec.provider(type) != null
+            || TypeCodec.isEnum(type)) {
+            return new Decoded<>(TypeCodec.of(type));
+        } else if (type.isArray()) {
+            Class<Object> componentType = (Class<Object>) type.getComponentType();
+            return (TypeReader<A>) new ArrayReader<>(componentType, TypeCodec.reader(componentType));
+        } else {
+            return new RecordReader<>(TypeCodec.classCodec(type));
+        }
+    }
+
+    private interface Parser<A> {
+
+        A read(TokenSource source) throws IOException;
+    }
+
+    private static class Scalar<A> extends TypeReader<A> {
+
+        private final Parser<A> parser;
+
+        private Scalar(Parser<A> parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        A read(TokenSource source) throws IOException {
+            return parser.read(source);
+        }
+    }
+
+    private static class Decoded<A> extends TypeReader<A> {
+
+        private final Codec<A> codec;
+
+        private Decoded(Codec<A> codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        A read(TokenSource source) throws IOException {
+            return source.readDecoded(codec);
+        }
+    }
+
+    private static class ListReader<A> extends TypeReader<List<A>> {
+
+        private final TypeReader<A> element;
+
+        private ListReader(TypeReader<A> element) {
+            this.element = element;
+        }
+
+        @Override
+        List<A> read(TokenSource source) throws IOException {
+            List<A> list = new ArrayList<>();
+            source.beginList();
+            while (source.hasNext()) {
+                list.add(element.read(source));
+            }
+            source.endList();
+            return list;
+        }
+    }
+
+    private static class ArrayReader<A> extends TypeReader<A[]> {
+
+        private final Class<A> componentType;
+        private final TypeReader<A> element;
+
+        private ArrayReader(Class<A> componentType, TypeReader<A> element) {
+            this.componentType = componentType;
+            this.element = element;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        A[] read(TokenSource source) throws IOException {
+            List<A> list = new ArrayList<>();
+            source.beginList();
+            while (source.hasNext()) {
+                list.add(element.read(source));
+            }
+            source.endList();
+            return list.toArray((A[]) Array.newInstance(componentType, list.size()));
+        }
+    }
+
+    private static class MapReader<K, V> extends TypeReader<Map<K, V>> {
+
+        private final TypeReader<K> key;
+        private final TypeReader<V> value;
+
+        private MapReader(TypeReader<K> key, TypeReader<V> value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        Map<K, V> read(TokenSource source) throws IOException {
+            Map<K, V> map = new LinkedHashMap<>();
+            source.beginMap();
+            while (source.hasNext()) {
+                K k = key.read(source);
+                map.put(k, value.read(source));
+            }
+            source.endMap();
+            return map;
+        }
+    }
+
+    private static class RecordReader<A> extends TypeReader<A> {
+
+        private final ClassMapCodec<A> codec;
+        private final List<String> keys;
+        private final Map<String, Integer> indices = new HashMap<>();
+        private final Type[] types;
+        // resolved on first use, so self referencing types do not recurse while the reader is created
+        private volatile TypeReader<?>[] readers;
+
+        private RecordReader(ClassMapCodec<A> codec) {
+            this.codec = codec;
+            this.keys = codec.componentKeys();
+            this.types = new Type[keys.size()];
+            for (int i = 0; i < types.length; i++) {
+                indices.put(keys.get(i), i);
+                types[i] = codec.layout().components().get(i).genericType();
+            }
+        }
+
+        private TypeReader<?>[] readers() {
+            TypeReader<?>[] readers = this.readers;
+            if (readers == null) {
+                readers = new TypeReader<?>[types.length];
+                for (int i = 0; i < types.length; i++) {
+                    readers[i] = TypeCodec.reader(types[i]);
+                }
+                this.readers = readers;
+            }
+            return readers;
+        }
+
+        @Override
+        A read(TokenSource source) throws IOException {
+            TypeReader<?>[] readers = readers();
+            Object[] args = new Object[readers.length];
+            boolean[] present = new boolean[readers.length];
+            source.beginMap();
+            while (source.hasNext()) {
+                Integer index = indices.get(source.readString());
+                if (index == null) {
+                    source.skipValue();
+                } else {
+                    args[index] = readers[index].read(source);
+                    present[index] = true;
+                }
+            }
+            source.endMap();
+            for (int i = 0; i < present.length; i++) {
+                if (!present[i]) {
+                    throw new IOException("No key " + keys.get(i) + " for " + codec.type().getName());
+                }
+            }
+            DataResult<A> result = codec.newInstance(args);
+            if (!result.result().isPresent()) {
+                throw new IOException(result.error().map(DataResult.PartialResult::message).orElse("Failed to initialize " + codec.type()));
+            }
+            return result.result().get();
+        }
+    }
+
+    private static class Elements<A> implements Iterator<A> {
+
+        private final TypeReader<A> reader;
+        private final TokenSource source;
+        private boolean started;
+        private boolean finished;
+
+        private Elements(TypeReader<A> reader, TokenSource source) {
+            this.reader = reader;
+            this.source = source;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (finished) {
+                return false;
+            }
+            try {
+                if (!started) {
+                    source.beginList();
+                    started = true;
+                }
+                if (source.hasNext()) {
+                    return true;
+                }
+                source.endList();
+                finished = true;
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (IllegalStateException | NumberFormatException e) {
+                throw new UncheckedIOException(new IOException(e.getMessage(), e));
+            }
+        }
+
+        @Override
+        public A next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return reader.read(source);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (IllegalStateException | NumberFormatException e) {
+                throw new UncheckedIOException(new IOException(e.getMessage(), e));
+            }
+        }
+    }
+}
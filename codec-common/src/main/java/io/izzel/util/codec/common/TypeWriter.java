@@ -0,0 +1,257 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.stream.JsonWriter;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes values of a type as a stream of tokens, producing the same document as {@link TypeCodec#of(Type)}
+ * without building the intermediate tree. Only the current path of nested values is held in memory.
+ * <p>
+ * Types with a registered {@link CodecProvider} are encoded through their codec, as a subtree.
+ *
+ * @see TypeCodec#writer(Type)
+ */
+public abstract class TypeWriter<A> {
+
+    TypeWriter() {
+    }
+
+    /**
+     * Writes the value as JSON, identical to encoding with {@link com.mojang.serialization.JsonOps}.
+     */
+    public void write(A value, JsonWriter writer) throws IOException {
+        TokenSink sink = new TokenSink.Json(writer);
+        write(value, sink);
+        sink.flush();
+    }
+
+    /**
+     * Writes the value in the format of {@link BinaryOps}, readable with {@link BinaryOps#read}.
+     */
+    public void write(A value, OutputStream out) throws IOException {
+        write(value, Channels.newChannel(out));
+        out.flush();
+    }
+
+    /**
+     * Writes the value in the format of {@link BinaryOps}, readable with {@link BinaryOps#read}.
+     */
+    public void write(A value, WritableByteChannel channel) throws IOException {
+        TokenSink sink = new TokenSink.Binary(channel);
+        write(value, sink);
+        sink.flush();
+    }
+
+    abstract void write(A value, TokenSink sink) throws IOException;
+
+    @SuppressWarnings("unchecked")
+    static <A> TypeWriter<A> create(Type type) {
+        if (type instanceof Class) {
+            return create((Class<A>) type);
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType pType = (ParameterizedType) type;
+            Class<?> rawType = (Class<?>) pType.getRawType();
+            Type[] arguments = pType.getActualTypeArguments();
+            if ((rawType == Collection.class || rawType == List.class) && arguments.length == 1) {
+                return (TypeWriter<A>) new ListWriter<>(TypeCodec.writer(arguments[0]));
+            } else if (rawType == Map.class && arguments.length == 2) {
+                return (TypeWriter<A>) new MapWriter<>(TypeCodec.writer(arguments[0]), TypeCodec.writer(arguments[1]));
+            } else if (((rawType == EnumSet.class || rawType == EnumMap.class) && TypeCodec.isEnum(arguments[0]))
+                || rawType == IntMap.class || rawType == LongMap.class) {
+                return new Encoded<>(TypeCodec.of(type));
+            }
+        }
+        throw new RuntimeException("Cannot find codec for " + type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <A> TypeWriter<A> create(Class<A> type) {
+        if (type == boolean.class) {
+            return (TypeWriter<A>) new Scalar<Boolean>(type, (value, sink) -> sink.writeBoolean(value));
+        } else if (type == byte.class) {
+            return (TypeWriter<A>) new Scalar<Byte>(type, (value, sink) -> sink.writeByte(value));
+        } else if (type == short.class) {
+            return (TypeWriter<A>) new Scalar<Short>(type, (value, sink) -> sink.writeShort(value));
+        } else if (type == int.class) {
+            return (TypeWriter<A>) new Scalar<Integer>(type, (value, sink) -> sink.writeInt(value));
+        } else if (type == long.class) {
+            return (TypeWriter<A>) new Scalar<Long>(type, (value, sink) -> sink.writeLong(value));
+        } else if (type == float.class) {
+            return (TypeWriter<A>) new Scalar<Float>(type, (value, sink) -> sink.writeFloat(value));
+        } else if (type == double.class) {
+            return (TypeWriter<A>) new Scalar<Double>(type, (value, sink) -> sink.writeDouble(value));
+        } else if (type == String.class) {
+            return (TypeWriter<A>) new Scalar<String>(type, (value, sink) -> sink.writeString(value));
+        } else if (type.isArray() && type.getComponentType().isPrimitive()) {
+            return new Scalar<>(type, (value, sink) -> sink.writeArray(value));
+        } else if (TypeCodec.provider(type) != null || TypeCodec.isEnum(type)) {
+            return new Encoded<>(TypeCodec.of(type));
+        } else if (type.isArray()) {
+            return (TypeWriter<A>) new ArrayWriter<>(TypeCodec.writer(type.getComponentType()));
+        } else {
+            return new RecordWriter<>(TypeCodec.classCodec(type));
+        }
+    }
+
+    private interface Emitter<A> {
+
+        void write(A value, TokenSink sink) throws IOException;
+    }
+
+    private static class Scalar<A> extends TypeWriter<A> {
+
+        private final Class<?> type;
+        private final Emitter<A> emitter;
+
+        private Scalar(Class<?> type, Emitter<A> emitter) {
+            this.type = type;
+            this.emitter = emitter;
+        }
+
+        @Override
+        void write(A value, TokenSink sink) throws IOException {
+            if (value == null) {
+                throw new IOException("Cannot write null " + type.getName());
+            }
+            emitter.write(value, sink);
+        }
+    }
+
+    private static class Encoded<A> extends TypeWriter<A> {
+
+        private final Codec<A> codec;
+
+        private Encoded(Codec<A> codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        void write(A value, TokenSink sink) throws IOException {
+            sink.writeEncoded(codec, value);
+        }
+    }
+
+    private static class ListWriter<A> extends TypeWriter<Collection<A>> {
+
+        private final TypeWriter<A> element;
+
+        private ListWriter(TypeWriter<A> element) {
+            this.element = element;
+        }
+
+        @Override
+        void write(Collection<A> value, TokenSink sink) throws IOException {
+            sink.beginList();
+            for (A a : value) {
+                element.write(a, sink);
+            }
+            sink.endList();
+        }
+    }
+
+    private static class ArrayWriter<A> extends TypeWriter<A[]> {
+
+        private final TypeWriter<A> element;
+
+        private ArrayWriter(TypeWriter<A> element) {
+            this.element = element;
+        }
+
+        @Override
+        void write(A[] value, TokenSink sink) throws IOException {
+            sink.beginList();
+            for (A a : value) {
+                element.write(a, sink);
+            }
+            sink.endList();
+        }
+    }
+
+    private static class MapWriter<K, V> extends TypeWriter<Map<K, V>> {
+
+        private final TypeWriter<K> key;
+        private final TypeWriter<V> value;
+
+        private MapWriter(TypeWriter<K> key, TypeWriter<V> value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        void write(Map<K, V> map, TokenSink sink) throws IOException {
+            sink.beginMap();
+            for (Map.Entry<K, V> entry : map.entrySet()) {
+                key.write(entry.getKey(), sink);
+                value.write(entry.getValue(), sink);
+            }
+            sink.endMap();
+        }
+    }
+
+    private static class RecordWriter<A> extends TypeWriter<A> {
+
+        private final ClassMapCodec<A> codec;
+        private final List<String> keys;
+        private final Type[] types;
+        // resolved on first use, so self referencing types do not recurse while the writer is created
+        private volatile TypeWriter<?>[] writers;
+
+        private RecordWriter(ClassMapCodec<A> codec) {
+            this.codec = codec;
+            this.keys = codec.componentKeys();
+            this.types = new Type[keys.size()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = codec.layout().components().get(i).genericType();
+            }
+        }
+
+        private TypeWriter<?>[] writers() {
+            TypeWriter<?>[] writers = this.writers;
+            if (writers == null) {
+                writers = new TypeWriter<?>[types.length];
+                for (int i = 0; i < types.length; i++) {
+                    writers[i] = TypeCodec.writer(types[i]);
+                }
+                this.writers = writers;
+            }
+            return writers;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void write(A value, TokenSink sink) throws IOException {
+            if (value == null) {
+                throw new IOException("Cannot write null " + codec.type().getName());
+            }
+            TypeWriter<?>[] writers = writers();
+            sink.beginMap();
+            for (int i = 0; i < writers.length; i++) {
+                String key = keys.get(i);
+                DataResult<Object> component = codec.component(value, key);
+                if (!component.result().isPresent()) {
+                    throw new IOException(component.error().map(DataResult.PartialResult::message).orElse("Failed to get " + key));
+                }
+                Object o = component.result().get();
+                if (o == null) {
+                    throw new IOException("Component " + key + " of " + codec.type().getName() + " is null");
+                }
+                sink.writeString(key);
+                ((TypeWriter<Object>) writers[i]).write(o, sink);
+            }
+            sink.endMap();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.datafixers.util.Pair;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+import java.lang.reflect.Type;
+
+/**
+ * Commits Flight Recorder events for codec resolution, reflection scanning, slow encoding and decoding, and decode
+ * failures. Replaces the no-op hooks of the Java 8 baseline.
+ */
+final class CodecEvents {
+
+    private static final EventType OPERATION = EventType.getEventType(OperationEvent.class);
+    private static final EventType DECODE_FAILURE = EventType.getEventType(DecodeFailureEvent.class);
+    // the failure reported last by this thread, extended by the keys of the outer types reporting it again
+    private static final ThreadLocal<Failure> LAST_FAILURE = new ThreadLocal<>();
+
+    private CodecEvents() {
+    }
+
+    static Object beginResolution() {
+        ResolutionEvent event = new ResolutionEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endResolution(Object event, Type type, TypeCodec.Mode mode, int depth) {
+        ResolutionEvent resolution = (ResolutionEvent) event;
+        resolution.end();
+        if (resolution.shouldCommit()) {
+            resolution.type = type.getTypeName();
+            resolution.mode = mode.name();
+            resolution.depth = depth;
+            resolution.commit();
+        }
+    }
+
+    static Object beginScan() {
+        ScanEvent event = new ScanEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endScan(Object event, Class<?> type, String phase, int components) {
+        ScanEvent scan = (ScanEvent) event;
+        scan.end();
+        if (scan.shouldCommit()) {
+            scan.type = type.getName();
+            scan.phase = phase;
+            scan.components = components;
+            scan.commit();
+        }
+    }
+
+    static <A> Codec<A> timed(Type type, Codec<A> codec) {
+        return new TimedCodec<>(type.getTypeName(), codec);
+    }
+
+    static void decodeFailed(Class<?> type, String key, Class<?> componentType, DataResult<?> result) {
+        if (!DECODE_FAILURE.isEnabled()) {
+            return;
+        }
+        String message = result.error().map(DataResult.PartialResult::message).orElse("");
+        Failure last = LAST_FAILURE.get();
+        // messages are passed on unchanged, so an outer type reports the same instance for a component of the type
+        // reporting it last, any other report is innermost and starts a new path
+        String path = last != null && last.message == message && componentType.isAssignableFrom(last.type)
+            ? key + "." + last.path : key;
+        LAST_FAILURE.set(new Failure(type, message, path));
+        DecodeFailureEvent event = new DecodeFailureEvent();
+        event.type = type.getName();
+        event.path = path;
+        event.message = message;
+        event.commit();
+    }
+
+    private static final class Failure {
+
+        private final Class<?> type;
+        private final String message;
+        private final String path;
+
+        private Failure(Class<?> type, String message, String path) {
+            this.type = type;
+            this.message = message;
+            this.path = path;
+        }
+    }
+
+    private static final class TimedCodec<A> implements Codec<A> {
+
+        private final String type;
+        private final Codec<A> codec;
+
+        private TimedCodec(String type, Codec<A> codec) {
+            this.type = type;
+            this.codec = codec;
+        }
+
+        @Override
+        public <T> DataResult<Pair<A, T>> decode(DynamicOps<T> ops, T input) {
+            if (!OPERATION.isEnabled()) {
+                return codec.decode(ops, input);
+            }
+            OperationEvent event = new OperationEvent();
+            event.begin();
+            DataResult<Pair<A, T>> result = codec.decode(ops, input);
+            event.end();
+            if (event.shouldCommit()) {
+                event.commit(type, "decode", ops, result);
+            }
+            return result;
+        }
+
+        @Override
+        public <T> DataResult<T> encode(A input, DynamicOps<T> ops, T prefix) {
+            if (!OPERATION.isEnabled()) {
+                return codec.encode(input, ops, prefix);
+            }
+            OperationEvent event = new OperationEvent();
+            event.begin();
+            DataResult<T> result = codec.encode(input, ops, prefix);
+            event.end();
+            if (event.shouldCommit()) {
+                event.commit(type, "encode", ops, result);
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return codec.toString();
+        }
+    }
+
+    @Name("io.izzel.codec.Resolution")
+    @Label("Codec Resolution")
+    @Description("A codec created by TypeCodec, cached lookups are not reported")
+    @Category("Codec")
+    static final class ResolutionEvent extends Event {
+
+        @Label("Type")
+        String type;
+
+        @Label("Mode")
+        String mode;
+
+        @Label("Depth")
+        @Description("Types being resolved by the thread")
+        int depth;
+    }
+
+    @Name("io.izzel.codec.Scan")
+    @Label("Codec Reflection Scan")
+    @Description("Fields, getters and constructors of a class looked up by reflection")
+    @Category("Codec")
+    static final class ScanEvent extends Event {
+
+        @Label("Type")
+        String type;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Components")
+        int components;
+    }
+
+    @Name("io.izzel.codec.Operation")
+    @Label("Codec Operation")
+    @Description("An encode or decode of a type resolved by TypeCodec taking longer than the threshold")
+    @Category("Codec")
+    @Threshold("10 ms")
+    static final class OperationEvent extends Event {
+
+        @Label("Type")
+        String type;
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Ops")
+        String ops;
+
+        @Label("Success")
+        boolean success;
+
+        private void commit(String type, String operation, DynamicOps<?> ops, DataResult<?> result) {
+            this.type = type;
+            this.operation = operation;
+            this.ops = ops.toString();
+            this.success = result.result().isPresent();
+            commit();
+        }
+    }
+
+    @Name("io.izzel.codec.DecodeFailure")
+    @Label("Codec Decode Failure")
+    @Description("A component failing to decode, reported again by each enclosing type with a longer path")
+    @Category("Codec")
+    static final class DecodeFailureEvent extends Event {
+
+        @Label("Type")
+        String type;
+
+        @Label("Path")
+        String path;
+
+        @Label("Message")
+        String message;
+    }
+}
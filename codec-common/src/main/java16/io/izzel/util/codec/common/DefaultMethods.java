@@ -0,0 +1,21 @@
+package io.izzel.util.codec.common;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+/**
+ * Calls default interface methods on a proxy, so the methods they call go through its handler again.
+ */
+final class DefaultMethods {
+
+    private DefaultMethods() {
+    }
+
+    static boolean supported() {
+        return true;
+    }
+
+    static Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        return InvocationHandler.invokeDefault(proxy, method, args);
+    }
+}
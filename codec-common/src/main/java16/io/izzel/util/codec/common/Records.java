@@ -0,0 +1,48 @@
+package io.izzel.util.codec.common;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the layout of records from their record components, in place of scanning fields and probing for getters.
+ * Components are read through their accessors, and records are created through the canonical constructor.
+ */
+final class Records {
+
+    private Records() {
+    }
+
+    /**
+     * @return the layout of the record, or {@code null} if the type is not a record
+     */
+    static <A> ClassLayout<A> layout(Class<A> type) {
+        if (!type.isRecord()) {
+            return null;
+        }
+        RecordComponent[] recordComponents = type.getRecordComponents();
+        List<ClassLayout.Component> components = new ArrayList<>(recordComponents.length);
+        Class<?>[] argTypes = new Class<?>[recordComponents.length];
+        for (int i = 0; i < recordComponents.length; i++) {
+            RecordComponent component = recordComponents[i];
+            Method accessor = component.getAccessor();
+            if (!Modifier.isPublic(accessor.getModifiers())) {
+                throw new RuntimeException("Unable to find accessor for component " + component.getName());
+            }
+            components.add(new ClassLayout.Component(component.getName(), component.getGenericType(), component.getType(), null, accessor));
+            argTypes[i] = component.getType();
+        }
+        try {
+            Constructor<A> canonical = type.getDeclaredConstructor(argTypes);
+            if (!Modifier.isPublic(canonical.getModifiers())) {
+                throw new RuntimeException("Constructor " + canonical + " is not accessible");
+            }
+            return new ClassLayout<>(type, components, canonical);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
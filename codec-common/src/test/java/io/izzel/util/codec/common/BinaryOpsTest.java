@@ -0,0 +1,160 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.JsonOps;
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryOpsTest {
+
+    public record Sample(int intValue, long longValue, double doubleValue, boolean booleanValue, String stringValue,
+                         List<String> list, Map<String, String> map, int[] ints, double[] doubles, float[] floats) {}
+
+    private static Sample sample() {
+        return new Sample(-42, Long.MIN_VALUE, 4.2, true, "\u00e9t\u00e9", List.of("a", "b"), Map.of("key", "42"),
+            new int[]{1, -1, Integer.MAX_VALUE}, new double[]{0.5, -0.5}, new float[]{1.5F});
+    }
+
+    private static void assertSample(Sample expected, Sample actual) {
+        assertEquals(expected.intValue(), actual.intValue());
+        assertEquals(expected.longValue(), actual.longValue());
+        assertEquals(expected.doubleValue(), actual.doubleValue());
+        assertEquals(expected.booleanValue(), actual.booleanValue());
+        assertEquals(expected.stringValue(), actual.stringValue());
+        assertEquals(expected.list(), actual.list());
+        assertEquals(expected.map(), actual.map());
+        assertArrayEquals(expected.ints(), actual.ints());
+        assertArrayEquals(expected.doubles(), actual.doubles());
+        assertArrayEquals(expected.floats(), actual.floats());
+    }
+
+    @Test
+    void testRecord() {
+        for (TypeCodec.Mode mode : TypeCodec.Mode.values()) {
+            var codec = TypeCodec.of(Sample.class, mode);
+            var result = codec.encodeStart(BinaryOps.INSTANCE, sample());
+            assertTrue(result.result().isPresent(), "Result is " + result.error());
+            var parse = codec.parse(BinaryOps.INSTANCE, result.result().get());
+            assertTrue(parse.result().isPresent(), "Result is " + parse.error());
+            assertSample(sample(), parse.result().get());
+        }
+    }
+
+    @Test
+    void testCompact() {
+        var codec = TypeCodec.of(Sample.class);
+        var binary = codec.encodeStart(BinaryOps.INSTANCE, sample()).result().get();
+        var json = codec.encodeStart(JsonOps.INSTANCE, sample()).result().get();
+        assertTrue(binary.remaining() < json.toString().length(), binary.remaining() + " bytes");
+        assertEquals(json, BinaryOps.INSTANCE.convertTo(JsonOps.INSTANCE, binary));
+    }
+
+    @Test
+    void testPrimitives() {
+        int[] ints = {0, 1, -1, 63, -64, 64, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        for (int i : ints) {
+            assertEquals(i, Codec.INT.parse(BinaryOps.INSTANCE, BinaryOps.INSTANCE.createInt(i)).result().get());
+        }
+        assertEquals(1, BinaryOps.INSTANCE.createInt(-1).remaining() - 1);
+        assertEquals(Long.MAX_VALUE, Codec.LONG.parse(BinaryOps.INSTANCE, BinaryOps.INSTANCE.createLong(Long.MAX_VALUE)).result().get());
+        assertEquals((short) -42, Codec.SHORT.parse(BinaryOps.INSTANCE, BinaryOps.INSTANCE.createShort((short) -42)).result().get());
+        assertEquals((byte) 42, Codec.BYTE.parse(BinaryOps.INSTANCE, BinaryOps.INSTANCE.createByte((byte) 42)).result().get());
+        assertEquals(4.2F, Codec.FLOAT.parse(BinaryOps.INSTANCE, BinaryOps.INSTANCE.createFloat(4.2F)).result().get());
+        assertEquals(false, Codec.BOOL.parse(BinaryOps.INSTANCE, BinaryOps.INSTANCE.createBoolean(false)).result().get());
+        assertTrue(Codec.INT.parse(BinaryOps.INSTANCE, BinaryOps.INSTANCE.createString("42")).error().isPresent());
+    }
+
+    @Test
+    void testArrayBlocks() {
+        var array = new double[1000];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = i / 3D;
+        }
+        var encoded = TypeCodec.of(double[].class).encodeStart(BinaryOps.INSTANCE, array).result().get();
+        assertEquals(1 + 2 + array.length * 8, encoded.remaining());
+        assertArrayEquals(array, TypeCodec.of(double[].class).parse(BinaryOps.INSTANCE, encoded).result().get());
+        var bytes = TypeCodec.of(byte[].class).encodeStart(BinaryOps.INSTANCE, new byte[]{4, 2}).result().get();
+        assertArrayEquals(new byte[]{4, 2}, TypeCodec.of(byte[].class).parse(BinaryOps.INSTANCE, bytes).result().get());
+        var booleans = TypeCodec.of(boolean[].class).encodeStart(BinaryOps.INSTANCE, new boolean[]{true, false}).result().get();
+        assertArrayEquals(new boolean[]{true, false}, TypeCodec.of(boolean[].class).parse(BinaryOps.INSTANCE, booleans).result().get());
+        var ints = TypeCodec.of(int[].class).encodeStart(BinaryOps.INSTANCE, new int[]{4, 2}).result().get();
+        assertEquals(List.of(4, 2), Codec.INT.listOf().parse(BinaryOps.INSTANCE, ints).result().get());
+        var list = Codec.INT.listOf().encodeStart(BinaryOps.INSTANCE, List.of(4, 2)).result().get();
+        assertArrayEquals(new int[]{4, 2}, TypeCodec.of(int[].class).parse(BinaryOps.INSTANCE, list).result().get());
+    }
+
+    @Test
+    void testDirectBuffer() {
+        var codec = TypeCodec.of(Sample.class);
+        var first = codec.encodeStart(BinaryOps.INSTANCE, sample()).result().get();
+        var second = Codec.STRING.encodeStart(BinaryOps.INSTANCE, "second").result().get();
+        var direct = ByteBuffer.allocateDirect(first.remaining() + second.remaining());
+        direct.put(first.duplicate()).put(second.duplicate()).flip();
+        var value = BinaryOps.INSTANCE.read(direct);
+        assertEquals(first.remaining(), direct.position());
+        assertSample(sample(), codec.parse(BinaryOps.INSTANCE, value).result().get());
+        assertEquals("second", Codec.STRING.parse(BinaryOps.INSTANCE, BinaryOps.INSTANCE.read(direct)).result().get());
+        assertTrue(!direct.hasRemaining());
+    }
+
+    @Test
+    void testMerge() {
+        var ops = BinaryOps.INSTANCE;
+        var map = ops.mergeToMap(ops.empty(), ops.createString("a"), ops.createInt(1)).result().get();
+        map = ops.mergeToMap(map, ops.createString("b"), ops.createInt(2)).result().get();
+        map = ops.mergeToMap(map, ops.createString("a"), ops.createInt(3)).result().get();
+        assertEquals(Map.of("a", 3, "b", 2), ops.convertTo(JavaPrimitiveOps.INSTANCE, map));
+        assertEquals(Map.of("b", 2), ops.convertTo(JavaPrimitiveOps.INSTANCE, ops.remove(map, "a")));
+        var list = ops.mergeToList(ops.emptyList(), ops.createInt(1)).result().get();
+        assertEquals(List.of(1), ops.convertTo(JavaPrimitiveOps.INSTANCE, list));
+        assertTrue(ops.mergeToList(ops.createInt(1), ops.createInt(1)).error().isPresent());
+        assertTrue(ops.mergeToMap(ops.createInt(1), ops.createString("a"), ops.createInt(1)).error().isPresent());
+    }
+
+    @Test
+    void testMalformed() {
+        var ops = BinaryOps.INSTANCE;
+        for (TypeCodec.Mode mode : TypeCodec.Mode.values()) {
+            var codec = TypeCodec.of(Sample.class, mode);
+            var encoded = codec.encodeStart(ops, sample()).result().get();
+            for (int length = 0; length < encoded.remaining(); length++) {
+                var truncated = encoded.duplicate().limit(length);
+                assertTrue(codec.parse(ops, truncated).error().isPresent(), mode + " truncated to " + length);
+            }
+            for (int i = 0; i < encoded.remaining(); i++) {
+                for (int value : new int[]{0x00, 0x01, 0x7F, 0x80, 0xFF}) {
+                    var corrupt = ByteBuffer.allocate(encoded.remaining()).put(encoded.duplicate()).flip();
+                    corrupt.put(i, (byte) value);
+                    // decoding may still succeed when the corruption hits a value, but must never throw
+                    codec.parse(ops, corrupt);
+                }
+            }
+        }
+        var ints = ops.createIntList(IntStream.of(1));
+        var huge = ByteBuffer.allocate(6).put(ints.get(0)).put(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07}).flip();
+        assertTrue(ops.getIntStream(huge).error().isPresent());
+        assertTrue(TypeCodec.of(int[].class).parse(ops, huge).error().isPresent());
+        var key = ops.createString("key");
+        var map = ops.createMap(Map.of(key, ops.createInt(1)));
+        var odd = ByteBuffer.allocate(2 + key.remaining()).put(map.get(0)).put((byte) key.remaining()).put(key.duplicate()).flip();
+        assertTrue(ops.getMapValues(odd).error().isPresent());
+        assertTrue(ops.getMap(odd).error().isPresent());
+        var truncatedByte = ops.createByte((byte) 1).limit(1);
+        assertTrue(ops.getBooleanValue(truncatedByte).error().isPresent());
+        // 2^29 longs, a length that wraps to zero in int arithmetic
+        var longs = ops.createLongList(LongStream.of(1));
+        var wrapped = ByteBuffer.allocate(6).put(longs.get(0)).put(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x02}).flip();
+        assertThrows(BufferUnderflowException.class, () -> ops.read(wrapped));
+    }
+}
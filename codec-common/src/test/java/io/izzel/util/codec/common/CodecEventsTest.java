@@ -0,0 +1,53 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.JsonParser;
+import com.mojang.serialization.JsonOps;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodecEventsTest {
+
+    public record Outer(String name, Inner inner) {}
+
+    public record Inner(int value) {}
+
+    @Test
+    void testEvents() throws IOException {
+        List<RecordedEvent> events;
+        try (var recording = new Recording()) {
+            recording.enable("io.izzel.codec.Resolution");
+            recording.enable("io.izzel.codec.Scan");
+            recording.enable("io.izzel.codec.DecodeFailure");
+            recording.enable("io.izzel.codec.Operation").withThreshold(Duration.ZERO);
+            recording.start();
+            var result = TypeCodec.of(Outer.class).parse(JsonOps.INSTANCE, JsonParser.parseString("""
+                {"name":"a","inner":{"value":"x"}}"""));
+            assertTrue(result.error().isPresent());
+            recording.stop();
+            var file = Files.createTempFile("codec", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.delete(file);
+            }
+        }
+        assertTrue(events.stream().anyMatch(it -> it.getEventType().getName().equals("io.izzel.codec.Resolution")
+            && it.getString("type").equals(Outer.class.getName())), events::toString);
+        assertTrue(events.stream().anyMatch(it -> it.getEventType().getName().equals("io.izzel.codec.Scan")
+            && it.getString("type").equals(Inner.class.getName()) && it.getString("phase").equals("layout")), events::toString);
+        assertTrue(events.stream().anyMatch(it -> it.getEventType().getName().equals("io.izzel.codec.Operation")
+            && it.getString("type").equals(Outer.class.getName()) && !it.getBoolean("success")), events::toString);
+        assertTrue(events.stream().anyMatch(it -> it.getEventType().getName().equals("io.izzel.codec.DecodeFailure")
+            && it.getString("type").equals(Outer.class.getName()) && it.getString("path").equals("inner.value")), events::toString);
+    }
+}
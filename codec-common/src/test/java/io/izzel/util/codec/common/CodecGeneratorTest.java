@@ -0,0 +1,102 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.JsonParser;
+import com.mojang.serialization.JsonOps;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodecGeneratorTest {
+
+    public record PrimitiveRecord(boolean booleanValue, byte byteValue, short shortValue, int intValue,
+                                  long longValue, float floatValue, double doubleValue, String stringValue) {}
+
+    @Test
+    void testPrimitiveRecord() {
+        var record = new PrimitiveRecord(true, (byte) 1, (short) 2, 3, 4L, 5F, 6D, "7");
+        var codec = TypeCodec.of(PrimitiveRecord.class, TypeCodec.Mode.GENERATED);
+        assertTrue(codec.toString().startsWith("GeneratedMapCodec"), codec.toString());
+        var result = codec.encodeStart(JsonOps.INSTANCE, record);
+        assertTrue(result.result().isPresent(), "Result is " + result.error());
+        assertEquals(TypeCodec.of(PrimitiveRecord.class).encodeStart(JsonOps.INSTANCE, record).result().get(), result.result().get());
+        var parse = codec.parse(JsonOps.INSTANCE, result.result().get());
+        assertTrue(parse.result().isPresent(), "Result is " + parse.error());
+        assertEquals(record, parse.result().get());
+        var javaResult = codec.encodeStart(JavaPrimitiveOps.INSTANCE, record);
+        assertTrue(javaResult.result().isPresent(), "Result is " + javaResult.error());
+        assertEquals(record, codec.parse(JavaPrimitiveOps.INSTANCE, javaResult.result().get()).result().get());
+    }
+
+    public record NestedRecord(String name, List<TypeCodecTest.SimpleRecord> records, Map<String, NestedRecord> children) {}
+
+    @Test
+    void testNestedRecord() {
+        var record = new NestedRecord("root", List.of(new TypeCodecTest.SimpleRecord(42, "42")),
+            Map.of("child", new NestedRecord("child", List.of(), Map.of())));
+        var codec = TypeCodec.of(NestedRecord.class, TypeCodec.Mode.GENERATED);
+        var result = codec.encodeStart(JsonOps.INSTANCE, record);
+        assertTrue(result.result().isPresent(), "Result is " + result.error());
+        assertEquals(result.result().get().toString(), """
+            {"name":"root","records":[{"intValue":42,"stringValue":"42"}],"children":{"child":{"name":"child","records":[],"children":{}}}}""");
+        var parse = codec.parse(JsonOps.INSTANCE, result.result().get());
+        assertTrue(parse.result().isPresent(), "Result is " + parse.error());
+        assertEquals(record, parse.result().get());
+    }
+
+    @Test
+    void testPojo() {
+        var pojo = new TypeCodecTest.SimpleImmutablePojo(42, "42");
+        var codec = TypeCodec.of(TypeCodecTest.SimpleImmutablePojo.class, TypeCodec.Mode.GENERATED);
+        var result = codec.encodeStart(JsonOps.INSTANCE, pojo);
+        assertTrue(result.result().isPresent(), "Result is " + result.error());
+        assertEquals(result.result().get().toString(), """
+            {"intValue":42,"stringValue":"42"}""");
+        var parse = codec.parse(JsonOps.INSTANCE, result.result().get());
+        assertTrue(parse.result().isPresent(), "Result is " + parse.error());
+        assertEquals(pojo, parse.result().get());
+    }
+
+    @Test
+    void testPublicField() {
+        var pojo = new TypeCodecTest.SimplePublicField(42L, "42");
+        var codec = TypeCodec.of(TypeCodecTest.SimplePublicField.class, TypeCodec.Mode.GENERATED);
+        var parse = codec.parse(JsonOps.INSTANCE, codec.encodeStart(JsonOps.INSTANCE, pojo).result().get());
+        assertTrue(parse.result().isPresent(), "Result is " + parse.error());
+        assertEquals(pojo.longValue, parse.result().get().longValue);
+        assertEquals(pojo.stringValue, parse.result().get().stringValue);
+    }
+
+    enum Visibility {
+        INTERNAL, SHARED
+    }
+
+    public record HiddenComponent(String name, Visibility visibility) {}
+
+    @Test
+    void testNonPublicFallback() {
+        var record = new HiddenComponent("hidden", Visibility.SHARED);
+        var codec = TypeCodec.of(HiddenComponent.class, TypeCodec.Mode.GENERATED);
+        assertTrue(codec.toString().startsWith("ClassMapCodec"), codec.toString());
+        var result = codec.encodeStart(JsonOps.INSTANCE, record);
+        assertTrue(result.result().isPresent(), "Result is " + result.error());
+        assertEquals(result.result().get().toString(), """
+            {"name":"hidden","visibility":"SHARED"}""");
+        var parse = codec.parse(JsonOps.INSTANCE, result.result().get());
+        assertTrue(parse.result().isPresent(), "Result is " + parse.error());
+        assertEquals(record, parse.result().get());
+    }
+
+    @Test
+    void testDecodeError() {
+        var codec = TypeCodec.of(TypeCodecTest.SimpleRecord.class, TypeCodec.Mode.GENERATED);
+        var parse = codec.parse(JsonOps.INSTANCE, new JsonParser().parse("""
+            {"intValue":"42","stringValue":"42"}"""));
+        assertTrue(parse.error().isPresent());
+        assertEquals(TypeCodec.of(TypeCodecTest.SimpleRecord.class).parse(JsonOps.INSTANCE, new JsonParser().parse("""
+            {"intValue":"42","stringValue":"42"}""")).error().get().message(), parse.error().get().message());
+    }
+}
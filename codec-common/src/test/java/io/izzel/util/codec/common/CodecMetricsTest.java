@@ -0,0 +1,60 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.JsonParser;
+import com.mojang.serialization.JsonOps;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodecMetricsTest {
+
+    public record Measured(String name, List<String> tags) {}
+
+    @Test
+    void testInstrument() {
+        var type = TypeCodec.parameterized(List.class, Measured.class);
+        var codec = CodecMetrics.instrument(type, TypeCodec.<List<Measured>>of(type));
+        var value = List.of(new Measured("a", List.of("x")), new Measured("b", List.of()));
+        for (int i = 0; i < 10; i++) {
+            var encoded = codec.encodeStart(JsonOps.INSTANCE, value).result().orElseThrow();
+            assertEquals(value, codec.parse(JsonOps.INSTANCE, encoded).result().orElseThrow());
+        }
+        assertTrue(codec.parse(JsonOps.INSTANCE, JsonParser.parseString("""
+            [{"name":"a"}]""")).error().isPresent());
+
+        var snapshot = CodecMetrics.snapshot(type);
+        assertEquals(type, snapshot.type());
+        assertEquals(10, snapshot.encodes());
+        assertEquals(0, snapshot.encodeFailures());
+        assertEquals(11, snapshot.decodes());
+        assertEquals(1, snapshot.decodeFailures());
+        assertEquals(40, snapshot.elements());
+        assertEquals(10, snapshot.encodeLatency().count());
+        assertEquals(11, snapshot.decodeLatency().count());
+        assertTrue(snapshot.decodeLatency().quantileNanos(0.5) <= snapshot.decodeLatency().quantileNanos(1));
+        assertTrue(snapshot.decodeLatency().totalNanos() > 0);
+        assertEquals(snapshot.toString(), CodecMetrics.snapshot().get(type).toString());
+
+        CodecMetrics.reset();
+        assertEquals(0, CodecMetrics.snapshot(type).decodes());
+        assertEquals(0, CodecMetrics.snapshot(type).decodeLatency().quantileNanos(0.99));
+    }
+
+    @Test
+    void testHistogramBuckets() {
+        assertEquals(0, CodecMetrics.Histogram.bucket(0));
+        assertEquals(1, CodecMetrics.Histogram.bucket(1));
+        assertEquals(11, CodecMetrics.Histogram.bucket(1024));
+        assertTrue(1024 < CodecMetrics.Histogram.upperBound(11));
+        assertEquals(Long.MAX_VALUE, CodecMetrics.Histogram.upperBound(CodecMetrics.Histogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void testDisabledByDefault() {
+        assertFalse(TypeCodec.of(Measured.class) instanceof MeteredCodec);
+    }
+}
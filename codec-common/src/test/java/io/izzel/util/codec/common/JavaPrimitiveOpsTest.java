@@ -1,15 +1,24 @@
 package io.izzel.util.codec.common;
 
 import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.JsonOps;
 import org.junit.jupiter.api.Test;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class JavaPrimitiveOpsTest {
@@ -54,7 +63,12 @@ class JavaPrimitiveOpsTest {
     void testNonDfuPrimitiveArray() {
         var shorts = new short[]{42};
         var result = Codec.SHORT.listOf().parse(JavaPrimitiveOps.INSTANCE, shorts);
-        assertTrue(result.error().isPresent());
+        assertTrue(result.result().isPresent(), "Result is " + result.error());
+        assertEquals(List.of((short) 42), result.result().get());
+        var doubles = new double[]{4.2};
+        var convert = JavaPrimitiveOps.INSTANCE.convertTo(JavaPrimitiveOps.INSTANCE, doubles);
+        assertArrayEquals(doubles, (double[]) convert);
+        assertTrue(convert != doubles);
     }
 
     @Test
@@ -69,6 +83,48 @@ class JavaPrimitiveOpsTest {
         assertEquals(ints, intResult.result().get());
     }
 
+    @Test
+    void testLargeList() {
+        var list = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+        var result = Codec.INT.listOf().encodeStart(JavaPrimitiveOps.INSTANCE, list);
+        assertTrue(result.result().isPresent(), "Result is " + result.error());
+        assertEquals(list, result.result().get());
+    }
+
+    @Test
+    void testListBuilder() {
+        var builder = JavaPrimitiveOps.INSTANCE.listBuilder();
+        var first = builder.add(1).add(DataResult.success(2)).build(List.of(0));
+        assertEquals(List.of(0, 1, 2), first.result().get());
+        var second = builder.add(3).build(JavaPrimitiveOps.INSTANCE.emptyList());
+        assertEquals(List.of(3), second.result().get());
+        var error = builder.add(DataResult.error("error")).build(JavaPrimitiveOps.INSTANCE.empty());
+        assertTrue(error.error().isPresent());
+        assertTrue(builder.build("not a list").error().isPresent());
+    }
+
+    @Test
+    void testMapBuilder() {
+        var builder = JavaPrimitiveOps.INSTANCE.mapBuilder();
+        var first = builder.add("b", 2).add("a", DataResult.success(1)).build(Map.of("c", 3));
+        assertEquals(List.of("c", "b", "a"), List.copyOf(((Map<?, ?>) first.result().get()).keySet()));
+        var second = builder.add("d", 4).build(JavaPrimitiveOps.INSTANCE.emptyMap());
+        assertEquals(Map.of("d", 4), second.result().get());
+        assertTrue(builder.add((Object) null, 1).build(JavaPrimitiveOps.INSTANCE.empty()).error().isPresent());
+        assertTrue(builder.add("e", 5).build(List.of()).error().isPresent());
+    }
+
+    @Test
+    void testMergeNullHostileMaps() {
+        var ops = JavaPrimitiveOps.INSTANCE;
+        assertEquals(Map.of("a", 1, "b", 2), ops.mergeToMap(Map.of("a", 1), Map.<Object, Object>of("b", 2)).result().orElseThrow());
+        assertEquals(Map.of("b", 2), ops.mergeToMap(null, new ConcurrentHashMap<Object, Object>(Map.of("b", 2))).result().orElseThrow());
+        assertEquals(Map.of("b", 2), ops.mergeToMap(null, new TreeMap<Object, Object>(Map.of("b", 2))).result().orElseThrow());
+        var withNull = new HashMap<Object, Object>();
+        withNull.put(null, 1);
+        assertTrue(ops.mergeToMap(null, withNull).error().isPresent());
+    }
+
     @Test
     void testComplexConvert() {
         var basicDataTypes = Map.ofEntries(
@@ -91,4 +147,88 @@ class JavaPrimitiveOpsTest {
         var convert = JavaPrimitiveOps.INSTANCE.convertTo(JavaPrimitiveOps.INSTANCE, map);
         assertEquals(map, convert);
     }
+
+    @Test
+    void testConvertToJson() {
+        var map = new LinkedHashMap<String, Object>();
+        map.put("int", 42);
+        map.put("double", 4.2D);
+        map.put("boolean", true);
+        map.put("string", "42");
+        map.put("ints", new int[]{4, 2});
+        map.put("bytes", new byte[]{4, 2});
+        map.put("doubles", new double[]{4.2});
+        map.put("list", List.of(Map.of("key", 42L), List.of()));
+        var json = JavaPrimitiveOps.INSTANCE.convertTo(JsonOps.INSTANCE, map);
+        assertEquals("""
+            {"int":42,"double":4.2,"boolean":true,"string":"42","ints":[4,2],"bytes":[4,2],"doubles":[4.2],"list":[{"key":42},[]]}""", json.toString());
+        assertEquals(json, JavaPrimitiveOps.INSTANCE.convertTo(JsonOps.COMPRESSED, map));
+        assertEquals(map.keySet(), ((Map<?, ?>) JsonOps.INSTANCE.convertTo(JavaPrimitiveOps.INSTANCE, json)).keySet());
+    }
+
+    @Test
+    void testConvertDeeplyNested() {
+        Object nested = List.of();
+        for (int i = 0; i < 100_000; i++) {
+            nested = i % 2 == 0 ? List.of(nested) : Map.of("child", nested);
+        }
+        var json = JavaPrimitiveOps.INSTANCE.convertTo(JsonOps.INSTANCE, nested);
+        var java = JavaPrimitiveOps.INSTANCE.convertTo(JavaPrimitiveOps.INSTANCE, nested);
+        var depth = 0;
+        while (json.isJsonArray() && json.getAsJsonArray().size() > 0 || json.isJsonObject()) {
+            json = json.isJsonArray() ? json.getAsJsonArray().get(0) : json.getAsJsonObject().get("child");
+            java = java instanceof List ? ((List<?>) java).get(0) : ((Map<?, ?>) java).get("child");
+            depth++;
+        }
+        assertEquals(100_000, depth);
+        assertEquals(List.of(), java);
+    }
+
+    @Test
+    void testConvertUnknown() {
+        assertThrows(IllegalArgumentException.class, () -> JavaPrimitiveOps.INSTANCE.convertTo(JsonOps.INSTANCE, List.of(new Object())));
+    }
+
+    @Test
+    void testCompactMaps() {
+        var codec = TypeCodec.of(TypeCodecTest.SimpleRecord.class);
+        var first = codec.encodeStart(JavaPrimitiveOps.COMPACT, new TypeCodecTest.SimpleRecord(42, "42")).result().orElseThrow();
+        var second = codec.encodeStart(JavaPrimitiveOps.COMPACT, new TypeCodecTest.SimpleRecord(24, "24")).result().orElseThrow();
+        assertEquals(Map.of("intValue", 42, "stringValue", "42"), first);
+        assertEquals(List.of("intValue", "stringValue"), List.copyOf(((Map<?, ?>) first).keySet()));
+        assertSame(((CompactMap) first).keys, ((CompactMap) second).keys);
+        assertThrows(UnsupportedOperationException.class, () -> ((Map<Object, Object>) first).put("intValue", 0));
+        assertEquals(new TypeCodecTest.SimpleRecord(24, "24"), codec.parse(JavaPrimitiveOps.COMPACT, second).result().orElseThrow());
+        assertEquals(Map.of("stringValue", "42"), JavaPrimitiveOps.COMPACT.remove(first, "intValue"));
+        assertEquals(Map.of("intValue", 42, "stringValue", "42"), first);
+
+        // wide enough to be looked up through an index, which all maps of the record share with their keys
+        var wide = TypeCodec.of(Nine.class);
+        var one = (CompactMap) wide.encodeStart(JavaPrimitiveOps.COMPACT, new Nine(1, 2, 3, 4, 5, 6, 7, 8, 9)).result().orElseThrow();
+        var other = (CompactMap) wide.encodeStart(JavaPrimitiveOps.COMPACT, new Nine(9, 8, 7, 6, 5, 4, 3, 2, 1)).result().orElseThrow();
+        assertSame(one.keys, other.keys);
+        assertEquals(new Nine(9, 8, 7, 6, 5, 4, 3, 2, 1), wide.parse(JavaPrimitiveOps.COMPACT, other).result().orElseThrow());
+        assertEquals(9, one.get("i"));
+    }
+
+    public record Nine(int a, int b, int c, int d, int e, int f, int g, int h, int i) {}
+
+    @Test
+    void testCompactMapBuilder() {
+        var map = IntStream.range(0, 100).boxed().collect(Collectors.toMap(String::valueOf, i -> i, (a, b) -> a, LinkedHashMap::new));
+        var codec = Codec.unboundedMap(Codec.STRING, Codec.INT);
+        var encoded = codec.encodeStart(JavaPrimitiveOps.COMPACT, map).result().orElseThrow();
+        assertTrue(encoded instanceof CompactMap);
+        assertEquals(map, encoded);
+        assertEquals(List.copyOf(map.keySet()), List.copyOf(((Map<?, ?>) encoded).keySet()));
+        assertEquals(map, codec.parse(JavaPrimitiveOps.COMPACT, encoded).result().orElseThrow());
+        var json = JavaPrimitiveOps.INSTANCE.convertTo(JsonOps.INSTANCE, map);
+        var converted = JsonOps.INSTANCE.convertTo(JavaPrimitiveOps.COMPACT, json);
+        assertTrue(converted instanceof CompactMap);
+        assertEquals(JsonOps.INSTANCE.convertTo(JavaPrimitiveOps.INSTANCE, json), converted);
+        var builder = JavaPrimitiveOps.COMPACT.mapBuilder();
+        builder.add("a", 1).add("b", 2).add("a", 3);
+        assertEquals(List.of("a", "b"), List.copyOf(((Map<?, ?>) builder.build((Object) null).result().orElseThrow()).keySet()));
+        assertEquals(Map.of("a", 3, "b", 2, "c", 4), JavaPrimitiveOps.COMPACT.mergeToMap(builder.add("a", 3).add("b", 2).build((Object) null).result().orElseThrow(), "c", 4).result().orElseThrow());
+    }
 }
@@ -0,0 +1,158 @@
+package io.izzel.util.codec.common;
+
+import com.mojang.serialization.JsonOps;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedBinaryOpsTest {
+
+    public record Snapshot(String name, Map<String, Item> items, List<Item> history) {}
+
+    public record Item(String label, long stamp, int[] counts) {}
+
+    private static Snapshot snapshot() {
+        var items = IntStream.range(0, 500).boxed().collect(Collectors.toMap(i -> "item" + i,
+            i -> new Item("\u00e9" + i, i * 1_000_000_007L, new int[]{i, -i}), (a, b) -> a, LinkedHashMap::new));
+        return new Snapshot("snapshot", items, List.copyOf(items.values()).subList(0, 50));
+    }
+
+    private static void assertSnapshot(Snapshot expected, Snapshot actual) {
+        assertEquals(expected.name(), actual.name());
+        assertEquals(expected.items().keySet(), actual.items().keySet());
+        for (var key : expected.items().keySet()) {
+            assertItem(expected.items().get(key), actual.items().get(key));
+        }
+        assertEquals(expected.history().size(), actual.history().size());
+        for (int i = 0; i < expected.history().size(); i++) {
+            assertItem(expected.history().get(i), actual.history().get(i));
+        }
+    }
+
+    private static void assertItem(Item expected, Item actual) {
+        assertEquals(expected.label(), actual.label());
+        assertEquals(expected.stamp(), actual.stamp());
+        assertArrayEquals(expected.counts(), actual.counts());
+    }
+
+    private static Path write(ByteBuffer buffer) throws IOException {
+        var file = Files.createTempFile("mapped", ".bin");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        return file;
+    }
+
+    @Test
+    void testDecode() throws IOException {
+        var snapshot = snapshot();
+        var encoded = TypeCodec.of(Snapshot.class).encodeStart(BinaryOps.INSTANCE, snapshot).result().orElseThrow();
+        var file = write(encoded);
+        try {
+            // small segments, so values cross segment boundaries
+            var root = MappedBinaryOps.map(file, 6);
+            var result = TypeCodec.of(Snapshot.class).parse(MappedBinaryOps.INSTANCE, root);
+            assertTrue(result.result().isPresent(), () -> "Result is " + result.error());
+            assertSnapshot(snapshot, result.result().get());
+            assertEquals(BinaryOps.INSTANCE.convertTo(JsonOps.INSTANCE, encoded), MappedBinaryOps.INSTANCE.convertTo(JsonOps.INSTANCE, root));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testStreamed() throws IOException {
+        var snapshot = snapshot();
+        var file = Files.createTempFile("mapped", ".bin");
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                TypeCodec.writer(Snapshot.class).write(snapshot, out);
+            }
+            var result = TypeCodec.of(Snapshot.class).parse(MappedBinaryOps.INSTANCE, MappedBinaryOps.map(file, 8));
+            assertTrue(result.result().isPresent(), () -> "Result is " + result.error());
+            assertSnapshot(snapshot, result.result().get());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testSubtree() throws IOException {
+        var snapshot = snapshot();
+        var file = Files.createTempFile("mapped", ".bin");
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                TypeCodec.writer(Snapshot.class).write(snapshot, out);
+            }
+            var ops = MappedBinaryOps.INSTANCE;
+            var root = ops.getMap(MappedBinaryOps.map(file)).result().orElseThrow();
+            var items = ops.getMap(root.get("items")).result().orElseThrow();
+            var result = TypeCodec.of(Item.class).parse(ops, items.get("item420"));
+            assertTrue(result.result().isPresent(), () -> "Result is " + result.error());
+            assertItem(snapshot.items().get("item420"), result.result().get());
+            assertEquals("snapshot", ops.getStringValue(root.get("name")).result().orElseThrow());
+            assertEquals(50, ops.getStream(root.get("history")).result().orElseThrow().count());
+            assertNull(items.get("missing"));
+            assertFalse(ops.getNumberValue(root.get("name")).result().isPresent());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testMerge() throws IOException {
+        var file = write(BinaryOps.INSTANCE.createMap(Map.of(BinaryOps.INSTANCE.createString("key"), BinaryOps.INSTANCE.createInt(42))));
+        try {
+            var ops = MappedBinaryOps.INSTANCE;
+            var merged = ops.mergeToMap(MappedBinaryOps.map(file), ops.createString("other"), ops.createString("42")).result().orElseThrow();
+            assertEquals(Map.of("key", 42, "other", "42"), ops.convertTo(JavaPrimitiveOps.INSTANCE, merged));
+            assertEquals(Map.of("other", "42"), ops.convertTo(JavaPrimitiveOps.INSTANCE, ops.remove(merged, "key")));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testTruncated() throws IOException {
+        var codec = TypeCodec.of(Snapshot.class);
+        var prefixed = codec.encodeStart(BinaryOps.INSTANCE, snapshot()).result().orElseThrow();
+        var out = new ByteArrayOutputStream();
+        TypeCodec.writer(Snapshot.class).write(snapshot(), out);
+        for (var encoded : List.of(prefixed, ByteBuffer.wrap(out.toByteArray()))) {
+            int size = encoded.remaining();
+            for (int length = 0; length < size; length += Math.max(1, size / 200)) {
+                var file = write(encoded.duplicate().limit(encoded.position() + length));
+                try {
+                    var ops = MappedBinaryOps.INSTANCE;
+                    var root = MappedBinaryOps.map(file, 8);
+                    // errors are reported as results, whichever container the file ends in
+                    assertTrue(codec.parse(ops, root).error().isPresent(), "Truncated to " + length);
+                    var map = ops.getMap(root).result();
+                    if (map.isPresent()) {
+                        assertTrue(ops.getStream(map.get().get("history")).result().map(it -> it.count()).orElse(0L) <= 50);
+                        map.get().get("missing");
+                        map.get().entries().forEach(it -> ops.getStringValue(it.getFirst()));
+                    }
+                } finally {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
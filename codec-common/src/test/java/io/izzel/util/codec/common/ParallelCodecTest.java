@@ -0,0 +1,93 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.JsonArray;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.JsonOps;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelCodecTest {
+
+    @Test
+    void testList() {
+        var list = new ArrayList<TypeCodecTest.SimpleRecord>();
+        for (int i = 0; i < 10000; i++) {
+            list.add(new TypeCodecTest.SimpleRecord(i, "record" + i));
+        }
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var codec = TypeCodec.parallelListOf(TypeCodec.of(TypeCodecTest.SimpleRecord.class), 100, executor);
+            var sequential = TypeCodec.of(TypeCodecTest.SimpleRecord.class).listOf();
+            var encoded = codec.encodeStart(JsonOps.INSTANCE, list);
+            assertTrue(encoded.result().isPresent(), "Result is " + encoded.error());
+            assertEquals(sequential.encodeStart(JsonOps.INSTANCE, list).result().get(), encoded.result().get());
+            assertEquals(list, codec.parse(JsonOps.INSTANCE, encoded.result().get()).result().get());
+            assertEquals(list.subList(0, 10), codec.parse(JsonOps.INSTANCE, sequential.encodeStart(JsonOps.INSTANCE, list.subList(0, 10)).result().get()).result().get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testFirstError() {
+        var codec = TypeCodec.parallelListOf(Codec.INT, 10, ForkJoinPool.commonPool());
+        for (int attempt = 0; attempt < 10; attempt++) {
+            var array = new JsonArray();
+            for (int i = 0; i < 5000; i++) {
+                if (i == 1234 || i == 4321) {
+                    array.add("bad" + i);
+                } else {
+                    array.add(i);
+                }
+            }
+            var result = codec.parse(JsonOps.INSTANCE, array);
+            assertTrue(result.error().isPresent());
+            assertEquals(Codec.INT.parse(JsonOps.INSTANCE, array.get(1234)).error().get().message(), result.error().get().message());
+        }
+    }
+
+    @Test
+    void testMap() {
+        var map = new LinkedHashMap<String, TypeCodecTest.SimpleRecord>();
+        for (int i = 0; i < 5000; i++) {
+            map.put("key" + i, new TypeCodecTest.SimpleRecord(i, "record" + i));
+        }
+        var codec = TypeCodec.parallelMapOf(Codec.STRING, TypeCodec.of(TypeCodecTest.SimpleRecord.class));
+        var encoded = codec.encodeStart(JsonOps.INSTANCE, map).result().get();
+        var decoded = codec.parse(JsonOps.INSTANCE, encoded).result().get();
+        assertEquals(map, decoded);
+        assertEquals(List.copyOf(map.keySet()), List.copyOf(decoded.keySet()));
+    }
+
+    @Test
+    void testNestedOnBoundedExecutor() {
+        var executor = Executors.newFixedThreadPool(1);
+        try {
+            var inner = TypeCodec.parallelListOf(Codec.INT, 10, executor);
+            var codec = TypeCodec.parallelListOf(inner, 2, executor);
+            var list = new ArrayList<List<Integer>>();
+            // enough elements on both levels for several chunks each
+            for (int i = 0; i < 600; i++) {
+                var elements = new ArrayList<Integer>();
+                for (int j = 0; j < 600; j++) {
+                    elements.add(i + j);
+                }
+                list.add(elements);
+            }
+            var encoded = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> codec.encodeStart(JsonOps.INSTANCE, list).result().get());
+            assertEquals(list, assertTimeoutPreemptively(Duration.ofSeconds(30), () -> codec.parse(JsonOps.INSTANCE, encoded).result().get()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.izzel.util.codec.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PreloaderTest {
+
+    public record Catalog(String name, List<Product> products, Map<String, Product> featured) {}
+
+    public record Product(String sku, long price, Category category, String[] tags) {}
+
+    public record Category(String name, List<Category> children) {}
+
+    public record Task(String name, Runnable runnable) {}
+
+    @Test
+    void testPreload() {
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            var report = TypeCodec.preload(List.of(Catalog.class, Category.class), executor, TypeCodec.Mode.REFLECTION, 100);
+            assertTrue(report.failures().isEmpty(), () -> "Failures " + report.failures());
+            var types = new ArrayList<>(report.resolutionNanos().keySet());
+            assertTrue(types.contains(TypeCodec.parameterized(List.class, Product.class)));
+            assertTrue(types.contains(TypeCodec.parameterized(List.class, Category.class)));
+            assertTrue(types.indexOf(Category.class) < types.indexOf(Product.class));
+            assertTrue(types.indexOf(Product.class) < types.indexOf(Catalog.class));
+            assertEquals(types.size(), types.stream().distinct().count());
+            assertTrue(report.warmupNanos() > 0);
+            // the layouts scanned during discovery are the ones the codecs were created from
+            assertSame(ClassLayout.of(Product.class), TypeCodec.classCodec(Product.class).layout());
+            var catalog = new Catalog("catalog", List.of(new Product("sku", 42, new Category("tools", List.of()), new String[0])), Map.of());
+            var encoded = TypeCodec.of(Catalog.class).encodeStart(JavaPrimitiveOps.INSTANCE, catalog).result().orElseThrow();
+            var decoded = TypeCodec.of(Catalog.class).parse(JavaPrimitiveOps.INSTANCE, encoded).result().orElseThrow();
+            assertEquals("sku", decoded.products().get(0).sku());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testFailures() {
+        var report = TypeCodec.preload(List.of(Task.class), Runnable::run);
+        assertTrue(report.failures().containsKey(Runnable.class));
+        assertTrue(report.failures().containsKey(Task.class));
+        assertTrue(report.resolutionNanos().containsKey(String.class));
+    }
+}
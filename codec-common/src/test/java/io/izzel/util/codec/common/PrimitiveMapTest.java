@@ -0,0 +1,101 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.JsonParser;
+import com.mojang.serialization.JsonOps;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrimitiveMapTest {
+
+    public record Chunk(String name, int x) {}
+
+    public record Index(IntMap<Chunk> chunks, LongMap<String> entities) {}
+
+    @Test
+    void testIntMap() {
+        var random = new Random(42);
+        var map = new IntMap<String>();
+        var expected = new HashMap<Integer, String>();
+        for (int i = 0; i < 100_000; i++) {
+            // a narrow key range, so removals shift back colliding entries
+            int key = random.nextInt(4096) * 1024;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (var entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        var visited = new HashMap<Integer, String>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+        assertEquals(expected.size(), map.keys().length);
+        assertFalse(map.containsKey(1));
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(0));
+    }
+
+    @Test
+    void testLongMap() {
+        var map = new LongMap<String>(2);
+        for (long i = 0; i < 1000; i++) {
+            map.put(i << 32, "v" + i);
+        }
+        assertEquals(1000, map.size());
+        assertEquals("v999", map.get(999L << 32));
+        assertEquals("v0", map.remove(0));
+        assertNull(map.get(0));
+        assertEquals("default", map.getOrDefault(0, "default"));
+    }
+
+    private static Index index() {
+        var chunks = new IntMap<Chunk>();
+        chunks.put(-7, new Chunk("west", -7));
+        chunks.put(3, new Chunk("east", 3));
+        var entities = new LongMap<String>();
+        entities.put(Long.MAX_VALUE, "last");
+        return new Index(chunks, entities);
+    }
+
+    @Test
+    void testCodec() {
+        var index = index();
+        var codec = TypeCodec.of(Index.class);
+        var json = codec.encodeStart(JsonOps.INSTANCE, index).result().orElseThrow();
+        var entities = JsonParser.parseString("""
+            {"keys":[9223372036854775807],"values":["last"]}""");
+        assertEquals(entities, json.getAsJsonObject().get("entities"));
+        assertEquals(index, codec.parse(JsonOps.INSTANCE, json).result().orElseThrow());
+        var binary = codec.encodeStart(BinaryOps.INSTANCE, index).result().orElseThrow();
+        assertEquals(index, codec.parse(BinaryOps.INSTANCE, binary).result().orElseThrow());
+    }
+
+    @Test
+    void testJavaPrimitiveForm() {
+        var index = index();
+        var codec = TypeCodec.of(Index.class);
+        var encoded = (Map<?, ?>) codec.encodeStart(JavaPrimitiveOps.INSTANCE, index).result().orElseThrow();
+        var entities = (Map<?, ?>) encoded.get("entities");
+        assertArrayEquals(new long[]{Long.MAX_VALUE}, (long[]) entities.get("keys"));
+        assertEquals(index, codec.parse(JavaPrimitiveOps.INSTANCE, encoded).result().orElseThrow());
+        var mismatched = Map.of("keys", new int[]{1, 2}, "values", List.of(Map.of("name", "a", "x", 1)));
+        var result = TypeCodec.of(TypeCodec.parameterized(IntMap.class, Chunk.class)).parse(JavaPrimitiveOps.INSTANCE, mismatched);
+        assertTrue(result.error().isPresent());
+        var duplicate = Map.of("keys", new int[]{1, 1}, "values", List.of(Map.of("name", "a", "x", 1), Map.of("name", "b", "x", 1)));
+        assertTrue(TypeCodec.of(TypeCodec.parameterized(IntMap.class, Chunk.class)).parse(JavaPrimitiveOps.INSTANCE, duplicate).error().isPresent());
+    }
+}
@@ -2,16 +2,27 @@ package io.izzel.util.codec.common;
 
 import com.google.common.reflect.TypeToken;
 import com.google.gson.JsonParser;
+import com.mojang.serialization.Codec;
 import com.mojang.serialization.DataResult;
 import com.mojang.serialization.JsonOps;
+import com.mojang.serialization.MapCodec;
 import org.junit.jupiter.api.Test;
 
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -46,12 +57,44 @@ class TypeCodecTest {
         assertArrayEquals(bytes, bytesResult.result().get());
     }
 
+    @Test
+    void testPrimitiveArrayPassThrough() {
+        int[] ints = {42};
+        Codec<int[]> codec = TypeCodec.of(int[].class);
+        assertSame(ints, codec.encodeStart(JavaPrimitiveOps.INSTANCE, ints).result().get());
+        assertSame(ints, codec.parse(JavaPrimitiveOps.INSTANCE, ints).result().get());
+        var copy = codec.encodeStart(JavaPrimitiveOps.COPY_ARRAYS, ints).result().get();
+        assertTrue(copy != ints);
+        assertArrayEquals(ints, (int[]) copy);
+        var parsed = codec.parse(JavaPrimitiveOps.COPY_ARRAYS, ints).result().get();
+        assertTrue(parsed != ints);
+        assertArrayEquals(ints, parsed);
+        var json = TypeCodec.of(long[].class).encodeStart(JsonOps.INSTANCE, new long[]{42L});
+        assertEquals("[42]", json.result().get().toString());
+        assertArrayEquals(new byte[]{42}, TypeCodec.of(byte[].class).parse(JsonOps.INSTANCE, new JsonParser().parse("[42]")).result().get());
+    }
+
     @Test
     void testNonDfuPrimitiveArray() {
-        assertThrows(IllegalArgumentException.class, () -> TypeCodec.of(short[].class));
-        assertThrows(IllegalArgumentException.class, () -> TypeCodec.of(float[].class));
-        assertThrows(IllegalArgumentException.class, () -> TypeCodec.of(double[].class));
-        assertThrows(IllegalArgumentException.class, () -> TypeCodec.of(boolean[].class));
+        var arrays = List.of(new short[]{42}, new float[]{42F}, new double[]{42D}, new boolean[]{true}, new char[]{'4', '2'});
+        for (Object array : arrays) {
+            Codec<Object> codec = TypeCodec.of((Type) array.getClass());
+            var javaResult = codec.encodeStart(JavaPrimitiveOps.INSTANCE, array);
+            assertTrue(javaResult.result().isPresent(), "Result is " + javaResult.error());
+            assertSame(array, javaResult.result().get());
+            var jsonResult = codec.encodeStart(JsonOps.INSTANCE, array);
+            assertTrue(jsonResult.result().isPresent(), "Result is " + jsonResult.error());
+            var parse = codec.parse(JsonOps.INSTANCE, jsonResult.result().get());
+            assertTrue(parse.result().isPresent(), "Result is " + parse.error());
+            assertTrue(Objects.deepEquals(array, parse.result().get()));
+            var convert = JavaPrimitiveOps.INSTANCE.convertTo(JsonOps.INSTANCE, array);
+            assertEquals(jsonResult.result().get(), convert);
+        }
+        assertEquals("[1.5,2.5]", TypeCodec.of(double[].class).encodeStart(JsonOps.INSTANCE, new double[]{1.5, 2.5}).result().get().toString());
+        assertEquals("\"42\"", TypeCodec.of(char[].class).encodeStart(JsonOps.INSTANCE, new char[]{'4', '2'}).result().get().toString());
+        var error = TypeCodec.of(float[].class).parse(JsonOps.INSTANCE, new JsonParser().parse("""
+            [1, "2"]"""));
+        assertTrue(error.error().isPresent());
     }
 
     @Test
@@ -178,6 +221,18 @@ class TypeCodecTest {
         assertEquals(pojo, parse.result().get());
     }
 
+    @Test
+    void testRecordLayout() throws NoSuchMethodException {
+        var layout = Records.layout(GenericComponent.class);
+        assertEquals(1, layout.components().size());
+        var component = layout.components().get(0);
+        assertEquals("strings", component.name());
+        assertEquals(TypeCodec.parameterized(List.class, String.class), component.genericType());
+        assertEquals(GenericComponent.class.getMethod("strings"), component.getter());
+        assertEquals(GenericComponent.class.getConstructor(List.class), layout.constructor());
+        assertNull(Records.layout(SimpleImmutablePojo.class));
+    }
+
     @SuppressWarnings("ClassCanBeRecord")
     public static class SimpleAccessor {
 
@@ -228,6 +283,31 @@ class TypeCodecTest {
         assertEquals(pojo, parse.result().get());
     }
 
+    @SuppressWarnings("ClassCanBeRecord")
+    public static class SimplePublicField {
+
+        public final long longValue;
+        public final String stringValue;
+
+        public SimplePublicField(long longValue, String stringValue) {
+            this.longValue = longValue;
+            this.stringValue = stringValue;
+        }
+    }
+
+    @Test
+    void testPublicField() {
+        var pojo = new SimplePublicField(42L, "42");
+        var result = TypeCodec.of(SimplePublicField.class).encodeStart(JsonOps.INSTANCE, pojo);
+        assertTrue(result.result().isPresent(), "Result is " + result.error());
+        assertEquals(result.result().get().toString(), """
+            {"longValue":42,"stringValue":"42"}""");
+        var parse = TypeCodec.of(SimplePublicField.class).parse(JsonOps.INSTANCE, result.result().get());
+        assertTrue(parse.result().isPresent(), "Result is " + parse.error());
+        assertEquals(pojo.longValue, parse.result().get().longValue);
+        assertEquals(pojo.stringValue, parse.result().get().stringValue);
+    }
+
     public record GenericComponent(List<String> strings) {}
 
     @Test
@@ -241,4 +321,235 @@ class TypeCodecTest {
         assertTrue(parse.result().isPresent(), "Result is " + parse.error());
         assertEquals(component, parse.result().get());
     }
+
+    public record TreeNode(String name, List<TreeNode> children) {}
+
+    @Test
+    void testRecursiveRecord() {
+        var tree = new TreeNode("root", List.of(new TreeNode("leaf", List.of())));
+        var result = TypeCodec.of(TreeNode.class).encodeStart(JsonOps.INSTANCE, tree);
+        assertTrue(result.result().isPresent(), "Result is " + result.error());
+        assertEquals(result.result().get().toString(), """
+            {"name":"root","children":[{"name":"leaf","children":[]}]}""");
+        var parse = TypeCodec.of(TreeNode.class).parse(JsonOps.INSTANCE, result.result().get());
+        assertTrue(parse.result().isPresent(), "Result is " + parse.error());
+        assertEquals(tree, parse.result().get());
+    }
+
+    @Test
+    void testCachedCodec() {
+        assertSame(TypeCodec.of(SimpleRecord.class), TypeCodec.of(SimpleRecord.class));
+        var type = new TypeToken<Map<String, List<SimpleRecord>>>() {}.getType();
+        assertSame(TypeCodec.of(type), TypeCodec.of(type));
+    }
+
+    public record ConcurrentRecord(int intValue, List<TreeNode> nodes) {}
+
+    @Test
+    void testConcurrentResolution() throws Exception {
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var futures = new ArrayList<Future<Codec<ConcurrentRecord>>>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(executor.submit(() -> TypeCodec.of(ConcurrentRecord.class)));
+            }
+            var codec = futures.get(0).get();
+            for (var future : futures) {
+                assertSame(codec, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public static class ProvidedType {
+
+        private final int hidden;
+
+        public ProvidedType(int hidden) {
+            this.hidden = hidden;
+        }
+    }
+
+    @Test
+    void testRegisteredProvider() {
+        TypeCodec.register(new CodecProvider<ProvidedType>() {
+            @Override
+            public Class<ProvidedType> type() {
+                return ProvidedType.class;
+            }
+
+            @Override
+            public MapCodec<ProvidedType> create(TypeCodec.Mode mode) {
+                return Codec.INT.fieldOf("value").xmap(ProvidedType::new, it -> it.hidden);
+            }
+        });
+        var result = TypeCodec.of(ProvidedType.class).encodeStart(JsonOps.INSTANCE, new ProvidedType(42));
+        assertTrue(result.result().isPresent(), "Result is " + result.error());
+        assertEquals(result.result().get().toString(), """
+            {"value":42}""");
+    }
+
+    @Test
+    void testParameterizedType() {
+        var type = new TypeToken<Map<String, List<SimpleRecord>>>() {}.getType();
+        var parameterized = TypeCodec.parameterized(Map.class, String.class, TypeCodec.parameterized(List.class, SimpleRecord.class));
+        assertEquals(type, parameterized);
+        assertEquals(parameterized, type);
+        assertEquals(type.hashCode(), parameterized.hashCode());
+        assertSame(TypeCodec.of(type), TypeCodec.of(parameterized));
+    }
+
+    public record RenamedRecord(int intValue, String renamed) {}
+
+    @Test
+    void testPositional() {
+        var codec = TypeCodec.of(TypeCodec.parameterized(List.class, TreeNode.class), TypeCodec.Mode.POSITIONAL);
+        var tree = List.of(new TreeNode("root", List.of(new TreeNode("leaf", List.of()))));
+        var result = codec.encodeStart(JsonOps.INSTANCE, tree);
+        assertTrue(result.result().isPresent(), "Result is " + result.error());
+        assertTrue(!result.result().get().toString().contains("name"), result.result().get().toString());
+        assertEquals(tree, codec.parse(JsonOps.INSTANCE, result.result().get()).result().get());
+        var record = TypeCodec.of(SimpleRecord.class, TypeCodec.Mode.POSITIONAL).encodeStart(JavaPrimitiveOps.INSTANCE, new SimpleRecord(42, "42"));
+        assertEquals(List.of(42, "42"), ((List<?>) record.result().get()).subList(1, 3));
+        var renamed = TypeCodec.of(RenamedRecord.class, TypeCodec.Mode.POSITIONAL).parse(JavaPrimitiveOps.INSTANCE, record.result().get());
+        assertTrue(renamed.error().isPresent());
+        assertTrue(renamed.error().get().message().contains("fingerprint"), renamed.error().get().message());
+        var truncated = TypeCodec.of(SimpleRecord.class, TypeCodec.Mode.POSITIONAL).parse(JavaPrimitiveOps.INSTANCE, List.of(42));
+        assertTrue(truncated.error().isPresent());
+    }
+
+    public enum State {
+        PENDING, PAID, SHIPPED {
+            @Override
+            public String toString() {
+                return "shipped";
+            }
+        }, CANCELLED
+    }
+
+    public record Order(String id, State state, EnumSet<State> history, EnumMap<State, String> times, List<State> path) {}
+
+    @Test
+    void testEnums() {
+        var times = new EnumMap<State, String>(State.class);
+        times.put(State.SHIPPED, "30");
+        times.put(State.PENDING, "10");
+        var order = new Order("order", State.SHIPPED, EnumSet.of(State.PENDING, State.SHIPPED), times, List.of(State.PENDING, State.PAID));
+        var result = TypeCodec.of(Order.class).encodeStart(JsonOps.INSTANCE, order);
+        assertTrue(result.result().isPresent(), "Result is " + result.error());
+        assertEquals(JsonParser.parseString("""
+            {"id":"order","state":"SHIPPED","history":5,"times":{"PENDING":"10","SHIPPED":"30"},"path":["PENDING","PAID"]}"""), result.result().get());
+        var parse = TypeCodec.of(Order.class).parse(JsonOps.INSTANCE, result.result().get());
+        assertTrue(parse.result().isPresent(), "Result is " + parse.error());
+        assertEquals(order, parse.result().get());
+        assertEquals(State.SHIPPED, TypeCodec.of(State.SHIPPED.getClass()).parse(JavaPrimitiveOps.INSTANCE, 2).result().get());
+        var unknown = TypeCodec.of(State.class).parse(JavaPrimitiveOps.INSTANCE, "LOST");
+        assertTrue(unknown.error().get().message().contains("LOST"), unknown.error().get().message());
+        assertTrue(TypeCodec.of(TypeCodec.parameterized(EnumSet.class, State.class)).parse(JavaPrimitiveOps.INSTANCE, 16L).error().isPresent());
+    }
+
+    @Test
+    void testPositionalEnums() {
+        var order = new Order("order", State.PAID, EnumSet.noneOf(State.class), new EnumMap<>(State.class), List.of(State.CANCELLED));
+        var codec = TypeCodec.of(Order.class, TypeCodec.Mode.POSITIONAL);
+        var result = codec.encodeStart(JavaPrimitiveOps.INSTANCE, order);
+        assertTrue(result.result().isPresent(), "Result is " + result.error());
+        assertEquals(List.of("order", 1, 0L, Map.of(), List.of(3)), ((List<?>) result.result().get()).subList(1, 6));
+        assertEquals(order, codec.parse(JavaPrimitiveOps.INSTANCE, result.result().get()).result().get());
+        assertTrue(ClassLayout.of(Order.class).fingerprint() != ClassLayout.of(RenamedOrder.class).fingerprint());
+    }
+
+    public record RenamedOrder(String id, Status state, EnumSet<State> history, EnumMap<State, String> times, List<State> path) {}
+
+    public enum Status {
+        PENDING, PAID, SHIPPED, CANCELLED
+    }
+
+    @Test
+    void testCachedKeys() {
+        var layout = ClassLayout.of(SimpleRecord.class);
+        var codec = new ClassMapCodec<>(layout, layout.codecs(TypeCodec.Mode.REFLECTION));
+        var first = codec.keys(BinaryOps.INSTANCE).toList();
+        var second = codec.keys(BinaryOps.INSTANCE).toList();
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(first.get(i), second.get(i));
+        }
+        assertEquals(List.of("intValue", "stringValue"), codec.keys(JavaPrimitiveOps.INSTANCE).toList());
+        var record = new SimpleRecord(42, "42");
+        var encoded = codec.codec().encodeStart(BinaryOps.INSTANCE, record).result().get();
+        assertEquals(record, codec.codec().parse(BinaryOps.INSTANCE, encoded).result().get());
+        assertEquals(record, codec.codec().parse(BinaryOps.INSTANCE, encoded).result().get());
+    }
+
+    public static class ThrowingGetter {
+
+        private final int value;
+
+        public ThrowingGetter(int value) {
+            this.value = value;
+        }
+
+        public int getValue() {
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    @Test
+    void testComponentErrors() {
+        var result = TypeCodec.of(ThrowingGetter.class).encodeStart(JsonOps.INSTANCE, new ThrowingGetter(42));
+        assertTrue(result.error().isPresent());
+        assertTrue(result.error().get().message().contains("getValue()"), result.error().get().message());
+        assertTrue(result.error().get().message().endsWith(": broken"), result.error().get().message());
+        var parse = TypeCodec.of(SimpleRecord.class).parse(JsonOps.INSTANCE, JsonParser.parseString("""
+            {"intValue":42}"""));
+        assertEquals(Codec.STRING.parse(JsonOps.INSTANCE, null).error().get().message(), parse.error().get().message());
+    }
+
+    public interface Header {
+
+        String route();
+
+        int getPriority();
+
+        default boolean urgent() {
+            return getPriority() > 5;
+        }
+    }
+
+    public record Payload(String route, int priority, List<String> body) implements Header {
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+    }
+
+    @Test
+    void testLazy() {
+        var codec = TypeCodec.lazy(Header.class, Payload.class);
+        var json = JsonParser.parseString("""
+            {"route":"/a","priority":7,"body":42}""").getAsJsonObject();
+        var header = codec.parse(JsonOps.INSTANCE, json).result().orElseThrow();
+        assertEquals("/a", header.route());
+        json.addProperty("route", "/b");
+        json.addProperty("priority", 3);
+        // decoded once, later changes to the input are not seen
+        assertEquals("/a", header.route());
+        assertEquals(3, header.getPriority());
+        // only reads the priority, so the broken body is not decoded
+        assertFalse(header.urgent());
+        assertTrue(header instanceof LazyRecord);
+        assertThrows(IllegalStateException.class, ((LazyRecord<?>) header)::materialize);
+        assertTrue(codec.encodeStart(JsonOps.INSTANCE, header).error().isPresent());
+
+        json.add("body", JsonParser.parseString("[\"x\"]"));
+        var fixed = codec.parse(JsonOps.INSTANCE, json).result().orElseThrow();
+        assertEquals(new Payload("/b", 3, List.of("x")), ((LazyRecord<?>) fixed).materialize());
+        assertSame(((LazyRecord<?>) fixed).materialize(), ((LazyRecord<?>) fixed).materialize());
+        assertFalse(fixed.urgent());
+        assertEquals(json, codec.encodeStart(JsonOps.INSTANCE, fixed).result().orElseThrow());
+        assertEquals(json, codec.encodeStart(JsonOps.INSTANCE, new Payload("/b", 3, List.of("x"))).result().orElseThrow());
+        assertSame(codec, TypeCodec.lazy(Header.class, Payload.class));
+    }
 }
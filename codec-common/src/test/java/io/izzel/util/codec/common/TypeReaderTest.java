@@ -0,0 +1,110 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypeReaderTest {
+
+    public record Entry(String name, long id, float weight, boolean flag, int[] values, char[] tag,
+                        Map<String, List<String>> tags, Node tree) {}
+
+    public record Node(String name, List<Node> children) {}
+
+    private static Entry entry(int i) {
+        var tree = new Node("root", List.of(new Node("leaf" + i, List.of())));
+        return new Entry("entry" + i, Long.MAX_VALUE - i, 4.2F, i % 2 == 0, new int[]{i, -i}, new char[]{'a'},
+            Map.of("key", List.of("a", "b")), tree);
+    }
+
+    private static void assertEntry(Entry expected, Entry actual) {
+        assertEquals(expected.name(), actual.name());
+        assertEquals(expected.id(), actual.id());
+        assertEquals(expected.weight(), actual.weight());
+        assertEquals(expected.flag(), actual.flag());
+        assertArrayEquals(expected.values(), actual.values());
+        assertArrayEquals(expected.tag(), actual.tag());
+        assertEquals(expected.tags(), actual.tags());
+        assertEquals(expected.tree(), actual.tree());
+    }
+
+    @Test
+    void testJson() throws IOException {
+        var json = TypeCodec.of(Entry.class).encodeStart(com.mojang.serialization.JsonOps.INSTANCE, entry(42)).result().get();
+        var entry = TypeCodec.reader(Entry.class).read(new JsonReader(new StringReader(json.toString())));
+        assertEntry(entry(42), entry);
+    }
+
+    @Test
+    void testUnknownAndMissingKeys() throws IOException {
+        var reader = TypeCodec.reader(Node.class);
+        var node = reader.read(new JsonReader(new StringReader("""
+            {"extra": {"a": [1, 2]}, "children": [], "name": "root"}
+            """)));
+        assertEquals(new Node("root", List.of()), node);
+        assertThrows(IOException.class, () -> reader.read(new JsonReader(new StringReader("{\"name\": \"root\"}"))));
+        assertThrows(IOException.class, () -> reader.read(new JsonReader(new StringReader("{\"name\": []}"))));
+    }
+
+    @Test
+    void testJsonElements() throws IOException {
+        Type type = TypeCodec.parameterized(List.class, Entry.class);
+        var list = new ArrayList<Entry>();
+        for (int i = 0; i < 100; i++) {
+            list.add(entry(i));
+        }
+        var out = new StringWriter();
+        TypeCodec.<List<Entry>>writer(type).write(list, new JsonWriter(out));
+        var iterator = TypeCodec.reader(Entry.class).elements(new JsonReader(new StringReader(out.toString())));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(iterator.hasNext());
+            assertEntry(list.get(i), iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+        var broken = TypeCodec.reader(Entry.class).elements(new JsonReader(new StringReader("[{\"name\": 1}")));
+        assertThrows(UncheckedIOException.class, broken::next);
+    }
+
+    @Test
+    void testBinary() throws IOException {
+        Type type = TypeCodec.parameterized(List.class, Entry.class);
+        var list = new ArrayList<Entry>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(entry(i));
+        }
+        var streamed = new ByteArrayOutputStream();
+        TypeCodec.<List<Entry>>writer(type).write(list, streamed);
+        List<Entry> result = TypeCodec.<List<Entry>>reader(type).read(new ByteArrayInputStream(streamed.toByteArray()));
+        assertEquals(1000, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            assertEntry(list.get(i), result.get(i));
+        }
+        ByteBuffer encoded = TypeCodec.<List<Entry>>of(type).encodeStart(BinaryOps.INSTANCE, list).result().get();
+        var bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        var iterator = TypeCodec.reader(Entry.class).elements(new ByteArrayInputStream(bytes));
+        int count = 0;
+        while (iterator.hasNext()) {
+            assertEntry(list.get(count++), iterator.next());
+        }
+        assertEquals(1000, count);
+    }
+}
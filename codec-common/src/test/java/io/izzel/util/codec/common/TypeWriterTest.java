@@ -0,0 +1,109 @@
+package io.izzel.util.codec.common;
+
+import com.google.gson.stream.JsonWriter;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.JsonOps;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypeWriterTest {
+
+    public record Entry(String name, float weight, double[] samples, char[] tag, Map<String, List<String>> tags, Node tree) {}
+
+    public record Node(String name, List<Node> children) {}
+
+    private static Entry entry(int i) {
+        var tree = new Node("root", List.of(new Node("leaf" + i, List.of())));
+        return new Entry("entry" + i, 4.2F, new double[]{i, 0.5}, new char[]{'a', 'b'},
+            Map.of("key", List.of("a", "b")), tree);
+    }
+
+    private static <A> String json(Type type, A value) throws IOException {
+        var out = new StringWriter();
+        TypeCodec.<A>writer(type).write(value, new JsonWriter(out));
+        return out.toString();
+    }
+
+    @Test
+    void testJson() throws IOException {
+        var entry = entry(42);
+        assertEquals(TypeCodec.of(Entry.class).encodeStart(JsonOps.INSTANCE, entry).result().get().toString(),
+            json(Entry.class, entry));
+        var list = List.of(entry(1), entry(2));
+        Type type = TypeCodec.parameterized(List.class, Entry.class);
+        assertEquals(TypeCodec.of(type).encodeStart(JsonOps.INSTANCE, list).result().get().toString(), json(type, list));
+        Type map = TypeCodec.parameterized(Map.class, String.class, Entry[].class);
+        Map<String, Entry[]> entries = Map.of("entries", new Entry[]{entry(3)});
+        assertEquals(TypeCodec.of(map).encodeStart(JsonOps.INSTANCE, entries).result().get().toString(), json(map, entries));
+        // writers bind the accessors of the resolved codec instead of scanning the class again
+        assertSame(TypeCodec.classCodec(Entry.class), TypeCodec.classCodec(Entry.class));
+    }
+
+    @Test
+    void testBinary() throws IOException {
+        Codec<List<Entry>> codec = TypeCodec.of(TypeCodec.parameterized(List.class, Entry.class));
+        var list = new ArrayList<Entry>();
+        for (int i = 0; i < 1000; i++) {
+            list.add(entry(i));
+        }
+        var out = new ByteArrayOutputStream();
+        TypeCodec.<List<Entry>>writer(TypeCodec.parameterized(List.class, Entry.class)).write(list, out);
+        var buffer = ByteBuffer.wrap(out.toByteArray());
+        var value = BinaryOps.INSTANCE.read(buffer);
+        assertTrue(!buffer.hasRemaining());
+        List<Entry> result = codec.parse(BinaryOps.INSTANCE, value).result().get();
+        assertEquals(1000, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals(list.get(i).name(), result.get(i).name());
+            assertArrayEquals(list.get(i).samples(), result.get(i).samples());
+            assertArrayEquals(list.get(i).tag(), result.get(i).tag());
+            assertEquals(list.get(i).tree(), result.get(i).tree());
+        }
+        assertEquals(codec.encodeStart(JsonOps.INSTANCE, list).result().get(), BinaryOps.INSTANCE.convertTo(JsonOps.INSTANCE, value));
+    }
+
+    @Test
+    void testChannel() throws IOException {
+        var out = new ByteArrayOutputStream();
+        var channel = Channels.newChannel(out);
+        TypeCodec.writer(int[].class).write(new int[]{4, 2}, channel);
+        TypeCodec.writer(String.class).write("42", channel);
+        var buffer = ByteBuffer.wrap(out.toByteArray());
+        assertArrayEquals(new int[]{4, 2}, TypeCodec.of(int[].class).parse(BinaryOps.INSTANCE, BinaryOps.INSTANCE.read(buffer)).result().get());
+        assertEquals("42", TypeCodec.of(String.class).parse(BinaryOps.INSTANCE, BinaryOps.INSTANCE.read(buffer)).result().get());
+    }
+
+    @Test
+    void testNull() {
+        assertThrows(IOException.class, () -> json(Node.class, new Node(null, List.of())));
+    }
+
+    @Test
+    void testNonStringKeys() throws IOException {
+        // JsonOps rejects maps with other keys, so the JSON sink does too
+        var sink = new TokenSink.Json(new JsonWriter(new StringWriter()));
+        sink.beginMap();
+        assertThrows(IOException.class, () -> sink.writeInt(42));
+        assertThrows(IOException.class, () -> sink.writeBoolean(true));
+        assertThrows(IOException.class, () -> sink.writeDouble(4.2));
+        sink.writeString("key");
+        sink.writeInt(42);
+        sink.endMap();
+        assertTrue(Codec.unboundedMap(Codec.INT, Codec.INT).encodeStart(JsonOps.INSTANCE, Map.of(4, 2)).error().isPresent());
+    }
+}
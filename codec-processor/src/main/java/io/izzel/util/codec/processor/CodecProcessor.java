@@ -0,0 +1,340 @@
+package io.izzel.util.codec.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Emits a {@code MapCodec} and a {@code CodecProvider} for every class annotated with {@code GenerateCodec}.
+ * <p>
+ * Components are discovered with the same rules as {@code ClassMapCodec}: every non-static, non-transient
+ * field in declaration order, read through a public {@code name()} or {@code getName()} getter or the public
+ * field itself, and a public constructor taking all components in order.
+ */
+public class CodecProcessor extends AbstractProcessor {
+
+    private static final String ANNOTATION = "io.izzel.util.codec.common.GenerateCodec";
+    private static final String PROVIDER = "io.izzel.util.codec.common.CodecProvider";
+    private static final String SERVICE = "META-INF/services/" + PROVIDER;
+
+    private final Set<String> providers = new TreeSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ANNOTATION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServices();
+            return false;
+        }
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (!element.getKind().isClass() || element.getKind() == ElementKind.ENUM) {
+                    error(element, "@GenerateCodec is only applicable to classes and records");
+                    continue;
+                }
+                try {
+                    generate((TypeElement) element);
+                } catch (IllegalStateException e) {
+                    error(element, e.getMessage());
+                } catch (IOException e) {
+                    error(element, "Failed to write codec: " + e);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        if (!type.getTypeParameters().isEmpty()) {
+            throw new IllegalStateException("Generic classes are not supported");
+        }
+        for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                throw new IllegalStateException(e.getSimpleName() + " is not accessible from its package");
+            }
+        }
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC) && type.getKind() == ElementKind.CLASS) {
+            throw new IllegalStateException("Inner classes are not supported, make " + type.getSimpleName() + " static");
+        }
+        List<Component> components = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            String accessor = findAccessor(type, field.asType(), name, "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1));
+            if (accessor == null) {
+                if (modifiers.contains(Modifier.PUBLIC)) {
+                    accessor = name;
+                } else {
+                    throw new IllegalStateException("Unable to find accessor for component " + name);
+                }
+            }
+            components.add(new Component(name, field.asType(), accessor, typeExpression(field.asType())));
+        }
+        findConstructor(type, components);
+
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String simpleName = flatName(type) + "_MapCodec";
+        String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+        try (PrintWriter writer = new PrintWriter(file.openWriter())) {
+            writeCodec(writer, packageName, simpleName, type, components);
+        }
+        providers.add(qualifiedName + "$Provider");
+    }
+
+    private String findAccessor(TypeElement type, TypeMirror returnType, String... names) {
+        for (String name : names) {
+            for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+                if (method.getSimpleName().contentEquals(name) && method.getParameters().isEmpty()
+                    && method.getModifiers().contains(Modifier.PUBLIC) && !method.getModifiers().contains(Modifier.STATIC)
+                    && processingEnv.getTypeUtils().isSameType(method.getReturnType(), returnType)) {
+                    return name + "()";
+                }
+            }
+        }
+        return null;
+    }
+
+    private void findConstructor(TypeElement type, List<Component> components) {
+        outer:
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (!constructor.getModifiers().contains(Modifier.PUBLIC) || constructor.getParameters().size() != components.size()) {
+                continue;
+            }
+            for (int i = 0; i < components.size(); i++) {
+                TypeMirror parameter = processingEnv.getTypeUtils().erasure(constructor.getParameters().get(i).asType());
+                if (!processingEnv.getTypeUtils().isSameType(parameter, processingEnv.getTypeUtils().erasure(components.get(i).type))) {
+                    continue outer;
+                }
+            }
+            return;
+        }
+        throw new IllegalStateException("No public constructor matching the components of " + type.getQualifiedName());
+    }
+
+    // an expression evaluating to the java.lang.reflect.Type of the component
+    private String typeExpression(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case CHAR:
+            case FLOAT:
+            case DOUBLE:
+                return type + ".class";
+            case ARRAY:
+                TypeMirror component = ((ArrayType) type).getComponentType();
+                if (component.getKind() == TypeKind.DECLARED && !((DeclaredType) component).getTypeArguments().isEmpty()) {
+                    throw new IllegalStateException("Generic array types are not supported: " + type);
+                }
+                return processingEnv.getTypeUtils().erasure(type) + ".class";
+            case DECLARED:
+                DeclaredType declared = (DeclaredType) type;
+                String raw = ((TypeElement) declared.asElement()).getQualifiedName() + ".class";
+                if (declared.getTypeArguments().isEmpty()) {
+                    return raw;
+                }
+                StringBuilder builder = new StringBuilder("io.izzel.util.codec.common.TypeCodec.parameterized(").append(raw);
+                for (TypeMirror argument : declared.getTypeArguments()) {
+                    builder.append(", ").append(typeExpression(argument));
+                }
+                return builder.append(')').toString();
+            default:
+                throw new IllegalStateException("Unsupported component type " + type);
+        }
+    }
+
+    private String boxed(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind())).getQualifiedName().toString();
+        }
+        return type.toString();
+    }
+
+    private static String flatName(TypeElement type) {
+        StringBuilder builder = new StringBuilder(type.getSimpleName());
+        for (Element e = type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+            builder.insert(0, e.getSimpleName() + "_");
+        }
+        return builder.toString();
+    }
+
+    private void writeCodec(PrintWriter w, String packageName, String simpleName, TypeElement type, List<Component> components) {
+        String target = type.getQualifiedName().toString();
+        if (!packageName.isEmpty()) {
+            w.println("package " + packageName + ";");
+            w.println();
+        }
+        w.println("import com.mojang.serialization.Codec;");
+        w.println("import com.mojang.serialization.DataResult;");
+        w.println("import com.mojang.serialization.DynamicOps;");
+        w.println("import com.mojang.serialization.MapCodec;");
+        w.println("import com.mojang.serialization.MapLike;");
+        w.println("import com.mojang.serialization.RecordBuilder;");
+        w.println("import io.izzel.util.codec.common.CodecProvider;");
+        w.println("import io.izzel.util.codec.common.TypeCodec;");
+        w.println();
+        w.println("import java.util.Optional;");
+        w.println("import java.util.stream.Stream;");
+        w.println();
+        w.println("// Generated by " + CodecProcessor.class.getName() + ", do not edit");
+        w.println("public final class " + simpleName + " extends MapCodec<" + target + "> {");
+        w.println();
+        for (int i = 0; i < components.size(); i++) {
+            w.println("    private final Codec<" + boxed(components.get(i).type) + "> codec" + i + ";");
+        }
+        w.println();
+        w.println("    public " + simpleName + "(TypeCodec.Mode mode) {");
+        for (int i = 0; i < components.size(); i++) {
+            w.println("        this.codec" + i + " = TypeCodec.of(" + components.get(i).typeExpression + ", mode);");
+        }
+        w.println("    }");
+        w.println();
+        w.println("    @Override");
+        w.println("    public <T> Stream<T> keys(DynamicOps<T> ops) {");
+        StringBuilder keys = new StringBuilder();
+        for (Component component : components) {
+            keys.append(keys.length() == 0 ? "" : ", ").append("ops.createString(\"").append(component.name).append("\")");
+        }
+        w.println("        return Stream.of(" + keys + ");");
+        w.println("    }");
+        w.println();
+        w.println("    @Override");
+        w.println("    @SuppressWarnings(\"unchecked\")");
+        w.println("    public <T> DataResult<" + target + "> decode(DynamicOps<T> ops, MapLike<T> input) {");
+        StringBuilder args = new StringBuilder();
+        for (int i = 0; i < components.size(); i++) {
+            String boxed = boxed(components.get(i).type);
+            w.println("        DataResult<" + boxed + "> result" + i + " = codec" + i + ".parse(ops, input.get(\"" + components.get(i).name + "\"));");
+            w.println("        Optional<" + boxed + "> value" + i + " = result" + i + ".result();");
+            w.println("        if (!value" + i + ".isPresent()) {");
+            w.println("            return (DataResult<" + target + ">) (DataResult<?>) result" + i + ";");
+            w.println("        }");
+            args.append(i == 0 ? "" : ", ").append("value").append(i).append(".get()");
+        }
+        w.println("        try {");
+        w.println("            return DataResult.success(new " + target + "(" + args + "));");
+        w.println("        } catch (Exception e) {");
+        w.println("            return DataResult.error(\"Failed to initialize \" + " + target + ".class + \": \" + e.getMessage());");
+        w.println("        }");
+        w.println("    }");
+        w.println();
+        w.println("    @Override");
+        w.println("    public <T> RecordBuilder<T> encode(" + target + " input, DynamicOps<T> ops, RecordBuilder<T> prefix) {");
+        for (int i = 0; i < components.size(); i++) {
+            Component component = components.get(i);
+            w.println("        prefix = prefix.add(\"" + component.name + "\", codec" + i + ".encodeStart(ops, input." + component.accessor + "));");
+        }
+        w.println("        return prefix;");
+        w.println("    }");
+        w.println();
+        w.println("    @Override");
+        w.println("    public String toString() {");
+        w.println("        return \"" + simpleName + "[\" + " + target + ".class + \"]\";");
+        w.println("    }");
+        w.println();
+        w.println("    public static final class Provider implements CodecProvider<" + target + "> {");
+        w.println();
+        w.println("        @Override");
+        w.println("        public Class<" + target + "> type() {");
+        w.println("            return " + target + ".class;");
+        w.println("        }");
+        w.println();
+        w.println("        @Override");
+        w.println("        public MapCodec<" + target + "> create(TypeCodec.Mode mode) {");
+        w.println("            return new " + simpleName + "(mode);");
+        w.println("        }");
+        w.println("    }");
+        w.println("}");
+    }
+
+    private void writeServices() {
+        if (providers.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE);
+            try (Reader reader = existing.openReader(true); BufferedReader lines = new BufferedReader(reader)) {
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    if (!line.trim().isEmpty()) {
+                        providers.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // nothing from a previous compilation
+        }
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE);
+            try (Writer writer = file.openWriter()) {
+                for (String provider : providers) {
+                    writer.write(provider);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write " + SERVICE + ": " + e);
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static class Component {
+
+        private final String name;
+        private final TypeMirror type;
+        private final String accessor;
+        private final String typeExpression;
+
+        private Component(String name, TypeMirror type, String accessor, String typeExpression) {
+            this.name = name;
+            this.type = type;
+            this.accessor = accessor;
+            this.typeExpression = typeExpression;
+        }
+    }
+}
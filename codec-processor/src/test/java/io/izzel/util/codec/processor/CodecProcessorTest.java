@@ -0,0 +1,136 @@
+package io.izzel.util.codec.processor;
+
+import com.mojang.serialization.JsonOps;
+import com.mojang.serialization.MapCodec;
+import io.izzel.util.codec.common.CodecProvider;
+import io.izzel.util.codec.common.TypeCodec;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CodecProcessorTest {
+
+    private static final String SOURCE = """
+        package test;
+
+        import io.izzel.util.codec.common.GenerateCodec;
+        import java.util.List;
+        import java.util.Map;
+
+        public class Holder {
+
+            @GenerateCodec
+            public record Point(int x, long y, String name, List<String> tags, Map<String, List<String>> scores) {}
+
+            @GenerateCodec
+            public static class Pojo {
+
+                private final double value;
+                public final boolean flag;
+
+                public Pojo(double value, boolean flag) {
+                    this.value = value;
+                    this.flag = flag;
+                }
+
+                public double getValue() {
+                    return value;
+                }
+            }
+        }
+        """;
+
+    private static final String INVALID = """
+        package test;
+
+        @io.izzel.util.codec.common.GenerateCodec
+        public class Invalid {
+
+            private final int hidden;
+
+            public Invalid(int hidden) {
+                this.hidden = hidden;
+            }
+        }
+        """;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGeneratedCodec() throws Exception {
+        Path output = compile("test.Holder", SOURCE, true);
+        assertTrue(Files.exists(output.resolve("test/Holder_Point_MapCodec.class")));
+        assertEquals("test.Holder_Point_MapCodec$Provider\ntest.Holder_Pojo_MapCodec$Provider",
+            Files.readString(output.resolve("META-INF/services/io.izzel.util.codec.common.CodecProvider")).trim());
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{output.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<Object> pointType = (Class<Object>) loader.loadClass("test.Holder$Point");
+            // found through the service file of the class loader defining the type
+            assertTrue(TypeCodec.of(pointType).toString().contains("Holder_Point_MapCodec"), TypeCodec.of(pointType).toString());
+            CodecProvider<Object> provider = (CodecProvider<Object>) loader.loadClass("test.Holder_Point_MapCodec$Provider").getConstructor().newInstance();
+            assertEquals(pointType, provider.type());
+            MapCodec<Object> codec = provider.create(TypeCodec.Mode.REFLECTION);
+            Object point = pointType.getConstructors()[0].newInstance(1, 2L, "name", List.of("a", "b"), Map.of("score", List.of("42")));
+            var generated = codec.codec().encodeStart(JsonOps.INSTANCE, point);
+            assertTrue(generated.result().isPresent(), "Result is " + generated.error());
+            assertEquals(TypeCodec.of(pointType).encodeStart(JsonOps.INSTANCE, point).result().get(), generated.result().get());
+            assertEquals("""
+                {"x":1,"y":2,"name":"name","tags":["a","b"],"scores":{"score":["42"]}}""", generated.result().get().toString());
+            var parse = codec.codec().parse(JsonOps.INSTANCE, generated.result().get());
+            assertTrue(parse.result().isPresent(), "Result is " + parse.error());
+            assertEquals(point, parse.result().get());
+
+            Class<Object> pojoType = (Class<Object>) loader.loadClass("test.Holder$Pojo");
+            CodecProvider<Object> pojoProvider = (CodecProvider<Object>) loader.loadClass("test.Holder_Pojo_MapCodec$Provider").getConstructor().newInstance();
+            Object pojo = pojoType.getConstructors()[0].newInstance(4.2D, true);
+            assertEquals("""
+                {"value":4.2,"flag":true}""", pojoProvider.create(TypeCodec.Mode.REFLECTION).codec().encodeStart(JsonOps.INSTANCE, pojo).result().get().toString());
+        }
+    }
+
+    @Test
+    void testInvalidClass() throws Exception {
+        compile("test.Invalid", INVALID, false);
+    }
+
+    private static Path compile(String name, String source, boolean success) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Path output = Files.createTempDirectory("codec-processor");
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + name.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            List<String> options = List.of("-d", output.toString(), "-classpath", System.getProperty("java.class.path"));
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, List.of(file));
+            task.setProcessors(List.of(new CodecProcessor()));
+            boolean result = task.call();
+            if (success) {
+                assertTrue(result, () -> diagnostics.getDiagnostics().toString());
+            } else {
+                assertFalse(result);
+                assertTrue(diagnostics.getDiagnostics().stream().anyMatch(it -> it.getKind() == Diagnostic.Kind.ERROR
+                    && it.getMessage(null).contains("Unable to find accessor for component hidden")), () -> diagnostics.getDiagnostics().toString());
+            }
+        }
+        return output;
+    }
+}